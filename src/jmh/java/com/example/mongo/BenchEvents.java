@@ -0,0 +1,55 @@
+package com.example.mongo;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Shared fixtures: events shaped like the producer's, and their stored BSON. */
+final class BenchEvents {
+
+    private BenchEvents() {}
+
+    /** Sequence source without MongoDB (buildNextEvent only needs ids). */
+    static SequenceAllocator localSequence() {
+        AtomicLong seq = new AtomicLong();
+        return seq::incrementAndGet;
+    }
+
+    static HybridEventProducer producer() {
+        return new HybridEventProducer(null, localSequence());
+    }
+
+    /** {@code n} events with _ids, as they look after an insert. */
+    static List<HybridEvent> events(int n) {
+        HybridEventProducer producer = producer();
+        List<HybridEvent> out = new ArrayList<>(n);
+        Instant base = Instant.parse("2026-01-30T12:00:00Z");
+        for (int i = 0; i < n; i++) {
+            HybridEvent e = producer.buildNextEvent(producer.nextSequence());
+            e.setEventTs(base.plusMillis(i));
+            e.setMongoObjectId(new ObjectId());
+            out.add(e);
+        }
+        return out;
+    }
+
+    static byte[] encode(Codec<HybridEvent> codec, HybridEvent e) {
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buf), e, EncoderContext.builder().build());
+        return buf.toByteArray();
+    }
+
+    static List<RawBsonDocument> raw(Codec<HybridEvent> codec, List<HybridEvent> events) {
+        List<RawBsonDocument> out = new ArrayList<>(events.size());
+        for (HybridEvent e : events) out.add(new RawBsonDocument(encode(codec, e)));
+        return out;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.mongo;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one stored event: reflective POJO codec vs the hand-written codecs (map or typed payload)
+ * vs leaving it as RawBsonDocument and reading only the fields a caller needs. Encode for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final DecoderContext DECODE = DecoderContext.builder().build();
+    private static final EncoderContext ENCODE = EncoderContext.builder().build();
+
+    private Codec<HybridEvent> pojo;
+    private Codec<HybridEvent> direct;
+    private Codec<HybridEvent> typed;
+    private HybridEvent event;
+    private byte[] bson;
+    private BasicOutputBuffer out;
+
+    @Setup
+    public void setUp() {
+        pojo = MongoClientProvider.codecRegistry("pojo", false).get(HybridEvent.class);
+        direct = MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class);
+        typed = MongoClientProvider.codecRegistry("direct", true).get(HybridEvent.class);
+        event = BenchEvents.events(1).get(0);
+        bson = BenchEvents.encode(direct, event);
+        out = new BasicOutputBuffer();
+    }
+
+    private HybridEvent decode(Codec<HybridEvent> codec) {
+        return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), DECODE);
+    }
+
+    @Benchmark
+    public HybridEvent decodePojo() {
+        return decode(pojo);
+    }
+
+    @Benchmark
+    public HybridEvent decodeDirect() {
+        return decode(direct);
+    }
+
+    @Benchmark
+    public HybridEvent decodeDirectTyped() {
+        return decode(typed);
+    }
+
+    /** What the raw passthrough read path does before transcoding: wrap, then touch two fields. */
+    @Benchmark
+    public Object decodeRawFields() {
+        RawBsonDocument doc = new RawBsonDocument(bson);
+        return doc.getString("id").getValue().length() + doc.getDateTime("event_ts").getValue();
+    }
+
+    @Benchmark
+    public int encodePojo() {
+        out.truncateToPosition(0);
+        pojo.encode(new BsonBinaryWriter(out), event, ENCODE);
+        return out.getPosition();
+    }
+
+    @Benchmark
+    public int encodeDirect() {
+        out.truncateToPosition(0);
+        direct.encode(new BsonBinaryWriter(out), event, ENCODE);
+        return out.getPosition();
+    }
+}
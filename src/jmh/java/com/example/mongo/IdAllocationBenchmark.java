@@ -0,0 +1,87 @@
+package com.example.mongo;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ids per second: one findOneAndUpdate round trip per id (counter) vs leased blocks (block).
+ *
+ * target=standin (default) needs no server: a counters collection stand-in that parks for
+ * {@code rttMicros} per $inc. target=mongod uses a real server:
+ *   mvn -Pbench verify -Djmh.include=IdAllocationBenchmark "-Djmh.args=-p target=mongod -jvmArgs -Dbench.mongo.uri=mongodb://localhost:27017"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdAllocationBenchmark {
+
+    @Param({"standin"})
+    public String target;
+
+    /** Simulated round trip of the stand-in (ignored for mongod). */
+    @Param({"200"})
+    public long rttMicros;
+
+    private MongoClient client;
+    private MongoCollection<Document> counters;
+    private SequenceAllocator perEvent;
+    private SequenceAllocator leased;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("mongod".equals(target)) {
+            client = MongoClients.create(new ConnectionString(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017")));
+            counters = client.getDatabase("hybriddb2_bench").getCollection("counters");
+            counters.drop();
+        } else {
+            counters = standIn(TimeUnit.MICROSECONDS.toNanos(rttMicros));
+        }
+        perEvent = new CounterSequenceAllocator(counters);
+        leased = new BlockSequenceAllocator(counters, 16, 4096);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (client != null) {
+            counters.drop();
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public long counter() {
+        return perEvent.next();
+    }
+
+    @Benchmark
+    public long block() {
+        return leased.next();
+    }
+
+    /** findOneAndUpdate that applies the $inc to an in-memory counter and parks once per call. */
+    @SuppressWarnings("unchecked")
+    static MongoCollection<Document> standIn(long rttNanos) {
+        AtomicLong seq = new AtomicLong();
+        return (MongoCollection<Document>) Proxy.newProxyInstance(
+                IdAllocationBenchmark.class.getClassLoader(), new Class<?>[]{MongoCollection.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("findOneAndUpdate")) throw new UnsupportedOperationException(method.getName());
+                    long delta = ((Bson) args[1]).toBsonDocument().getDocument("$inc").getNumber("seq").longValue();
+                    if (rttNanos > 0) LockSupport.parkNanos(rttNanos);
+                    return new Document("seq", seq.addAndGet(delta));
+                });
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.RawBsonDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing an event list the way GET /events does: ObjectMapper on a materialized List (the
+ * original handler), the streaming writer over decoded events, and raw BSON transcoded to JSON.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"100", "1000"})
+    public int events;
+
+    private ObjectMapper mapper;
+    private EventStreamWriter writer;
+    private List<HybridEvent> list;
+    private List<RawBsonDocument> raw;
+    private CountingStream out;
+
+    /** Discards bytes but keeps a count, so nothing is optimized away. */
+    static final class CountingStream extends OutputStream {
+        long bytes;
+        @Override public void write(int b) { bytes++; }
+        @Override public void write(byte[] b, int off, int len) { bytes += len; }
+    }
+
+    @Setup
+    public void setUp() {
+        mapper = ServerApp.buildMapper();
+        writer = new EventStreamWriter(mapper);
+        list = BenchEvents.events(events);
+        raw = BenchEvents.raw(MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class), list);
+        out = new CountingStream();
+    }
+
+    @Benchmark
+    public byte[] objectMapperList() throws IOException {
+        return mapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public long streamingWriter() throws IOException {
+        writer.writeAll(out, EventStreamWriter.Format.JSON, list.iterator());
+        return out.bytes;
+    }
+
+    @Benchmark
+    public long rawTranscode() throws IOException {
+        writer.writeAllRaw(out, EventStreamWriter.Format.JSON, raw.iterator(), false);
+        return out.bytes;
+    }
+
+    @Benchmark
+    public long streamingSmile() throws IOException {
+        writer.writeAll(out, EventStreamWriter.Format.SMILE, list.iterator());
+        return out.bytes;
+    }
+}
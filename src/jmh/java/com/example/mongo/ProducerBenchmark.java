@@ -0,0 +1,29 @@
+package com.example.mongo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building one event on the producer hot path. Run with {@code -prof gc} for bytes/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerBenchmark {
+
+    private HybridEventProducer producer;
+
+    @Setup
+    public void setUp() {
+        producer = BenchEvents.producer();
+    }
+
+    @Benchmark
+    public HybridEvent buildNextEvent() {
+        return producer.buildNextEvent(producer.nextSequence());
+    }
+}
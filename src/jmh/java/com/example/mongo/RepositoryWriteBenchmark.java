@@ -0,0 +1,141 @@
+package com.example.mongo;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.ConnectionString;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writing BATCH events per invocation (scores are per event): insertOne per event vs one unordered insertMany vs one
+ * unordered bulkWrite of InsertOneModels.
+ *
+ * target=standin (default) needs no server: a MongoCollection stand-in that BSON-encodes every
+ * document with the real codec and parks for {@code rttMicros} per round trip, so it shows client
+ * cost plus the effect of round trips. target=mongod writes to a real server:
+ *   mvn -Pbench verify -Djmh.include=RepositoryWriteBenchmark "-Djmh.args=-p target=mongod -jvmArgs -Dbench.mongo.uri=mongodb://localhost:27017"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryWriteBenchmark {
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+    private static final BulkWriteOptions UNORDERED_BULK = new BulkWriteOptions().ordered(false);
+
+    private static final int BATCH = 100;
+
+    @Param({"standin"})
+    public String target;
+
+    /** Simulated round trip of the stand-in (ignored for mongod). */
+    @Param({"200"})
+    public long rttMicros;
+
+    private MongoClient client;
+    private MongoCollection<HybridEvent> collection;
+    private List<HybridEvent> events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("mongod".equals(target)) {
+            String uri = System.getProperty("bench.mongo.uri", "mongodb://localhost:27017");
+            client = MongoClients.create(MongoClientSettings.builder()
+                    .applyConnectionString(new ConnectionString(uri))
+                    .codecRegistry(MongoClientProvider.codecRegistry("direct", false))
+                    .build());
+            collection = client.getDatabase("hybriddb2_bench").getCollection("hybrid_events", HybridEvent.class);
+        } else {
+            collection = standIn(MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class),
+                    TimeUnit.MICROSECONDS.toNanos(rttMicros));
+        }
+        events = BenchEvents.events(BATCH);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyCollection() {
+        if (client != null) collection.drop();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (client != null) {
+            collection.drop();
+            client.close();
+        }
+    }
+
+    /** New _ids every operation, or mongod would reject the second round as duplicates. */
+    private List<HybridEvent> freshEvents() {
+        for (HybridEvent e : events) e.setMongoObjectId(null);
+        return events;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertOneEach() {
+        for (HybridEvent e : freshEvents()) collection.insertOne(e);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertManyUnordered() {
+        collection.insertMany(freshEvents(), UNORDERED);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void bulkWriteUnordered() {
+        List<WriteModel<HybridEvent>> models = new ArrayList<>(BATCH);
+        for (HybridEvent e : freshEvents()) models.add(new InsertOneModel<>(e));
+        collection.bulkWrite(models, UNORDERED_BULK);
+    }
+
+    /** insertOne / insertMany / bulkWrite that encode with the real codec and park once per call. */
+    @SuppressWarnings("unchecked")
+    static MongoCollection<HybridEvent> standIn(Codec<HybridEvent> codec, long rttNanos) {
+        EncoderContext encode = EncoderContext.builder().isEncodingCollectibleDocument(true).build();
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        return (MongoCollection<HybridEvent>) Proxy.newProxyInstance(
+                RepositoryWriteBenchmark.class.getClassLoader(), new Class<?>[]{MongoCollection.class},
+                (proxy, method, args) -> {
+                    List<HybridEvent> docs = new ArrayList<>();
+                    switch (method.getName()) {
+                        case "insertOne" -> docs.add((HybridEvent) args[0]);
+                        case "insertMany" -> docs.addAll((List<HybridEvent>) args[0]);
+                        case "bulkWrite" -> {
+                            for (Object m : (List<?>) args[0]) docs.add(((InsertOneModel<HybridEvent>) m).getDocument());
+                        }
+                        case "drop" -> { return null; }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                    buf.truncateToPosition(0);
+                    for (HybridEvent e : docs) {
+                        // the driver assigns missing _ids before encoding
+                        if (codec instanceof CollectibleCodec<HybridEvent> cc) cc.generateIdIfAbsentFromDocument(e);
+                        codec.encode(new BsonBinaryWriter(buf), e, encode);
+                    }
+                    if (rttNanos > 0) LockSupport.parkNanos(rttNanos);
+                    return null;
+                });
+    }
+}
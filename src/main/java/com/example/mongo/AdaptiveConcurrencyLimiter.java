@@ -0,0 +1,118 @@
+package com.example.mongo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Concurrency limit for ingest requests that follows their latency (AIMD).
+ *
+ * Every admitted ingest request reports its latency per event ({@link #onLatency(long, long)}), so a
+ * 1000-event batch is judged like 1000 single inserts rather than as one slow write. Each sample
+ * is compared with the target:
+ * - slower than target: limit *= 0.9, at most once per target-length window, so one burst of
+ *   slow samples counts as one congestion signal
+ * - otherwise, while at least half the limit is in use: limit += 1/limit (about +1 per limit's worth of
+ *   fast samples)
+ * The limit stays within [min, max]. Requests over the limit are refused at once (503) instead of
+ * queueing behind a primary that is already slow.
+ *
+ * All state is atomics; the limit is a double stored as long bits and updated by CAS.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecrease;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMillis));
+        this.lastDecrease = new AtomicLong(System.nanoTime() - targetNanos);
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit))));
+    }
+
+    public int limit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public boolean tryAcquire() {
+        int n;
+        do {
+            n = inFlight.get();
+            if (n >= limit()) {
+                shed.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /** One request that wrote {@code events} events in {@code nanos}; judged per event. */
+    public void onLatency(long nanos, long events) {
+        onLatency(nanos / Math.max(1, events));
+    }
+
+    /** A request that failed from overload (5xx): as strong a signal as a very slow write. */
+    public void onOverload() {
+        onLatency(Long.MAX_VALUE);
+    }
+
+    /** One observed per-event write latency. */
+    public void onLatency(long nanos) {
+        if (nanos > targetNanos) {
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            if (now - last < targetNanos || !lastDecrease.compareAndSet(last, now)) return;
+            decreases.increment();
+            update(l -> Math.max(minLimit, l * BACKOFF_RATIO));
+        } else if (inFlight.get() * 2 >= limit()) {
+            update(l -> Math.min(maxLimit, l + 1 / l));
+        }
+    }
+
+    private void update(DoubleUnaryOperator f) {
+        long bits;
+        do {
+            bits = limitBits.get();
+        } while (!limitBits.compareAndSet(bits, Double.doubleToLongBits(f.applyAsDouble(Double.longBitsToDouble(bits)))));
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        m.gauge("hybrid_ingest_concurrency_limit", "Adaptive ingest concurrency limit", this::limit);
+        m.gauge("hybrid_ingest_in_flight", "Ingest requests being handled", inFlight::get);
+        m.counter("hybrid_ingest_concurrency_decreases_total", "Limit reductions after slow MongoDB writes", decreases::sum);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("limit", limit());
+        m.put("min", minLimit);
+        m.put("max", maxLimit);
+        m.put("targetLatencyMs", TimeUnit.NANOSECONDS.toMillis(targetNanos));
+        m.put("inFlight", inFlight.get());
+        m.put("shed", shed.sum());
+        m.put("decreases", decreases.sum());
+        return m;
+    }
+}
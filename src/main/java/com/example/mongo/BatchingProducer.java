@@ -0,0 +1,141 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * High-rate producer mode:
+ * - generated events are collected into batches closed by size or by linger time
+ * - each batch is written with one unordered insertMany
+ * - the next batch is built while the previous one is still in flight (one write in flight at a time)
+ * - pacing is a target rate in events/sec instead of whole-second sleeps
+ */
+public class BatchingProducer {
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final HybridEventProducer producer;
+    private final MongoCollection<HybridEvent> events;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final TokenBucketRateLimiter rate;
+
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private volatile boolean stopped;
+
+    public BatchingProducer(HybridEventProducer producer,
+                            MongoCollection<HybridEvent> events,
+                            int batchSize,
+                            long lingerMillis,
+                            double eventsPerSecond) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        this.producer = producer;
+        this.events = events;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        // allow one batch worth of burst so a full batch can be built without stalling
+        this.rate = new TokenBucketRateLimiter(eventsPerSecond, batchSize);
+    }
+
+    /** Asks a running {@link #run(long)} to finish the batch it is building and return. */
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Produces {@code count} events (forever when count &lt; 0, until {@link #stop()}). */
+    public RunStats run(long count) {
+        ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "batch-writer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long started = System.nanoTime();
+        long produced = 0;
+        Future<?> inFlight = null;
+        try {
+            while (!stopped && (count < 0 || produced < count)) {
+                int limit = count < 0 ? batchSize : (int) Math.min(batchSize, count - produced);
+                List<HybridEvent> batch = nextBatch(limit);
+                if (batch.isEmpty()) continue;
+
+                await(inFlight);
+                inFlight = writer.submit(() -> write(batch));
+                produced += batch.size();
+            }
+            await(inFlight);
+        } finally {
+            writer.shutdownNow();
+        }
+
+        return new RunStats(produced, System.nanoTime() - started, batchLatency);
+    }
+
+    private List<HybridEvent> nextBatch(int limit) {
+        List<HybridEvent> batch = new ArrayList<>(limit);
+        long deadline = 0;
+        while (batch.size() < limit && !stopped) {
+            if (batch.isEmpty()) {
+                rate.acquire(1);
+                deadline = System.nanoTime() + lingerNanos;
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !rate.tryAcquire(1, remaining, TimeUnit.NANOSECONDS)) break;
+            }
+            batch.add(producer.buildNextEvent(producer.nextSequence()));
+        }
+        return batch;
+    }
+
+    private void write(List<HybridEvent> batch) {
+        long t0 = System.nanoTime();
+        producer.write(batch, b -> events.insertMany(b, UNORDERED));
+        batchLatency.recordSince(t0);
+    }
+
+    private static void await(Future<?> f) {
+        if (f == null) return;
+        try {
+            f.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Producer interrupted", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /** Summary printed at the end of a run. */
+    public static final class RunStats {
+        public final long events;
+        public final long elapsedNanos;
+        public final LatencyHistogram batchLatency;
+
+        public RunStats(long events, long elapsedNanos, LatencyHistogram batchLatency) {
+            this.events = events;
+            this.elapsedNanos = elapsedNanos;
+            this.batchLatency = batchLatency;
+        }
+
+        public double eventsPerSecond() {
+            return elapsedNanos == 0 ? 0 : events / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("events=%d elapsed=%.1fs rate=%.0f ev/s batches=%d batch p50=%.2fms p99=%.2fms",
+                    events, elapsedNanos / 1e9, eventsPerSecond(), batchLatency.count(),
+                    batchLatency.percentileMillis(50), batchLatency.percentileMillis(99));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Leases blocks of ids with a single {@code $inc: N} on the counters document and hands them
+ * out from memory.
+ *
+ * - Uses the same counter document as {@link CounterSequenceAllocator}, so both can run side by side.
+ * - Ids are unique across producers; ids left in a block when the JVM stops are simply skipped (gaps).
+ * - The block size adapts to the issue rate: a block that is used up faster than half the target
+ *   lease interval doubles the next lease, one that lasts longer than twice the interval halves it.
+ * - Refills use a ReentrantLock rather than synchronized so virtual-thread producers do not pin
+ *   their carrier thread during the $inc round trip.
+ */
+public class BlockSequenceAllocator implements SequenceAllocator {
+
+    private final MongoCollection<Document> counters;
+    private final String counterId;
+    private final int minBlock;
+    private final int maxBlock;
+    private final long targetLeaseNanos;
+
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile Block block = Block.EMPTY;
+    private volatile int blockSize;
+    private final AtomicLong leases = new AtomicLong();
+
+    public BlockSequenceAllocator(MongoCollection<Document> counters, int minBlock, int maxBlock) {
+        this(counters, CounterSequenceAllocator.DEFAULT_COUNTER_ID, minBlock, maxBlock, 1000);
+    }
+
+    public BlockSequenceAllocator(MongoCollection<Document> counters, String counterId,
+                                  int minBlock, int maxBlock, long targetLeaseMillis) {
+        if (minBlock < 1 || maxBlock < minBlock) {
+            throw new IllegalArgumentException("invalid block bounds: min=" + minBlock + " max=" + maxBlock);
+        }
+        this.counters = counters;
+        this.counterId = counterId;
+        this.minBlock = minBlock;
+        this.maxBlock = maxBlock;
+        this.targetLeaseNanos = TimeUnit.MILLISECONDS.toNanos(targetLeaseMillis);
+        this.blockSize = minBlock;
+    }
+
+    @Override
+    public long next() {
+        while (true) {
+            Block b = block;
+            long v = b.cursor.getAndIncrement();
+            if (v <= b.end) return v;
+            refill(b);
+        }
+    }
+
+    /** Number of $inc round trips made so far. */
+    public long leaseCount() {
+        return leases.get();
+    }
+
+    /** Size that the next lease will request. */
+    public int currentBlockSize() {
+        return blockSize;
+    }
+
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            if (block != exhausted) return; // another thread already leased a new block
+
+            long now = System.nanoTime();
+            int size = blockSize;
+            if (exhausted != Block.EMPTY) {
+                long lasted = now - exhausted.leasedAtNanos;
+                if (lasted < targetLeaseNanos / 2) size = (int) Math.min((long) maxBlock, size * 2L);
+                else if (lasted > targetLeaseNanos * 2) size = Math.max(minBlock, size / 2);
+            }
+
+            long end = CounterSequenceAllocator.increment(counters, counterId, size);
+            leases.incrementAndGet();
+            blockSize = size;
+            block = new Block(end - size + 1, end, now);
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class Block {
+        static final Block EMPTY = new Block(1, 0, 0);
+
+        final AtomicLong cursor;
+        final long end;
+        final long leasedAtNanos;
+
+        Block(long start, long end, long leasedAtNanos) {
+            this.cursor = new AtomicLong(start);
+            this.end = end;
+            this.leasedAtNanos = leasedAtNanos;
+        }
+    }
+}
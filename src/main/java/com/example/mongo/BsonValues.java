@@ -0,0 +1,107 @@
+package com.example.mongo;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader/writer helpers for the free-form parts of an event (untyped payload, unknown fields).
+ * Values map to the same Java types the Document/POJO codecs produce (Integer, Long, Double,
+ * String, Date, nested LinkedHashMap / ArrayList), but are read straight off the BsonReader
+ * without a codec lookup per value. Rare BSON types fall back to the registry.
+ */
+final class BsonValues {
+
+    private static final BsonTypeClassMap TYPE_CLASSES = new BsonTypeClassMap();
+
+    private BsonValues() {}
+
+    static Object readValue(BsonReader reader, DecoderContext ctx, CodecRegistry registry) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case STRING: return reader.readString();
+            case INT32: return reader.readInt32();
+            case INT64: return reader.readInt64();
+            case DOUBLE: return reader.readDouble();
+            case BOOLEAN: return reader.readBoolean();
+            case DATE_TIME: return new Date(reader.readDateTime());
+            case OBJECT_ID: return reader.readObjectId();
+            case DECIMAL128: return reader.readDecimal128();
+            case NULL:
+                reader.readNull();
+                return null;
+            case DOCUMENT: return readDocument(reader, ctx, registry);
+            case ARRAY: return readArray(reader, ctx, registry);
+            default:
+                Codec<?> codec = registry.get(TYPE_CLASSES.get(type));
+                return ctx.decodeWithChildContext(codec, reader);
+        }
+    }
+
+    static Map<String, Object> readDocument(BsonReader reader, DecoderContext ctx, CodecRegistry registry) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            out.put(name, readValue(reader, ctx, registry));
+        }
+        reader.readEndDocument();
+        return out;
+    }
+
+    private static List<Object> readArray(BsonReader reader, DecoderContext ctx, CodecRegistry registry) {
+        List<Object> out = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            out.add(readValue(reader, ctx, registry));
+        }
+        reader.readEndArray();
+        return out;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static void writeValue(BsonWriter writer, Object value, EncoderContext ctx, CodecRegistry registry) {
+        if (value == null) writer.writeNull();
+        else if (value instanceof String s) writer.writeString(s);
+        else if (value instanceof Integer i) writer.writeInt32(i);
+        else if (value instanceof Long l) writer.writeInt64(l);
+        else if (value instanceof Double d) writer.writeDouble(d);
+        else if (value instanceof Boolean b) writer.writeBoolean(b);
+        else if (value instanceof Instant t) writer.writeDateTime(t.toEpochMilli());
+        else if (value instanceof Date d) writer.writeDateTime(d.getTime());
+        else if (value instanceof ObjectId oid) writer.writeObjectId(oid);
+        else if (value instanceof Decimal128 d) writer.writeDecimal128(d);
+        else if (value instanceof Map<?, ?> m) writeMap(writer, m, ctx, registry);
+        else if (value instanceof Iterable<?> it) {
+            writer.writeStartArray();
+            for (Object o : it) writeValue(writer, o, ctx, registry);
+            writer.writeEndArray();
+        } else {
+            Codec codec = registry.get(value.getClass());
+            ctx.encodeWithChildContext(codec, writer, value);
+        }
+    }
+
+    static void writeMap(BsonWriter writer, Map<?, ?> map, EncoderContext ctx, CodecRegistry registry) {
+        writer.writeStartDocument();
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            writer.writeName(String.valueOf(e.getKey()));
+            writeValue(writer, e.getValue(), ctx, registry);
+        }
+        writer.writeEndDocument();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.mongo;
+
+import org.bson.Document;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Rollup of one tumbling window: event count, temperature min/max/avg and the OK/WARN split. */
+public final class BucketStats {
+
+    private final long startMillis;
+    private final long count;
+    private final Double minTemperature;
+    private final Double maxTemperature;
+    private final Double avgTemperature;
+    private final long ok;
+    private final long warn;
+
+    public BucketStats(long startMillis, long count, Double minTemperature, Double maxTemperature,
+                       Double avgTemperature, long ok, long warn) {
+        this.startMillis = startMillis;
+        this.count = count;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.avgTemperature = avgTemperature;
+        this.ok = ok;
+        this.warn = warn;
+    }
+
+    static BucketStats empty(long startMillis) {
+        return new BucketStats(startMillis, 0, null, null, null, 0, 0);
+    }
+
+    /** From a $group output document: { _id: bucketStartMillis, count, minTemp, maxTemp, avgTemp, ok, warn }. */
+    static BucketStats fromDocument(Document d) {
+        return new BucketStats(
+                d.get("_id", Number.class).longValue(),
+                number(d, "count").longValue(),
+                asDouble(d.get("minTemp")),
+                asDouble(d.get("maxTemp")),
+                asDouble(d.get("avgTemp")),
+                number(d, "ok").longValue(),
+                number(d, "warn").longValue());
+    }
+
+    private static Number number(Document d, String key) {
+        Object v = d.get(key);
+        return v instanceof Number n ? n : 0;
+    }
+
+    private static Double asDouble(Object v) {
+        return v instanceof Number n ? n.doubleValue() : null;
+    }
+
+    public long getStartMillis() { return startMillis; }
+    public long getCount() { return count; }
+    public Double getMinTemperature() { return minTemperature; }
+    public Double getMaxTemperature() { return maxTemperature; }
+    public Double getAvgTemperature() { return avgTemperature; }
+    public long getOk() { return ok; }
+    public long getWarn() { return warn; }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("start", Instant.ofEpochMilli(startMillis).toString());
+        m.put("count", count);
+        m.put("minTemp", minTemperature);
+        m.put("maxTemp", maxTemperature);
+        m.put("avgTemp", avgTemperature);
+        m.put("ok", ok);
+        m.put("warn", warn);
+        return m;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an unordered insertMany: how many documents were written and which
+ * positions (relative to the submitted list) failed and why.
+ */
+public class BulkInsertResult {
+
+    /** Server error code for a unique index violation. */
+    public static final int DUPLICATE_KEY = 11000;
+
+    private final int submitted;
+    private final List<Failure> failures;
+
+    private BulkInsertResult(int submitted, List<Failure> failures) {
+        this.submitted = submitted;
+        this.failures = failures;
+    }
+
+    static BulkInsertResult success(int submitted) {
+        return new BulkInsertResult(submitted, Collections.emptyList());
+    }
+
+    /**
+     * Unordered inserts keep going after a failed document, so the exception lists every failed index.
+     * Anything else (write concern failures, network errors) leaves the outcome unknown and is rethrown.
+     */
+    static BulkInsertResult fromException(int submitted, MongoBulkWriteException e) {
+        if (e.getWriteConcernError() != null) throw e;
+        List<Failure> failures = new ArrayList<>(e.getWriteErrors().size());
+        for (BulkWriteError err : e.getWriteErrors()) {
+            failures.add(new Failure(err.getIndex(), err.getCode(), err.getMessage()));
+        }
+        return new BulkInsertResult(submitted, failures);
+    }
+
+    public int submitted() { return submitted; }
+
+    public int inserted() { return submitted - failures.size(); }
+
+    public List<Failure> failures() { return failures; }
+
+    public static final class Failure {
+        public final int index;
+        public final int code;
+        public final String message;
+
+        Failure(int index, int code, String message) {
+            this.index = index;
+            this.code = code;
+            this.message = message;
+        }
+
+        public boolean isDuplicate() {
+            return code == DUPLICATE_KEY;
+        }
+    }
+}
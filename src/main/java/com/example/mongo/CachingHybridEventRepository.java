@@ -0,0 +1,201 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * HybridEventRepository with a read-through cache in front of the point lookups
+ * (findOneById, findOneByMongoId / findOneByMongoObjectId, findOneByEventTs, and the async forms).
+ *
+ * - bounded segmented-LRU cache, shared by all three lookup kinds
+ * - a hit never outlives the document: expiry is min(now + ttl, event_ts + TTL index seconds)
+ * - 404s are cached too, with a shorter TTL
+ * - inserts through this repository drop the keys they could change (including cached 404s)
+ * - a load that was in flight when its key was invalidated is returned but not cached
+ *
+ * Cached HybridEvent instances are shared between callers and must be treated as read-only.
+ */
+public class CachingHybridEventRepository extends HybridEventRepository {
+
+    private final SegmentedLruCache<Key, Optional<HybridEvent>> cache;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    public CachingHybridEventRepository(MongoCollection<HybridEvent> collection,
+                                        int maxEntries, long ttlSeconds, long negativeTtlSeconds) {
+        super(collection);
+        this.cache = new SegmentedLruCache<>(maxEntries);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+    }
+
+    @Override
+    public Optional<HybridEvent> findOneById(String id) {
+        return cached(new Key('i', id), () -> super.findOneById(id));
+    }
+
+    @Override
+    public Optional<HybridEvent> findOneByMongoObjectId(ObjectId oid) {
+        return cached(new Key('m', oid), () -> super.findOneByMongoObjectId(oid));
+    }
+
+    @Override
+    public Optional<HybridEvent> findOneByMongoId(String mongoIdHex) {
+        return findOneByMongoObjectId(new ObjectId(mongoIdHex));
+    }
+
+    @Override
+    public Optional<HybridEvent> findOneByEventTs(Instant ts) {
+        return cached(new Key('t', ts), () -> super.findOneByEventTs(ts));
+    }
+
+    @Override
+    public CompletableFuture<Optional<HybridEvent>> findOneByIdAsync(String id) {
+        return cachedAsync(new Key('i', id), () -> super.findOneByIdAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<HybridEvent>> findOneByMongoObjectIdAsync(ObjectId oid) {
+        return cachedAsync(new Key('m', oid), () -> super.findOneByMongoObjectIdAsync(oid));
+    }
+
+    @Override
+    public SpoolFailover.Outcome insertOne(HybridEvent event) {
+        SpoolFailover.Outcome outcome = super.insertOne(event);
+        invalidate(event);
+        return outcome;
+    }
+
+    @Override
+    public CompletableFuture<SpoolFailover.Outcome> insertOneAsync(HybridEvent event) {
+        return super.insertOneAsync(event).thenApply(outcome -> {
+            invalidate(event);
+            return outcome;
+        });
+    }
+
+    @Override
+    protected void recordReplayed(List<HybridEvent> events) {
+        super.recordReplayed(events);
+        events.forEach(this::invalidate);
+    }
+
+    @Override
+    public void insertMany(List<HybridEvent> events) {
+        super.insertMany(events);
+        if (events != null) events.forEach(this::invalidate);
+    }
+
+    @Override
+    public BulkInsertResult insertManyUnordered(List<HybridEvent> events) {
+        BulkInsertResult r = super.insertManyUnordered(events);
+        if (events != null) events.forEach(this::invalidate);
+        return r;
+    }
+
+    @Override
+    public UpsertResult upsertMany(List<HybridEvent> events, ConflictPolicy policy) {
+        UpsertResult r = super.upsertMany(events, policy);
+        events.forEach(this::invalidate);
+        return r;
+    }
+
+    /**
+     * Drops every key an event could be cached under. Done after the write; a concurrent read that
+     * loaded the old state cannot survive it, since the invalidation also stops its late put.
+     */
+    public void invalidate(HybridEvent e) {
+        if (e == null) return;
+        if (e.getId() != null) cache.invalidate(new Key('i', e.getId()));
+        if (e.getMongoObjectId() != null) cache.invalidate(new Key('m', e.getMongoObjectId()));
+        if (e.getEventTs() != null) cache.invalidate(new Key('t', e.getEventTs()));
+    }
+
+    public void invalidateMongoId(ObjectId oid) {
+        cache.invalidate(new Key('m', oid));
+    }
+
+    /**
+     * Keeps the cache coherent with writes made by other processes (producer fleet, other app nodes).
+     * Deletes only carry the _id, so id/event_ts keys of a deleted document are left to expire;
+     * their expiry is already capped at the TTL index deadline, which is how events normally go away.
+     */
+    public EventChangeStreamWatcher.Listener invalidationListener() {
+        return new EventChangeStreamWatcher.Listener() {
+            @Override
+            public void onChange(ChangeStreamDocument<HybridEvent> change) {
+                ObjectId oid = LatestEventsBuffer.documentId(change);
+                if (oid != null) invalidateMongoId(oid);
+                invalidate(change.getFullDocument());
+            }
+
+            @Override
+            public void onReset() {
+                cache.clear();
+            }
+        };
+    }
+
+    public Map<String, Object> cacheStats() {
+        long hits = cache.hitCount();
+        long misses = cache.missCount();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("size", cache.size());
+        m.put("hits", hits);
+        m.put("misses", misses);
+        m.put("hitRatio", (hits + misses) == 0 ? 0.0 : (double) hits / (hits + misses));
+        m.put("evictions", cache.evictionCount());
+        m.put("expirations", cache.expirationCount());
+        return m;
+    }
+
+    private Optional<HybridEvent> cached(Key key, Supplier<Optional<HybridEvent>> loader) {
+        Optional<HybridEvent> hit = cache.get(key);
+        if (hit != null) return hit;
+
+        long generation = cache.generation(key);
+        Optional<HybridEvent> loaded = loader.get();
+        cache.putIfNotInvalidated(key, loaded, expiresAt(loaded), generation);
+        return loaded;
+    }
+
+    /** A hit completes immediately; a miss is cached when the load completes. */
+    private CompletableFuture<Optional<HybridEvent>> cachedAsync(Key key, Supplier<CompletableFuture<Optional<HybridEvent>>> loader) {
+        Optional<HybridEvent> hit = cache.get(key);
+        if (hit != null) return CompletableFuture.completedFuture(hit);
+
+        long generation = cache.generation(key);
+        return loader.get().thenApply(loaded -> {
+            cache.putIfNotInvalidated(key, loaded, expiresAt(loaded), generation);
+            return loaded;
+        });
+    }
+
+    private long expiresAt(Optional<HybridEvent> loaded) {
+        long now = System.nanoTime();
+        if (loaded.isEmpty()) return now + negativeTtlNanos;
+
+        long expires = now + ttlNanos;
+        long ttlIndexSeconds = getEventTtlSeconds();
+        Instant ts = loaded.get().getEventTs();
+        if (ttlIndexSeconds >= 0 && ts != null) {
+            // the TTL monitor may delete the document from this point on
+            long untilDeleteMillis = ts.plusSeconds(ttlIndexSeconds).toEpochMilli() - System.currentTimeMillis();
+            expires = Math.min(expires, now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, untilDeleteMillis)));
+        }
+        return expires;
+    }
+
+    /** Lookup kind ('i' business id, 'm' Mongo _id, 't' event_ts) plus the looked-up value. */
+    record Key(char kind, Object value) {}
+}
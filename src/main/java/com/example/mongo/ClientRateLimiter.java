@@ -0,0 +1,94 @@
+package com.example.mongo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One {@link TokenBucketRateLimiter} per client, so a single feeder cannot take the whole ingest
+ * capacity. Buckets live in a ConcurrentHashMap (striped by key) and each one is a single CAS, so
+ * clients never contend with each other.
+ *
+ * Tokens are events: a request takes one token to be admitted, and the rest of its events are
+ * charged afterwards ({@link #charge}), which puts the bucket into debt for the next request.
+ *
+ * At most maxClients buckets are kept. Full (idle) buckets are dropped when the map is over the cap;
+ * if it is still over, new clients share one overflow bucket until others go idle.
+ */
+public class ClientRateLimiter {
+
+    static final String OVERFLOW = "(overflow)";
+
+    private final double eventsPerSecond;
+    private final long burst;
+    private final int maxClients;
+    private final Map<String, TokenBucketRateLimiter> buckets = new ConcurrentHashMap<>();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /** eventsPerSecond <= 0 turns per-client limits off. */
+    public ClientRateLimiter(double eventsPerSecond, long burst, int maxClients) {
+        this.eventsPerSecond = eventsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxClients = Math.max(1, maxClients);
+    }
+
+    public boolean isEnabled() {
+        return eventsPerSecond > 0;
+    }
+
+    /** Admits one request from {@code client}; false when its bucket is empty (or in debt). */
+    public boolean tryAcquire(String client) {
+        if (!isEnabled()) return true;
+        if (bucket(client).tryAcquire(1)) return true;
+        limited.increment();
+        return false;
+    }
+
+    /** Charges {@code events} more tokens to a client that was already admitted. */
+    public void charge(String client, long events) {
+        if (isEnabled() && events > 0) bucket(client).charge(events);
+    }
+
+    /** Seconds until {@code client} is admitted again, at least 1 (for Retry-After). */
+    public long retryAfterSeconds(String client) {
+        TokenBucketRateLimiter b = buckets.get(client);
+        if (b == null) b = buckets.get(OVERFLOW);
+        long nanos = b == null ? 0 : b.waitNanos();
+        return Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private TokenBucketRateLimiter bucket(String client) {
+        TokenBucketRateLimiter b = buckets.get(client);
+        if (b != null) return b;
+        if (buckets.size() >= maxClients) {
+            evictIdle();
+            if (buckets.size() >= maxClients) client = OVERFLOW;
+        }
+        return buckets.computeIfAbsent(client, c -> new TokenBucketRateLimiter(eventsPerSecond, burst));
+    }
+
+    private void evictIdle() {
+        buckets.entrySet().removeIf(e -> {
+            if (!e.getValue().isIdle()) return false;
+            evicted.increment();
+            return true;
+        });
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        m.gauge("hybrid_ingest_rate_limit_clients", "Clients with a live ingest token bucket", buckets::size);
+        m.counter("hybrid_ingest_rate_limit_evicted_total", "Idle client buckets dropped at the client cap", evicted::sum);
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", isEnabled(),
+                "eventsPerSecond", eventsPerSecond,
+                "burst", burst,
+                "clients", buckets.size(),
+                "maxClients", maxClients,
+                "limited", limited.sum(),
+                "evicted", evicted.sum());
+    }
+}
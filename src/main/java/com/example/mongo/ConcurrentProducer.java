@@ -0,0 +1,141 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs K producer workers on virtual threads against the same events collection.
+ *
+ * - all workers share one token bucket (target events/sec for the whole engine) and one sequence allocator
+ * - each worker writes batches of up to batchSize events (batchSize 1 = insertOne per event)
+ * - a reporter prints the combined live throughput every few seconds
+ * - stop() lets every worker finish its current write, then run() returns
+ */
+public class ConcurrentProducer {
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final HybridEventProducer producer;
+    private final MongoCollection<HybridEvent> events;
+    private final int workers;
+    private final int batchSize;
+    private final TokenBucketRateLimiter rate;
+
+    private final LongAdder produced = new LongAdder();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private volatile boolean stopped;
+
+    public ConcurrentProducer(HybridEventProducer producer,
+                              MongoCollection<HybridEvent> events,
+                              int workers,
+                              double eventsPerSecond,
+                              int batchSize) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be >= 1");
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        this.producer = producer;
+        this.events = events;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.rate = new TokenBucketRateLimiter(eventsPerSecond, (long) workers * batchSize);
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Events written so far by all workers. */
+    public long producedCount() {
+        return produced.sum();
+    }
+
+    /**
+     * Produces {@code count} events across all workers (forever when count &lt; 0, until {@link #stop()}).
+     * Blocks until every worker has exited.
+     */
+    public BatchingProducer.RunStats run(long count, long reportEverySeconds) {
+        AtomicLong budget = new AtomicLong(count < 0 ? Long.MAX_VALUE : count);
+        long started = System.nanoTime();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "producer-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        if (reportEverySeconds > 0) {
+            long[] last = {0, started};
+            reporter.scheduleAtFixedRate(() -> {
+                long now = System.nanoTime();
+                long total = produced.sum();
+                double perSec = (total - last[0]) / ((now - last[1]) / 1e9);
+                last[0] = total;
+                last[1] = now;
+                System.out.printf("**** producer: %d events, %.0f ev/s (%d workers)%n", total, perSec, workers);
+            }, reportEverySeconds, reportEverySeconds, TimeUnit.SECONDS);
+        }
+
+        List<Future<?>> running = new ArrayList<>(workers);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < workers; i++) {
+                running.add(pool.submit(() -> workerLoop(budget)));
+            }
+            // try-with-resources close() waits for all workers
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        for (Future<?> f : running) {
+            try {
+                f.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Producer worker failed", e.getCause() != null ? e.getCause() : e);
+            }
+        }
+        return new BatchingProducer.RunStats(produced.sum(), System.nanoTime() - started, writeLatency);
+    }
+
+    private void workerLoop(AtomicLong budget) {
+        List<HybridEvent> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            int n = claim(budget);
+            if (n == 0) return;
+
+            rate.acquire(n);
+            batch.clear();
+            for (int i = 0; i < n; i++) {
+                batch.add(producer.buildNextEvent(producer.nextSequence()));
+            }
+
+            long t0 = System.nanoTime();
+            try {
+                producer.write(batch, b -> {
+                    if (n == 1) events.insertOne(b.get(0));
+                    else events.insertMany(b, UNORDERED);
+                });
+            } catch (RuntimeException e) {
+                stopped = true; // one failing worker stops the whole engine (errors the spool did not take)
+                throw e;
+            }
+            writeLatency.recordSince(t0);
+            produced.add(n);
+        }
+    }
+
+    private int claim(AtomicLong budget) {
+        while (true) {
+            long left = budget.get();
+            if (left <= 0) return 0;
+            int n = (int) Math.min(batchSize, left);
+            if (budget.compareAndSet(left, left - n)) return n;
+        }
+    }
+}
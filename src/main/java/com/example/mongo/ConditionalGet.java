@@ -0,0 +1,102 @@
+package com.example.mongo;
+
+import io.javalin.http.Context;
+import org.bson.BsonTimestamp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strong ETags that are computed without serializing the response, and If-None-Match handling.
+ *
+ * - single event: _id, event_ts and a 64-bit FNV-1a hash of the payload's keys and values, so a
+ *   LAST_WRITE_WINS replace changes the tag; plus the negotiated Content-Encoding
+ * - list: the change stream's high-water mark plus a hash of everything that shapes the body
+ *   (path, query string, format, Content-Encoding). No tag when there is no high-water mark; see
+ *   {@link EventChangeStreamWatcher#highWaterMark()}.
+ *
+ * List tags follow the change stream, so a write shows up in them only once the watcher has
+ * delivered it (normally milliseconds).
+ */
+public final class ConditionalGet {
+
+    private ConditionalGet() {}
+
+    /** {@code enc}: the negotiated Content-Encoding, since each encoding is a different representation. */
+    public static String eventTag(HybridEvent e, ResponseCompression.Encoding enc) {
+        String id = e.getMongoObjectId() != null ? e.getMongoObjectId().toHexString() : "i" + Integer.toHexString(String.valueOf(e.getId()).hashCode());
+        long ts = e.getEventTs() == null ? 0 : e.getEventTs().toEpochMilli();
+        long payload = hash(FNV_OFFSET, e.getPayload());
+        return "\"" + id + "-" + Long.toHexString(ts) + "-" + Long.toHexString(payload)
+                + (enc == ResponseCompression.Encoding.IDENTITY ? "" : "-" + enc.token) + "\"";
+    }
+
+    /** Null when {@code highWaterMark} is null (the collection's state is not known). */
+    public static String listTag(BsonTimestamp highWaterMark, String... parts) {
+        if (highWaterMark == null) return null;
+        long h = FNV_OFFSET;
+        for (String part : parts) h = string(h, String.valueOf(part));
+        return "\"l" + Long.toHexString(highWaterMark.getValue()) + "-" + Long.toHexString(h) + "\"";
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mix(long h, long b) {
+        return (h ^ b) * FNV_PRIME;
+    }
+
+    /** UTF-8 bytes, then a separator so ("ab","c") and ("a","bc") differ. */
+    private static long string(long h, String s) {
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) h = mix(h, b & 0xff);
+        return mix(h, 0xff);
+    }
+
+    private static long bits(long h, long v) {
+        for (int i = 0; i < 64; i += 8) h = mix(h, (v >>> i) & 0xff);
+        return h;
+    }
+
+    /** Payload content, walked in iteration order (stable for a decoded document); each value is prefixed by its kind. */
+    private static long hash(long h, Object v) {
+        if (v == null) return mix(h, 'n');
+        if (v instanceof Map<?, ?> m) {
+            h = mix(h, '{');
+            for (Map.Entry<?, ?> en : m.entrySet()) h = hash(string(h, String.valueOf(en.getKey())), en.getValue());
+            return mix(h, '}');
+        }
+        if (v instanceof List<?> l) {
+            h = mix(h, '[');
+            for (Object o : l) h = hash(h, o);
+            return mix(h, ']');
+        }
+        if (v instanceof Double || v instanceof Float) return bits(mix(h, 'd'), Double.doubleToLongBits(((Number) v).doubleValue()));
+        if (v instanceof Integer || v instanceof Long) return bits(mix(h, 'i'), ((Number) v).longValue());
+        return string(mix(h, v.getClass().getSimpleName().charAt(0)), String.valueOf(v));
+    }
+
+    /** If-None-Match: a list of (possibly weak) tags, or "*". Weak comparison, as RFC 9110 asks for GET. */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets ETag and, when the client already has this version, answers 304 with no body.
+     * Returns true when the caller should stop. A null tag does nothing.
+     */
+    public static boolean notModified(Context ctx, String etag) {
+        if (etag == null) return false;
+        ctx.header("ETag", etag);
+        if (!matches(ctx.header("If-None-Match"), etag)) return false;
+        ctx.status(304);
+        return true;
+    }
+}
@@ -9,9 +9,143 @@ public class Config {
     public final String mongoPassword   = required("MONGO_PASSWORD");
     public final String mongoCollection = env("MONGO_COLLECTION", "hybrid_events");
 
+    // Driver tuning: pool size / wait-queue timeout, socket and server-selection timeouts,
+    // wire compression (comma list of zstd, snappy, zlib; empty = none), read preference of the read
+    // endpoints only (primary | primaryPreferred | secondary | secondaryPreferred | nearest; everything
+    // else reads the primary) and default write concern
+    public final int mongoPoolMaxSize            = Integer.parseInt(env("MONGO_POOL_MAX_SIZE", "100"));
+    public final int mongoPoolMinSize            = Integer.parseInt(env("MONGO_POOL_MIN_SIZE", "0"));
+    public final long mongoPoolMaxWaitMs         = Long.parseLong(env("MONGO_POOL_MAX_WAIT_MS", "2000"));
+    public final long mongoPoolMaxIdleMs         = Long.parseLong(env("MONGO_POOL_MAX_IDLE_MS", "0"));
+    public final int mongoPoolMaxConnecting      = Integer.parseInt(env("MONGO_POOL_MAX_CONNECTING", "2"));
+    public final long mongoConnectTimeoutMs      = Long.parseLong(env("MONGO_CONNECT_TIMEOUT_MS", "10000"));
+    public final long mongoSocketTimeoutMs       = Long.parseLong(env("MONGO_SOCKET_TIMEOUT_MS", "0"));
+    public final long mongoServerSelectionTimeoutMs = Long.parseLong(env("MONGO_SERVER_SELECTION_TIMEOUT_MS", "30000"));
+    public final String mongoCompressors         = env("MONGO_COMPRESSORS", "");
+    public final String mongoReadPreference      = env("MONGO_READ_PREFERENCE", "primary");
+    public final String mongoWriteConcern        = env("MONGO_WRITE_CONCERN", "default");
+    // Pool/command listener behind /stats/mongo
+    public final boolean mongoPoolMonitor        = Boolean.parseBoolean(env("MONGO_POOL_MONITOR", "true"));
+
     public final int httpPort = Integer.parseInt(env("APP_PORT", "8080"));
     // Optional: bind address if you want; leaving default behavior is fine
     public final String bindHost = env("APP_BIND_HOST", "0.0.0.0");
+    // Request execution: virtual (a virtual thread per request) | platform (Jetty pool of HTTP_MAX_THREADS)
+    // | reactive (same pool; by-id/by-mongoid reads and plain POST /events run on the async driver)
+    public final String httpExecutionMode    = env("HTTP_EXECUTION_MODE", "virtual");
+    public final int httpMaxThreads          = Integer.parseInt(env("HTTP_MAX_THREADS", "250"));
+    // Admission control: requests beyond this many in flight get 503 + Retry-After; 0 = unlimited
+    public final int httpMaxInFlight         = Integer.parseInt(env("HTTP_MAX_IN_FLIGHT", "2000"));
+    public final int httpRetryAfterSeconds   = Integer.parseInt(env("HTTP_RETRY_AFTER_SECONDS", "1"));
+    // Response compression: encodings offered, in preference order (zstd,br,gzip); empty = off.
+    // Bodies shorter than HTTP_COMPRESSION_MIN_BYTES go out uncompressed
+    public final String httpCompression      = env("HTTP_COMPRESSION", "zstd,br,gzip");
+    public final int httpCompressionMinBytes = Integer.parseInt(env("HTTP_COMPRESSION_MIN_BYTES", "1024"));
+    // ETag / If-None-Match on event reads (lists need the change stream for their high-water mark)
+    public final boolean httpEtags           = Boolean.parseBoolean(env("HTTP_ETAGS", "true"));
+
+    // BSON mapping: direct (hand-written codecs) | pojo (reflective); typed payload decodes into Payload/Meta
+    public final String mongoCodec         = env("MONGO_CODEC", "direct");
+    public final boolean mongoTypedPayload = Boolean.parseBoolean(env("MONGO_TYPED_PAYLOAD", "false"));
+
+    // GET /events streaming: driver cursor batch size and the largest page a client may ask for
+    public final int eventsBatchSize = Integer.parseInt(env("EVENTS_BATCH_SIZE", "1000"));
+    public final int eventsMaxPage   = Integer.parseInt(env("EVENTS_MAX_PAGE", "10000"));
+    // list/range endpoints transcode raw BSON to JSON instead of decoding HybridEvent and re-encoding it
+    public final boolean eventsRawPassthrough = Boolean.parseBoolean(env("EVENTS_RAW_PASSTHROUGH", "true"));
+
+    // Idempotent ingest: make id_1 unique at startup (collMod, MongoDB 6.0+), and the default
+    // conflict policy for POST /events[/batch] (none | keep_first | last_write_wins | reject; ?onConflict= overrides)
+    public final boolean eventsUniqueIdIndex = Boolean.parseBoolean(env("EVENTS_UNIQUE_ID_INDEX", "false"));
+    public final String ingestConflictPolicy = env("INGEST_CONFLICT_POLICY", "none");
+
+    // POST /events/batch: valid items are written with unordered insertMany in sub-batches of this size
+    public final int batchSubBatchSize = Integer.parseInt(env("BATCH_SUB_BATCH_SIZE", "1000"));
+
+    // POST /events group commit: concurrent single inserts are gathered into one unordered insertMany,
+    // flushed after lingerMs or at maxBatch; a full queue answers 503
+    public final boolean ingestCoalesceEnabled = Boolean.parseBoolean(env("INGEST_COALESCE_ENABLED", "false"));
+    public final int ingestCoalesceMaxBatch    = Integer.parseInt(env("INGEST_COALESCE_MAX_BATCH", "500"));
+    public final long ingestCoalesceLingerMs   = Long.parseLong(env("INGEST_COALESCE_LINGER_MS", "2"));
+    public final int ingestCoalesceMaxQueued   = Integer.parseInt(env("INGEST_COALESCE_MAX_QUEUED", "10000"));
+    public final int ingestCoalesceFlushers    = Integer.parseInt(env("INGEST_COALESCE_FLUSHERS", "2"));
+    // Write concern per ingest mode: default (client/server default) | majority | <w>[,j] e.g. 1 or 1,j
+    public final String ingestWriteConcern         = env("INGEST_WRITE_CONCERN", "default");
+    public final String ingestCoalesceWriteConcern = env("INGEST_COALESCE_WRITE_CONCERN", "default");
+
+    // Ingest admission (POST /events, /events/batch, /events/import-file). Per-client token bucket in
+    // events/s (0 = off): clients are told apart by INGEST_CLIENT_ID_HEADER, or the remote address when
+    // it is empty/missing; over the limit -> 429. Global concurrency limit follows ingest request latency
+    // per event (AIMD toward INGEST_LATENCY_TARGET_MS; 5xx count as slow); over the limit -> 503.
+    public final double ingestClientRate       = Double.parseDouble(env("INGEST_CLIENT_RATE", "20000"));
+    public final long ingestClientBurst        = Long.parseLong(env("INGEST_CLIENT_BURST", "50000"));
+    public final String ingestClientIdHeader   = env("INGEST_CLIENT_ID_HEADER", "");
+    public final int ingestMaxClients          = Integer.parseInt(env("INGEST_MAX_CLIENTS", "10000"));
+    public final boolean ingestAdaptiveEnabled = Boolean.parseBoolean(env("INGEST_ADAPTIVE_ENABLED", "true"));
+    public final int ingestConcurrencyInitial  = Integer.parseInt(env("INGEST_CONCURRENCY_INITIAL", "32"));
+    public final int ingestConcurrencyMin      = Integer.parseInt(env("INGEST_CONCURRENCY_MIN", "4"));
+    public final int ingestConcurrencyMax      = Integer.parseInt(env("INGEST_CONCURRENCY_MAX", "256"));
+    public final long ingestLatencyTargetMs    = Long.parseLong(env("INGEST_LATENCY_TARGET_MS", "50"));
+
+    // Local write-ahead spool (POST /events and producers) used while MongoDB is failing over:
+    // switch after errorThreshold consecutive failover errors or latencyThreshold consecutive writes slower
+    // than slowWriteMs; fsync = always | interval | none
+    public final boolean spoolEnabled       = Boolean.parseBoolean(env("SPOOL_ENABLED", "false"));
+    public final String spoolDir            = env("SPOOL_DIR", "spool");
+    public final int spoolSegmentMb         = Integer.parseInt(env("SPOOL_SEGMENT_MB", "64"));
+    public final long spoolMaxMb            = Long.parseLong(env("SPOOL_MAX_MB", "2048"));
+    public final String spoolFsync          = env("SPOOL_FSYNC", "interval");
+    public final long spoolFsyncIntervalMs  = Long.parseLong(env("SPOOL_FSYNC_INTERVAL_MS", "100"));
+    public final long spoolSlowWriteMs      = Long.parseLong(env("SPOOL_SLOW_WRITE_MS", "500"));
+    public final int spoolLatencyThreshold  = Integer.parseInt(env("SPOOL_LATENCY_THRESHOLD", "5"));
+    public final int spoolErrorThreshold    = Integer.parseInt(env("SPOOL_ERROR_THRESHOLD", "3"));
+    public final int spoolDrainBatch        = Integer.parseInt(env("SPOOL_DRAIN_BATCH", "500"));
+
+    // /events/import-file: rows per insertMany and how many parsed chunks may wait for the writer
+    public final int importChunkSize  = Integer.parseInt(env("IMPORT_CHUNK_SIZE", "1000"));
+    public final int importQueueDepth = Integer.parseInt(env("IMPORT_QUEUE_DEPTH", "2"));
+    // Background import jobs: how many files import at once and how many may wait for a slot
+    public final int importMaxConcurrent = Integer.parseInt(env("IMPORT_MAX_CONCURRENT", "2"));
+    public final int importMaxQueued     = Integer.parseInt(env("IMPORT_MAX_QUEUED", "16"));
+
+    // Read-through cache for point lookups (by id / mongoId / event_ts); 404s use the shorter negative TTL
+    public final boolean cacheEnabled         = Boolean.parseBoolean(env("CACHE_ENABLED", "true"));
+    public final int cacheMaxEntries          = Integer.parseInt(env("CACHE_MAX_ENTRIES", "10000"));
+    public final long cacheTtlSeconds         = Long.parseLong(env("CACHE_TTL_SECONDS", "60"));
+    public final long cacheNegativeTtlSeconds = Long.parseLong(env("CACHE_NEGATIVE_TTL_SECONDS", "5"));
+
+    // Change stream on the events collection: feeds /events/latest and cross-process cache invalidation
+    public final boolean changeStreamEnabled = Boolean.parseBoolean(env("CHANGE_STREAM_ENABLED", "true"));
+    public final int latestBufferSize        = Integer.parseInt(env("LATEST_BUFFER_SIZE", "1000"));
+    // /events/stream (SSE): per-subscriber queue, subscriber cap, and what to do with a full queue (drop_oldest|disconnect)
+    public final int sseQueueSize            = Integer.parseInt(env("SSE_QUEUE_SIZE", "256"));
+    public final int sseMaxSubscribers       = Integer.parseInt(env("SSE_MAX_SUBSCRIBERS", "1000"));
+    public final String sseSlowConsumerPolicy = env("SSE_SLOW_CONSUMER_POLICY", "drop_oldest");
+
+    // /events/stats: closed windows are cached; a window counts as closed closedGrace after it ends
+    public final int statsCacheMaxBuckets    = Integer.parseInt(env("STATS_CACHE_MAX_BUCKETS", "50000"));
+    public final long statsCacheTtlSeconds   = Long.parseLong(env("STATS_CACHE_TTL_SECONDS", "3600"));
+    public final long statsClosedGraceSeconds = Long.parseLong(env("STATS_CLOSED_GRACE_SECONDS", "60"));
+    public final int statsMaxBuckets         = Integer.parseInt(env("STATS_MAX_BUCKETS", "10000"));
+
+    // Incremental rollups (hybrid_events_rollup), fed from the write path; long-range /events/stats reads them
+    public final boolean rollupEnabled         = Boolean.parseBoolean(env("ROLLUP_ENABLED", "true"));
+    public final long rollupFlushMs            = Long.parseLong(env("ROLLUP_FLUSH_MS", "1000"));
+    public final long statsRollupMinRangeHours = Long.parseLong(env("STATS_ROLLUP_MIN_RANGE_HOURS", "6"));
+
+    // Producer id allocation: "block" leases ranges of ids with one $inc, "counter" does one round trip per event
+    public final String producerIdAllocator = env("PRODUCER_ID_ALLOCATOR", "block");
+    public final int producerIdBlockMin     = Integer.parseInt(env("PRODUCER_ID_BLOCK_MIN", "16"));
+    public final int producerIdBlockMax     = Integer.parseInt(env("PRODUCER_ID_BLOCK_MAX", "4096"));
+
+    // Producer /metrics (Prometheus text) on this port; 0 = off
+    public final int producerMetricsPort    = Integer.parseInt(env("PRODUCER_METRICS_PORT", "0"));
+
+    // Batch producer mode defaults (ProducerMain batch ...); rate 0 = unlimited
+    public final int producerBatchSize      = Integer.parseInt(env("PRODUCER_BATCH_SIZE", "500"));
+    public final long producerLingerMs      = Long.parseLong(env("PRODUCER_LINGER_MS", "20"));
+    public final double producerTargetRate  = Double.parseDouble(env("PRODUCER_TARGET_RATE", "0"));
+    public final int producerWorkers        = Integer.parseInt(env("PRODUCER_WORKERS", "8"));
 
     private static String env(String k, String def) {
         String v = System.getenv(k);
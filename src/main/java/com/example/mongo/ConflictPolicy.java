@@ -0,0 +1,26 @@
+package com.example.mongo;
+
+import java.util.Locale;
+
+/**
+ * What an idempotent ingest does when an event's business id is already stored.
+ *
+ * KEEP_FIRST       the stored event wins; retries are no-ops ($setOnInsert upsert)
+ * LAST_WRITE_WINS  the event with the newer (or equal) event_ts replaces the stored one; older ones are ignored
+ * REJECT           plain insert; the unique id index turns the retry into a duplicate error
+ */
+public enum ConflictPolicy {
+    KEEP_FIRST,
+    LAST_WRITE_WINS,
+    REJECT;
+
+    /** "keep_first" / "last_write_wins" / "reject"; null or "none" means blind inserts (no policy). */
+    public static ConflictPolicy parse(String value) {
+        if (value == null || value.isBlank() || "none".equalsIgnoreCase(value.trim())) return null;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("onConflict must be one of none, keep_first, last_write_wins, reject");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * One findOneAndUpdate round trip per value (the original producer behaviour).
+ * Gap-free, but every event pays an extra write and all producers contend on one document.
+ */
+public class CounterSequenceAllocator implements SequenceAllocator {
+
+    public static final String DEFAULT_COUNTER_ID = "hybrid_events_id_seq";
+
+    private final MongoCollection<Document> counters;
+    private final String counterId;
+
+    public CounterSequenceAllocator(MongoCollection<Document> counters) {
+        this(counters, DEFAULT_COUNTER_ID);
+    }
+
+    public CounterSequenceAllocator(MongoCollection<Document> counters, String counterId) {
+        this.counters = counters;
+        this.counterId = counterId;
+    }
+
+    @Override
+    public long next() {
+        return increment(counters, counterId, 1);
+    }
+
+    /** Atomically adds {@code delta} to the counter and returns the new value (upserting the counter if needed). */
+    static long increment(MongoCollection<Document> counters, String counterId, long delta) {
+        Document updated = counters.findOneAndUpdate(
+                eq("_id", counterId),
+                Updates.combine(
+                        Updates.inc("seq", delta),
+                        Updates.setOnInsert("_id", counterId)
+                ),
+                new FindOneAndUpdateOptions()
+                        .upsert(true)
+                        .returnDocument(ReturnDocument.AFTER)
+        );
+
+        Object seqObj = updated.get("seq");
+        if (seqObj instanceof Number n) return n.longValue();
+        throw new IllegalStateException("Counter seq is not numeric: " + seqObj);
+    }
+}
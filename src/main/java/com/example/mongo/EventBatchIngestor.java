@@ -0,0 +1,166 @@
+package com.example.mongo;
+
+import com.mongodb.MongoException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * POST /events/batch write path: pulls events one at a time from a {@link EventBatchReader}
+ * iterator, validates each with {@link EventValidator}, and writes the valid ones in sub-batches
+ * of at most subBatchSize with unordered insertMany. A bad or duplicate item only affects itself.
+ *
+ * Memory is bounded by the sub-batch, plus one status byte per item and at most
+ * MAX_REPORTED_ERRORS error details.
+ */
+public class EventBatchIngestor {
+
+    public enum Status { INSERTED, REPLACED, DUPLICATE, INVALID, FAILED }
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final HybridEventRepository repo;
+    private final int subBatchSize;
+
+    public EventBatchIngestor(HybridEventRepository repo, int subBatchSize) {
+        this.repo = repo;
+        this.subBatchSize = Math.max(1, subBatchSize);
+    }
+
+    public Result ingest(Iterator<HybridEvent> items) {
+        return ingest(items, null);
+    }
+
+    /** {@code policy} null = blind inserts; otherwise idempotent upserts on the business id. */
+    public Result ingest(Iterator<HybridEvent> items, ConflictPolicy policy) {
+        Result r = new Result();
+        List<HybridEvent> chunk = new ArrayList<>(subBatchSize);
+        int[] chunkIndexes = new int[subBatchSize];
+        int index = 0;
+
+        while (true) {
+            HybridEvent e;
+            try {
+                if (!items.hasNext()) break;
+                e = items.next();
+            } catch (EventBatchReader.InvalidItemException ex) {
+                r.mark(index++, Status.INVALID, null, ex.getMessage());
+                continue;
+            } catch (IllegalArgumentException ex) {
+                r.abort(400, "body unreadable after item " + index + ": " + ex.getMessage());
+                break;
+            }
+
+            String problem = EventValidator.problem(e);
+            if (problem != null) {
+                r.mark(index++, Status.INVALID, e.getId(), problem);
+                continue;
+            }
+            chunkIndexes[chunk.size()] = index++;
+            chunk.add(e);
+            if (chunk.size() == subBatchSize && !flush(chunk, chunkIndexes, policy, r)) return r;
+        }
+        flush(chunk, chunkIndexes, policy, r);
+        return r;
+    }
+
+    /** @return false when the database failed outright; the rest of the body is not read then */
+    private boolean flush(List<HybridEvent> chunk, int[] indexes, ConflictPolicy policy, Result r) {
+        if (chunk.isEmpty()) return true;
+        try {
+            if (policy != null) {
+                UpsertResult res = repo.upsertMany(chunk, policy);
+                for (int i = 0; i < chunk.size(); i++) {
+                    String msg = res.message(i) != null ? res.message(i) : "event with this id already exists";
+                    r.mark(indexes[i], Status.valueOf(res.outcome(i).name()), chunk.get(i).getId(), msg);
+                }
+                return true;
+            }
+            BulkInsertResult res = repo.insertManyUnordered(chunk);
+            for (int i = 0; i < chunk.size(); i++) r.mark(indexes[i], Status.INSERTED, null, null);
+            for (BulkInsertResult.Failure f : res.failures()) {
+                r.mark(indexes[f.index], f.isDuplicate() ? Status.DUPLICATE : Status.FAILED, chunk.get(f.index).getId(), f.message);
+            }
+            return true;
+        } catch (MongoException e) {
+            for (int i = 0; i < chunk.size(); i++) r.mark(indexes[i], Status.FAILED, chunk.get(i).getId(), e.getMessage());
+            r.abort(503, "write failed: " + e.getMessage());
+            return false;
+        } finally {
+            chunk.clear();
+        }
+    }
+
+    public static final class Result {
+        private byte[] statuses = new byte[256];
+        private int received;
+        private final long[] counts = new long[Status.values().length];
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private boolean errorsTruncated;
+        private String aborted;
+        private int abortStatus;
+
+        void mark(int index, Status status, String id, String message) {
+            if (index >= statuses.length) statuses = Arrays.copyOf(statuses, Math.max(index + 1, statuses.length * 2));
+            if (index >= received) received = index + 1;
+            if (statuses[index] != 0) counts[statuses[index] - 1]--; // re-marked after the write (duplicate / failed)
+            statuses[index] = (byte) (status.ordinal() + 1); // 0 = not written yet
+            counts[status.ordinal()]++;
+            if (status == Status.INSERTED || status == Status.REPLACED) return;
+
+            if (errors.size() >= MAX_REPORTED_ERRORS) {
+                errorsTruncated = true;
+                return;
+            }
+            Map<String, Object> err = new LinkedHashMap<>();
+            err.put("index", index);
+            err.put("status", name(status));
+            if (id != null) err.put("id", id);
+            err.put("error", message);
+            errors.add(err);
+        }
+
+        void abort(int httpStatus, String message) {
+            this.abortStatus = httpStatus;
+            this.aborted = message;
+        }
+
+        public long count(Status s) { return counts[s.ordinal()]; }
+        public int received() { return received; }
+        /** null while the item still sits in an unflushed sub-batch. */
+        public Status status(int index) { return statuses[index] == 0 ? null : Status.values()[statuses[index] - 1]; }
+        public boolean isAborted() { return aborted != null; }
+
+        /** 201 all written, 207 some items were not, 400/503 when the body or the database gave out. */
+        public int httpStatus() {
+            if (aborted != null) return abortStatus;
+            return count(Status.INSERTED) + count(Status.REPLACED) == received ? 201 : 207;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("received", received);
+            m.put("inserted", count(Status.INSERTED));
+            m.put("replaced", count(Status.REPLACED));
+            m.put("duplicates", count(Status.DUPLICATE));
+            m.put("invalid", count(Status.INVALID));
+            m.put("failed", count(Status.FAILED));
+            List<String> results = new ArrayList<>(received);
+            for (int i = 0; i < received; i++) results.add(status(i) == null ? null : name(status(i)));
+            m.put("results", results);
+            m.put("errors", errors);
+            if (errorsTruncated) m.put("errorsTruncated", true);
+            if (aborted != null) m.put("aborted", aborted);
+            return m;
+        }
+
+        private static String name(Status s) {
+            return s.name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.bson.BsonBinaryReader;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a request body of events incrementally, one event at a time, in any of the
+ * {@link EventStreamWriter.Format}s:
+ *
+ * JSON / SMILE / CBOR: an array of events (or a root-level sequence of events)
+ * NDJSON:              one event per line
+ * BSON:                a document sequence, decoded by the app's HybridEvent codec (no text parsing)
+ *
+ * Malformed input surfaces from hasNext()/next() as IllegalArgumentException. When only one item is
+ * bad (wrong field types, a BSON document that does not decode) it is an {@link InvalidItemException}
+ * and reading can continue with the next item; any other exception ends the stream.
+ */
+public class EventBatchReader {
+
+    /** One event could not be decoded, but the stream is still positioned at the next one. */
+    public static class InvalidItemException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidItemException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /** Largest single BSON document MongoDB accepts. */
+    private static final int MAX_BSON_DOCUMENT = 16 * 1024 * 1024;
+
+    private final ObjectReader jsonReader;
+    private final ObjectReader smileReader;
+    private final ObjectReader cborReader;
+    private final Codec<HybridEvent> bsonCodec;
+
+    public EventBatchReader(ObjectMapper mapper, Codec<HybridEvent> bsonCodec) {
+        this.jsonReader = mapper.readerFor(HybridEvent.class);
+        this.smileReader = mapper.copyWith(new SmileFactory()).readerFor(HybridEvent.class);
+        this.cborReader = mapper.copyWith(new CBORFactory()).readerFor(HybridEvent.class);
+        this.bsonCodec = bsonCodec;
+    }
+
+    public Iterator<HybridEvent> read(InputStream in, EventStreamWriter.Format format) throws IOException {
+        return switch (format) {
+            case JSON, NDJSON -> new Checked(jsonReader.readValues(in));
+            case SMILE -> new Checked(smileReader.readValues(in));
+            case CBOR -> new Checked(cborReader.readValues(in));
+            case BSON -> new BsonSequence(in, bsonCodec);
+        };
+    }
+
+    /** Turns Jackson's unchecked parse/mapping errors into IllegalArgumentException (-> 400). */
+    private record Checked(Iterator<HybridEvent> delegate) implements Iterator<HybridEvent> {
+        @Override
+        public boolean hasNext() {
+            try {
+                return delegate.hasNext();
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("malformed event batch: " + message(e), e);
+            }
+        }
+
+        @Override
+        public HybridEvent next() {
+            try {
+                return delegate.next();
+            } catch (NoSuchElementException e) {
+                throw e;
+            } catch (RuntimeJsonMappingException e) {
+                // syntax was fine, the value did not map: MappingIterator resumes after it
+                throw new InvalidItemException("invalid event: " + message(e), e);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("malformed event batch: " + message(e), e);
+            }
+        }
+
+        /** Jackson's message without the appended source location / reference chain. */
+        private static String message(RuntimeException e) {
+            return (e.getCause() instanceof JsonProcessingException jpe) ? jpe.getOriginalMessage() : e.getMessage();
+        }
+    }
+
+    /** Length-prefixed BSON documents back to back; the read buffer is reused between documents. */
+    private static final class BsonSequence implements Iterator<HybridEvent> {
+        private static final DecoderContext DECODE = DecoderContext.builder().build();
+
+        private final InputStream in;
+        private final Codec<HybridEvent> codec;
+        private byte[] buf = new byte[4096];
+        private int pendingLength = -1; // length of the next document once its prefix is read; 0 = end
+
+        BsonSequence(InputStream in, Codec<HybridEvent> codec) {
+            this.in = in;
+            this.codec = codec;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pendingLength < 0) pendingLength = readLength();
+            return pendingLength > 0;
+        }
+
+        @Override
+        public HybridEvent next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int len = pendingLength;
+            pendingLength = -1;
+            if (buf.length < len) buf = new byte[Math.max(len, buf.length * 2)];
+            // the prefix is part of the document
+            buf[0] = (byte) len;
+            buf[1] = (byte) (len >>> 8);
+            buf[2] = (byte) (len >>> 16);
+            buf[3] = (byte) (len >>> 24);
+            readFully(4, len - 4);
+            try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(buf, 0, len))) {
+                return codec.decode(reader, DECODE);
+            } catch (RuntimeException e) {
+                // the whole document was consumed, so the next one can still be read
+                throw new InvalidItemException("malformed BSON document: " + e.getMessage(), e);
+            }
+        }
+
+        private int readLength() {
+            try {
+                int b0 = in.read();
+                if (b0 < 0) return 0; // clean end between documents
+                int b1 = in.read(), b2 = in.read(), b3 = in.read();
+                if ((b1 | b2 | b3) < 0) throw new IllegalArgumentException("truncated BSON document length");
+                int len = b0 | (b1 << 8) | (b2 << 16) | (b3 << 24);
+                if (len < 5 || len > MAX_BSON_DOCUMENT) throw new IllegalArgumentException("invalid BSON document length " + len);
+                return len;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void readFully(int off, int len) {
+            try {
+                int n = in.readNBytes(buf, off, len);
+                if (n < len) throw new IllegalArgumentException("truncated BSON document");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.mongo;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One change stream on the events collection, fanned out to in-process listeners.
+ *
+ * - sees writes from every producer, not just this JVM
+ * - remembers the last resume token and reopens the stream after it on disconnects
+ * - if the token has fallen off the oplog, listeners get onReset() and the stream restarts at "now"
+ * - standalone servers (no replica set) cannot serve change streams; the watcher then just logs and stops
+ * - a change that cannot be decoded, or that a listener throws on, is logged and skipped; the stream goes on
+ */
+public class EventChangeStreamWatcher implements AutoCloseable {
+
+    /** Receives changes on the watcher thread; implementations must be quick. An exception only skips that change for that listener. */
+    public interface Listener {
+        void onChange(ChangeStreamDocument<HybridEvent> change);
+
+        /** Changes may have been missed (stream restarted without a valid resume token). */
+        default void onReset() {}
+    }
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private final MongoCollection<HybridEvent> collection;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong changesSeen = new AtomicLong();
+    private final AtomicLong changesSkipped = new AtomicLong();
+
+    private volatile BsonDocument resumeToken;
+    private volatile BsonTimestamp highWaterMark;
+    private volatile boolean running;
+    private volatile String lastError;
+    private MongoChangeStreamCursor<ChangeStreamDocument<HybridEvent>> initialCursor;
+    private Thread thread;
+
+    public EventChangeStreamWatcher(MongoCollection<HybridEvent> collection) {
+        this.collection = collection;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Opens the stream on the calling thread (so everything committed after this call is seen),
+     * then delivers changes on a background thread. Returns false if change streams are unavailable.
+     */
+    public synchronized boolean start() {
+        if (running) return true;
+        try {
+            initialCursor = open();
+        } catch (MongoException e) {
+            lastError = e.getMessage();
+            if (e instanceof MongoCommandException ce && ce.getErrorCode() == NOT_A_REPLICA_SET) {
+                System.out.println("**** change streams need a replica set; watcher disabled: " + lastError);
+            } else {
+                System.out.println("**** could not open change stream; watcher disabled: " + lastError);
+            }
+            return false;
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("change-stream").daemon().start(this::loop);
+        return true;
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<HybridEvent>> open() {
+        ChangeStreamIterable<HybridEvent> stream = collection.watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) stream = stream.resumeAfter(resumeToken);
+        return stream.cursor();
+    }
+
+    private void loop() {
+        MongoChangeStreamCursor<ChangeStreamDocument<HybridEvent>> cursor = initialCursor;
+        initialCursor = null;
+        long backoffMillis = 100;
+
+        try {
+            while (running) {
+                try {
+                    if (cursor == null) cursor = open();
+                    ChangeStreamDocument<HybridEvent> change;
+                    try {
+                        change = cursor.tryNext();
+                    } catch (MongoException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        // the document did not decode (e.g. a mistyped field); the cursor has already moved past it
+                        changesSkipped.incrementAndGet();
+                        lastError = e.toString();
+                        System.out.println("**** change stream: skipping a change that could not be decoded: " + e);
+                        BsonDocument token = cursor.getResumeToken();
+                        if (token != null) resumeToken = token;
+                        continue;
+                    }
+                    if (change == null) {
+                        // idle: keep the post-batch token so resuming does not replay from far back
+                        BsonDocument token = cursor.getResumeToken();
+                        if (token != null) resumeToken = token;
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    if (change.getClusterTime() != null) highWaterMark = change.getClusterTime();
+                    changesSeen.incrementAndGet();
+                    deliver(change);
+                    backoffMillis = 100;
+                } catch (MongoException e) {
+                    lastError = e.getMessage();
+                    // changes made while disconnected arrive late (or never, after a reset): not current any more
+                    highWaterMark = null;
+                    closeQuietly(cursor);
+                    cursor = null;
+                    if (e instanceof MongoCommandException ce && ce.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                        System.out.println("**** change stream resume token expired; restarting from now");
+                        resumeToken = null;
+                        for (Listener l : listeners) {
+                            try { l.onReset(); } catch (RuntimeException le) { listenerFailed(l, le); }
+                        }
+                    } else {
+                        System.out.println("**** change stream interrupted, resuming in " + backoffMillis + "ms: " + e.getMessage());
+                    }
+                    sleep(backoffMillis);
+                    backoffMillis = Math.min(backoffMillis * 2, 10_000);
+                }
+            }
+        } finally {
+            // however the thread ends, stop advertising a buffer and high-water mark that no longer follow the collection
+            running = false;
+            highWaterMark = null;
+            closeQuietly(cursor);
+        }
+    }
+
+    private void deliver(ChangeStreamDocument<HybridEvent> change) {
+        for (Listener l : listeners) {
+            try {
+                l.onChange(change);
+            } catch (RuntimeException e) {
+                listenerFailed(l, e);
+            }
+        }
+    }
+
+    private void listenerFailed(Listener l, RuntimeException e) {
+        changesSkipped.incrementAndGet();
+        lastError = e.toString();
+        System.out.println("**** change stream listener " + l.getClass().getSimpleName() + " failed; change skipped for it: " + e);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Cluster time of the last change delivered, i.e. the collection has not changed since as far as
+     * this watcher knows. Null until the first change, while stopped, and after an interruption until
+     * the next change arrives.
+     */
+    public BsonTimestamp highWaterMark() {
+        return running ? highWaterMark : null;
+    }
+
+    public Map<String, Object> status() {
+        return Map.of(
+                "running", running,
+                "changesSeen", changesSeen.get(),
+                "changesSkipped", changesSkipped.get(),
+                "hasResumeToken", resumeToken != null,
+                "highWaterMark", String.valueOf(highWaterMark()),
+                "lastError", String.valueOf(lastError)
+        );
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            try { thread.join(3_000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        }
+        closeQuietly(initialCursor);
+    }
+
+    private static void closeQuietly(MongoChangeStreamCursor<?> cursor) {
+        if (cursor == null) return;
+        try { cursor.close(); } catch (RuntimeException ignored) {}
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
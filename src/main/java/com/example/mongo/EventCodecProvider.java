@@ -0,0 +1,30 @@
+package com.example.mongo;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/** Supplies the hand-written HybridEvent / Payload / Meta codecs. Register it ahead of the POJO provider. */
+public class EventCodecProvider implements CodecProvider {
+
+    private final boolean typedPayload;
+
+    public EventCodecProvider(boolean typedPayload) {
+        this.typedPayload = typedPayload;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (clazz == HybridEvent.class) {
+            return (Codec<T>) new HybridEventCodec(registry, payloadCodec(registry), typedPayload);
+        }
+        if (clazz == Payload.class) return (Codec<T>) payloadCodec(registry);
+        if (clazz == Meta.class) return (Codec<T>) new MetaCodec(registry);
+        return null;
+    }
+
+    private static PayloadCodec payloadCodec(CodecRegistry registry) {
+        return new PayloadCodec(registry, new MetaCodec(registry));
+    }
+}
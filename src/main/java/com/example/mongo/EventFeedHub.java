@@ -0,0 +1,157 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.javalin.http.sse.SseClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes newly inserted events to Server-Sent Events subscribers (GET /events/stream).
+ *
+ * All subscribers hang off the single shared change stream. Each event is serialized at most
+ * once, and only if some subscriber's filter matches it. Every subscriber has its own bounded
+ * queue drained by its own virtual thread, so a slow client never holds up the stream or the
+ * other clients: when its queue is full it either loses its oldest queued events or is
+ * disconnected, depending on the policy.
+ */
+public class EventFeedHub implements EventChangeStreamWatcher.Listener {
+
+    public enum SlowConsumerPolicy { DROP_OLDEST, DISCONNECT }
+
+    private static final long KEEPALIVE_SECONDS = 15;
+
+    private final ObjectMapper mapper;
+    private final int queueSize;
+    private final int maxSubscribers;
+    private final SlowConsumerPolicy policy;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    public EventFeedHub(ObjectMapper mapper, int queueSize, int maxSubscribers, SlowConsumerPolicy policy) {
+        this.mapper = mapper;
+        this.queueSize = queueSize;
+        this.maxSubscribers = maxSubscribers;
+        this.policy = policy;
+    }
+
+    /**
+     * Registers an SSE client and starts its sender. Returns false (and closes the client)
+     * when the hub is at its subscriber limit.
+     */
+    public boolean subscribe(SseClient client, EventFilter filter) {
+        if (subscribers.size() >= maxSubscribers) {
+            client.sendEvent("error", "{\"error\":\"too many subscribers\"}");
+            client.close();
+            return false;
+        }
+        Subscriber s = new Subscriber(client, filter);
+        subscribers.add(s);
+        client.onClose(() -> s.stop());
+        client.keepAlive();
+        Thread.ofVirtual().name("sse-sender").start(s::drain);
+        return true;
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<HybridEvent> change) {
+        if (change.getOperationType() != OperationType.INSERT) return;
+        HybridEvent e = change.getFullDocument();
+        if (e == null || subscribers.isEmpty()) return;
+
+        Item item = null;
+        for (Subscriber s : subscribers) {
+            if (!s.filter.matches(e)) continue;
+            if (item == null) {
+                try {
+                    item = new Item(e.getMongoId(), mapper.writeValueAsString(e));
+                } catch (JsonProcessingException ex) {
+                    return;
+                }
+            }
+            s.offer(item);
+        }
+    }
+
+    @Override
+    public void onReset() {
+        for (Subscriber s : subscribers) s.offer(Item.RESET);
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "subscribers", subscribers.size(),
+                "delivered", delivered.get(),
+                "dropped", dropped.get(),
+                "disconnectedSlow", disconnected.get(),
+                "policy", policy.name()
+        );
+    }
+
+    private record Item(String id, String json) {
+        static final Item RESET = new Item(null, null);
+    }
+
+    private final class Subscriber {
+        private final SseClient client;
+        private final EventFilter filter;
+        private final BlockingQueue<Item> queue = new ArrayBlockingQueue<>(queueSize);
+        private volatile boolean stopped;
+
+        Subscriber(SseClient client, EventFilter filter) {
+            this.client = client;
+            this.filter = filter;
+        }
+
+        /** Called on the change stream thread: must never block. */
+        void offer(Item item) {
+            if (stopped || queue.offer(item)) return;
+            if (policy == SlowConsumerPolicy.DISCONNECT) {
+                disconnected.incrementAndGet();
+                stop();
+                return;
+            }
+            while (!queue.offer(item)) {
+                if (queue.poll() != null) dropped.incrementAndGet();
+            }
+        }
+
+        void drain() {
+            try {
+                while (!stopped && !client.terminated()) {
+                    Item item = queue.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+                    if (item == null) client.sendComment("keepalive");
+                    else if (item == Item.RESET) client.sendEvent("reset", "{}");
+                    else {
+                        client.sendEvent("event", item.json, item.id);
+                        delivered.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException clientGone) {
+                // broken pipe etc.; fall through to cleanup
+            } finally {
+                stop();
+            }
+        }
+
+        void stop() {
+            if (stopped) return;
+            stopped = true;
+            subscribers.remove(this);
+            try { client.close(); } catch (RuntimeException ignored) {}
+        }
+    }
+}
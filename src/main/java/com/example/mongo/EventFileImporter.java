@@ -0,0 +1,280 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a JSON array or NDJSON file of events with memory bounded by chunk size, not file size.
+ *
+ * Parse stage (caller thread): Jackson streaming parser over a FileChannel, one event at a time.
+ * Write stage (own thread): unordered insertMany per chunk.
+ * The stages are connected by a small bounded queue, so parsing runs ahead of writing by at
+ * most queueDepth chunks.
+ *
+ * Rows that fail mapping or validation are counted as invalid and skipped; malformed JSON
+ * (syntax errors) ends the import because the parser cannot resynchronize.
+ *
+ * Resuming: every chunk carries the file offset just after its last row. An import can be
+ * restarted from such an offset; when it is, the first chunk after it is checked against existing
+ * ids because it may have been written (wholly or partly) before the previous run stopped. That
+ * holds at offset 0 too: a run can die after its first insert but before its first checkpoint.
+ */
+public class EventFileImporter {
+
+    /** Called on the writer thread after each chunk is durably written. */
+    public interface CommitListener {
+        void committed(ImportProgress progress);
+    }
+
+    private static final Chunk END = new Chunk(List.of(), -1);
+    private static final byte[] ARRAY_PREFIX = "[".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper mapper;
+    private final HybridEventRepository repo;
+    private final int chunkSize;
+    private final int queueDepth;
+
+    public EventFileImporter(ObjectMapper mapper, HybridEventRepository repo, int chunkSize, int queueDepth) {
+        if (chunkSize < 1 || queueDepth < 1) throw new IllegalArgumentException("chunkSize and queueDepth must be >= 1");
+        this.mapper = mapper;
+        this.repo = repo;
+        this.chunkSize = chunkSize;
+        this.queueDepth = queueDepth;
+    }
+
+    /** Runs the whole import on the calling thread (plus one writer thread) and returns when it is done. */
+    public ImportProgress importFile(Path file) throws IOException {
+        ImportProgress progress = new ImportProgress(file.toString(), file.toFile().length());
+        run(file, progress, 0, false, null);
+        return progress;
+    }
+
+    /**
+     * Imports from {@code startOffset} (0 = beginning, otherwise an offset previously reported in
+     * {@link ImportProgress#getBytesCommitted()}), updating {@code progress} as it goes.
+     * {@code resumed}: an earlier run of this import may have written rows past {@code startOffset}.
+     */
+    public void run(Path file, ImportProgress progress, long startOffset, boolean resumed, CommitListener listener) throws IOException {
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(queueDepth);
+        Writer writer = new Writer(queue, progress, listener, resumed);
+        Thread writerThread = Thread.ofPlatform().name("import-writer").daemon().start(writer);
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long base = 0;
+            InputStream in;
+            if (startOffset <= 0) {
+                in = Channels.newInputStream(ch);
+            } else if (startsWithArray(ch)) {
+                // Re-open the array just before the next element so the parser sees "[ {...}, ... ]"
+                long next = nextObjectOffset(ch, startOffset);
+                in = (next < 0)
+                        ? InputStream.nullInputStream()
+                        : new SequenceInputStream(new ByteArrayInputStream(ARRAY_PREFIX), Channels.newInputStream(ch.position(next)));
+                base = next - ARRAY_PREFIX.length;
+            } else {
+                in = Channels.newInputStream(ch.position(startOffset));
+                base = startOffset;
+            }
+
+            try (JsonParser parser = mapper.getFactory().createParser(in)) {
+                parse(parser, base, queue, writer, progress);
+            }
+            put(queue, END, writer);
+            writerThread.join();
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            writerThread.interrupt();
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            progress.finish(describe(e));
+            if (e instanceof IOException io) throw io;
+            throw new IOException(e);
+        }
+
+        progress.finish(writer.failure == null ? null : describe(writer.failure));
+        if (writer.failure != null) throw new IOException("import write failed", writer.failure);
+    }
+
+    private void parse(JsonParser parser, long base, BlockingQueue<Chunk> queue, Writer writer, ImportProgress progress)
+            throws IOException, InterruptedException {
+        JsonToken first = parser.nextToken();
+        if (first == null) return; // empty file (or nothing left after the checkpoint)
+        boolean array = first == JsonToken.START_ARRAY;
+        if (!array && first != JsonToken.START_OBJECT) {
+            throw new IOException("expected a JSON array or NDJSON objects, found " + first);
+        }
+
+        List<HybridEvent> chunk = new ArrayList<>(chunkSize);
+        JsonToken t = array ? parser.nextToken() : first;
+        while (t != null && !(array && t == JsonToken.END_ARRAY)) {
+            if (t != JsonToken.START_OBJECT) throw new IOException("expected an event object, found " + t);
+
+            JsonNode node = parser.readValueAsTree();
+            progress.rowsParsed.incrementAndGet();
+            HybridEvent e = toEvent(node);
+            if (e == null) progress.rowsInvalid.incrementAndGet();
+            else chunk.add(e);
+
+            if (chunk.size() == chunkSize) {
+                long offset = base + parser.currentLocation().getByteOffset();
+                progress.bytesRead.set(offset);
+                put(queue, new Chunk(chunk, offset), writer);
+                chunk = new ArrayList<>(chunkSize);
+            }
+            t = parser.nextToken();
+        }
+
+        long offset = base + parser.currentLocation().getByteOffset();
+        progress.bytesRead.set(offset);
+        if (!chunk.isEmpty()) put(queue, new Chunk(chunk, offset), writer);
+    }
+
+    private HybridEvent toEvent(JsonNode node) {
+        try {
+            HybridEvent e = mapper.treeToValue(node, HybridEvent.class);
+            return EventValidator.problem(e) == null ? e : null;
+        } catch (IOException | IllegalArgumentException mappingError) {
+            return null;
+        }
+    }
+
+    private static boolean startsWithArray(FileChannel ch) throws IOException {
+        return nextNonWhitespace(ch, 0) == '[';
+    }
+
+    /** Offset of the next '{' at or after {@code from}, skipping whitespace and commas; -1 at ']' or EOF. */
+    private static long nextObjectOffset(FileChannel ch, long from) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long pos = from;
+        while (true) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) return -1;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '{') return pos + i;
+                if (b == ']') return -1;
+                if (b != ',' && !Character.isWhitespace(b)) {
+                    throw new IOException("checkpoint offset " + from + " is not between array elements");
+                }
+            }
+            pos += n;
+        }
+    }
+
+    private static int nextNonWhitespace(FileChannel ch, long from) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        long pos = from;
+        while (true) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) return -1;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (!Character.isWhitespace(b)) return b;
+            }
+            pos += n;
+        }
+    }
+
+    private static void put(BlockingQueue<Chunk> queue, Chunk chunk, Writer writer) throws InterruptedException {
+        // don't block forever on a writer that has already died
+        while (!queue.offer(chunk, 200, TimeUnit.MILLISECONDS)) {
+            if (writer.failure != null) throw new IllegalStateException("import writer stopped", writer.failure);
+        }
+    }
+
+    private static String describe(Throwable e) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    /** Events parsed since the previous chunk, plus the file offset just after the last one. */
+    static final class Chunk {
+        final List<HybridEvent> events;
+        final long endOffset;
+
+        Chunk(List<HybridEvent> events, long endOffset) {
+            this.events = events;
+            this.endOffset = endOffset;
+        }
+    }
+
+    private final class Writer implements Runnable {
+        private final BlockingQueue<Chunk> queue;
+        private final ImportProgress progress;
+        private final CommitListener listener;
+        private boolean dedupeNext;
+        volatile Throwable failure;
+
+        Writer(BlockingQueue<Chunk> queue, ImportProgress progress, CommitListener listener, boolean resuming) {
+            this.queue = queue;
+            this.progress = progress;
+            this.listener = listener;
+            this.dedupeNext = resuming;
+        }
+
+        @Override
+        public void run() {
+            long lastReport = System.nanoTime();
+            try {
+                while (true) {
+                    Chunk c = queue.take();
+                    if (c == END) return;
+
+                    List<HybridEvent> toWrite = c.events;
+                    if (dedupeNext) {
+                        toWrite = withoutExisting(c.events);
+                        progress.rowsSkipped.addAndGet(c.events.size() - toWrite.size());
+                        dedupeNext = false;
+                    }
+
+                    BulkInsertResult r = repo.insertManyUnordered(toWrite);
+                    progress.rowsInserted.addAndGet(r.inserted());
+                    progress.rowsWriteFailed.addAndGet(r.failures().size());
+                    progress.bytesCommitted.set(c.endOffset);
+                    if (listener != null) listener.committed(progress);
+
+                    if (System.nanoTime() - lastReport > TimeUnit.SECONDS.toNanos(10)) {
+                        lastReport = System.nanoTime();
+                        System.out.println("**** import progress " + progress);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        /** Drops rows whose business id is already stored (id_1 index lookup). */
+        private List<HybridEvent> withoutExisting(List<HybridEvent> events) {
+            List<String> ids = new ArrayList<>(events.size());
+            for (HybridEvent e : events) ids.add(e.getId());
+            Set<String> existing = repo.findExistingIds(ids);
+            if (existing.isEmpty()) return events;
+
+            List<HybridEvent> out = new ArrayList<>(events.size());
+            for (HybridEvent e : events) {
+                if (!existing.contains(e.getId())) out.add(e);
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mongo;
+
+import java.util.Map;
+
+/**
+ * Optional server-side filter on payload.status and a payload.temperature range.
+ * Checked against the decoded event, so non-matching events are never serialized.
+ */
+public final class EventFilter {
+
+    public static final EventFilter ALL = new EventFilter(null, null, null);
+
+    private final String status;
+    private final Double minTemperature;
+    private final Double maxTemperature;
+
+    public EventFilter(String status, Double minTemperature, Double maxTemperature) {
+        if (minTemperature != null && maxTemperature != null && minTemperature > maxTemperature) {
+            throw new IllegalArgumentException("minTemp must be <= maxTemp");
+        }
+        this.status = (status == null || status.isBlank()) ? null : status;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+    }
+
+    /** Builds a filter from ?status=&minTemp=&maxTemp= values (any may be null). */
+    public static EventFilter parse(String status, String minTemp, String maxTemp) {
+        return new EventFilter(status, parseDouble("minTemp", minTemp), parseDouble("maxTemp", maxTemp));
+    }
+
+    private static Double parseDouble(String name, String v) {
+        if (v == null || v.isBlank()) return null;
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    public String getStatus() { return status; }
+    public Double getMinTemperature() { return minTemperature; }
+    public Double getMaxTemperature() { return maxTemperature; }
+
+    public boolean isEmpty() {
+        return status == null && minTemperature == null && maxTemperature == null;
+    }
+
+    public boolean matches(HybridEvent e) {
+        if (isEmpty()) return true;
+        Map<String, Object> payload = e.getPayload();
+        if (payload == null) return false;
+
+        if (status != null && !status.equals(payload.get("status"))) return false;
+
+        if (minTemperature != null || maxTemperature != null) {
+            if (!(payload.get("temperature") instanceof Number n)) return false;
+            double t = n.doubleValue();
+            if (minTemperature != null && t < minTemperature) return false;
+            if (maxTemperature != null && t > maxTemperature) return false;
+        }
+        return true;
+    }
+}
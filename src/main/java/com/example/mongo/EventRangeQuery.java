@@ -0,0 +1,66 @@
+package com.example.mongo;
+
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * GET /events/range parameters: event_ts in [from, to), optional status/temperature filter,
+ * field projection, sort direction and limit.
+ */
+public final class EventRangeQuery {
+
+    /** JSON/BSON field names a client may project; "mongoId" maps to _id. */
+    public static final Set<String> PROJECTABLE = Set.of(
+            "mongoId", "event_ts", "id", "payload", "payload.status", "payload.temperature", "payload.meta");
+
+    private final Instant from;
+    private final Instant to;
+    private final EventFilter filter;
+    private final Set<String> fields;
+    private final boolean descending;
+    private final int limit;
+
+    public EventRangeQuery(Instant from, Instant to, EventFilter filter, Set<String> fields, boolean descending, int limit) {
+        if (from == null || to == null) throw new IllegalArgumentException("'from' and 'to' are required");
+        if (!from.isBefore(to)) throw new IllegalArgumentException("'from' must be before 'to'");
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        for (String f : fields) {
+            if (!PROJECTABLE.contains(f)) throw new IllegalArgumentException("cannot project field '" + f + "'");
+        }
+        this.from = from;
+        this.to = to;
+        this.filter = filter == null ? EventFilter.ALL : filter;
+        this.fields = fields;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses "a,b,c" into an ordered field set; null/blank means all fields. A field together with
+     * one of its subfields ("payload,payload.status") is rejected: MongoDB fails such a projection
+     * with a path collision.
+     */
+    public static Set<String> parseFields(String csv) {
+        Set<String> out = new LinkedHashSet<>();
+        if (csv == null || csv.isBlank()) return out;
+        for (String f : List.of(csv.split(","))) {
+            if (!f.isBlank()) out.add(f.trim());
+        }
+        for (String f : out) {
+            for (String g : out) {
+                if (g.startsWith(f + ".")) throw new IllegalArgumentException("cannot project both '" + f + "' and '" + g + "'");
+            }
+        }
+        return out;
+    }
+
+    public Instant getFrom() { return from; }
+    public Instant getTo() { return to; }
+    public EventFilter getFilter() { return filter; }
+    /** Empty = no projection. */
+    public Set<String> getFields() { return fields; }
+    public boolean isDescending() { return descending; }
+    public int getLimit() { return limit; }
+}
@@ -0,0 +1,133 @@
+package com.example.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Pre-aggregated per-minute / per-hour buckets in "hybrid_events_rollup".
+ *
+ * Document: { _id: "m:<startMillis>", g: "m"|"h", start: Date, count, tempCount, sumTemp, minTemp, maxTemp, ok, warn }
+ *
+ * Buckets are merged with $inc/$min/$max upserts, so any number of writers (app nodes,
+ * producers) can add to the same bucket. The collection has no TTL: it keeps the long-range
+ * history after the raw events expire.
+ */
+public class EventRollupStore {
+
+    public enum Granularity {
+        MINUTE("m", 60_000L),
+        HOUR("h", 3_600_000L);
+
+        public final String code;
+        public final long millis;
+
+        Granularity(String code, long millis) {
+            this.code = code;
+            this.millis = millis;
+        }
+    }
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final MongoCollection<Document> rollups;
+
+    public EventRollupStore(MongoCollection<Document> rollups) {
+        this.rollups = rollups;
+        ensureIndexesNoCrash();
+    }
+
+    // Startup must not depend on index creation: without g_1_start_1 reads still work, just slower
+    private void ensureIndexesNoCrash() {
+        try {
+            for (Document d : rollups.listIndexes()) {
+                if ("g_1_start_1".equals(d.getString("name"))) return;
+            }
+            rollups.createIndex(Indexes.ascending("g", "start"), new IndexOptions().name("g_1_start_1"));
+        } catch (MongoException e) {
+            System.out.println("**** rollup index g_1_start_1 not ensured, continuing without it: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the coalesced deltas to their bucket documents in one unordered bulk write, in the map's
+     * iteration order (so a MongoBulkWriteException's error indices refer to that order).
+     */
+    public void merge(Map<RollupAggregator.BucketKey, RollupAggregator.Delta> deltas) {
+        if (deltas.isEmpty()) return;
+        List<WriteModel<Document>> writes = new ArrayList<>(deltas.size());
+        for (Map.Entry<RollupAggregator.BucketKey, RollupAggregator.Delta> e : deltas.entrySet()) {
+            RollupAggregator.BucketKey k = e.getKey();
+            RollupAggregator.Delta d = e.getValue();
+
+            Document update = new Document("$inc", new Document("count", d.count)
+                    .append("tempCount", d.tempCount)
+                    .append("sumTemp", d.sumTemp)
+                    .append("ok", d.ok)
+                    .append("warn", d.warn))
+                    .append("$setOnInsert", new Document("g", k.granularity().code)
+                            .append("start", new Date(k.startMillis())));
+            if (d.tempCount > 0) {
+                update.append("$min", new Document("minTemp", d.minTemp));
+                update.append("$max", new Document("maxTemp", d.maxTemp));
+            }
+            writes.add(new UpdateOneModel<>(eq("_id", k.granularity().code + ":" + k.startMillis()), update, UPSERT));
+        }
+        rollups.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Re-buckets stored rollups into windows of {@code windowMillis} (a multiple of the granularity)
+     * for [from, to). Only non-empty windows are returned.
+     */
+    public List<BucketStats> buckets(Granularity g, Instant from, Instant to, long windowMillis) {
+        Document startMillis = new Document("$toLong", "$start");
+        Document window = new Document("$subtract", List.of(startMillis, new Document("$mod", List.of(startMillis, windowMillis))));
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(eq("g", g.code), Filters.gte("start", from), Filters.lt("start", to))),
+                Aggregates.group(window,
+                        Accumulators.sum("count", "$count"),
+                        Accumulators.sum("tempCount", "$tempCount"),
+                        Accumulators.sum("sumTemp", "$sumTemp"),
+                        Accumulators.min("minTemp", "$minTemp"),
+                        Accumulators.max("maxTemp", "$maxTemp"),
+                        Accumulators.sum("ok", "$ok"),
+                        Accumulators.sum("warn", "$warn")),
+                Aggregates.sort(Sorts.ascending("_id")));
+
+        List<BucketStats> out = new ArrayList<>();
+        for (Document d : rollups.aggregate(pipeline)) {
+            long tempCount = d.get("tempCount", Number.class).longValue();
+            double sumTemp = d.get("sumTemp", Number.class).doubleValue();
+            out.add(new BucketStats(
+                    d.get("_id", Number.class).longValue(),
+                    d.get("count", Number.class).longValue(),
+                    d.get("minTemp") instanceof Number n ? n.doubleValue() : null,
+                    d.get("maxTemp") instanceof Number n ? n.doubleValue() : null,
+                    tempCount == 0 ? null : sumTemp / tempCount,
+                    d.get("ok", Number.class).longValue(),
+                    d.get("warn", Number.class).longValue()));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.mongo;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only local write-ahead spool for events that could not be written to MongoDB.
+ *
+ * The spool is a directory of fixed-size, memory-mapped segment files (spool-00000000000000000001.seg, ...):
+ *
+ *   header:  int magic | int drained offset (everything before it has been replayed)
+ *   records: int flags+length | int crc32c(bson) | length bytes of BSON (the HybridEvent codec's encoding)
+ *
+ * The length word's bit 30 marks a record that may already be in MongoDB (spooled after a write
+ * concern error or a lost reply), so replay can tell "already written by us" from "never written".
+ *
+ * A zero length marks the end of the written data (segments are zero-filled when created). Appends go
+ * to the newest segment and roll over to a new one when it is full; {@link #peek(int)} / {@link #ack}
+ * walk the oldest one, and fully drained segments are deleted.
+ *
+ * Startup recovery scans every segment up to the first record that is truncated or fails its CRC (a
+ * torn write from a crash) and starts a fresh segment for new appends, so old segments are never
+ * written again. Each event gets its _id before it is spooled, so replaying a record that did reach
+ * MongoDB fails with a duplicate key instead of writing it twice.
+ */
+public final class EventSpool implements AutoCloseable {
+
+    /** When appended records are forced to disk: each append, on a timer, or whenever the OS writes back. */
+    public enum FsyncPolicy {
+        ALWAYS, INTERVAL, NONE;
+
+        public static FsyncPolicy parse(String s) {
+            try {
+                return valueOf(s.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("fsync policy must be one of always, interval, none");
+            }
+        }
+    }
+
+    /**
+     * One spooled event; its record spans [start, end) in the segment. {@code maybeWritten}: the failed
+     * write may have been applied, so a duplicate key on replay means it was.
+     */
+    public record Entry(HybridEvent event, Segment segment, int start, int end, boolean maybeWritten) {}
+
+    private static final int MAGIC = 0x53504F4C; // "SPOL"
+    private static final int HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAYBE_WRITTEN = 0x4000_0000;
+    private static final int LENGTH_MASK = 0x3FFF_FFFF;
+    private static final EncoderContext ENCODE = EncoderContext.builder().build();
+    private static final DecoderContext DECODE = DecoderContext.builder().build();
+
+    private final Path dir;
+    private final Codec<HybridEvent> codec;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final FsyncPolicy fsync;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ScheduledExecutorService syncer;
+
+    // oldest first; the last one takes appends. Guarded by this.
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final BasicOutputBuffer encodeBuffer = new BasicOutputBuffer();
+    private final CRC32C crc = new CRC32C();
+    private long nextSegmentId;
+    private long pendingEvents;
+    private long pendingBytes;
+    private long appended;
+    private long drained;
+    private boolean closed;
+
+    public EventSpool(Path dir, Codec<HybridEvent> codec, int segmentBytes, long maxBytes,
+                      FsyncPolicy fsync, long fsyncIntervalMillis) {
+        if (segmentBytes < 64 * 1024) throw new IllegalArgumentException("segmentBytes must be >= 64KB");
+        this.dir = dir;
+        this.codec = codec;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(dir);
+            // one process per spool directory
+            lockChannel = FileChannel.open(dir.resolve("spool.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException("spool directory " + dir + " is in use by another process");
+            }
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open spool " + dir, e);
+        }
+        if (fsync == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "spool-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::forceAll, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Appends the events (assigning missing _ids first). Throws RejectedExecutionException when the
+     * spool already holds maxBytes.
+     */
+    public void append(List<HybridEvent> events) {
+        append(events, false);
+    }
+
+    /** As {@link #append(List)}; {@code maybeWritten} is handed back on each {@link Entry}. */
+    public synchronized void append(List<HybridEvent> events, boolean maybeWritten) {
+        if (closed) throw new RejectedExecutionException("spool is closed");
+        if (pendingBytes >= maxBytes) throw new RejectedExecutionException("spool is full (" + pendingBytes + " bytes)");
+        Segment active = segments.peekLast();
+        for (HybridEvent e : events) {
+            if (codec instanceof CollectibleCodec<HybridEvent> cc) cc.generateIdIfAbsentFromDocument(e);
+            encodeBuffer.truncateToPosition(0);
+            codec.encode(new BsonBinaryWriter(encodeBuffer), e, ENCODE);
+            int len = encodeBuffer.getPosition();
+            if (RECORD_HEADER + len > segmentBytes - HEADER) {
+                throw new IllegalArgumentException("event " + e.getId() + " is larger than a spool segment");
+            }
+            if (active.writeEnd + RECORD_HEADER + len > segmentBytes) {
+                sealAndRoll(active);
+                active = segments.peekLast();
+            }
+            byte[] bson = encodeBuffer.getInternalBuffer();
+            crc.reset();
+            crc.update(bson, 0, len);
+            int at = active.writeEnd;
+            // payload and checksum first, length last: a zero length still ends the segment if we crash in between
+            active.map.putInt(at + 4, (int) crc.getValue());
+            active.map.put(at + RECORD_HEADER, bson, 0, len);
+            active.map.putInt(at, maybeWritten ? len | MAYBE_WRITTEN : len);
+            active.writeEnd = at + RECORD_HEADER + len;
+            pendingEvents++;
+            pendingBytes += RECORD_HEADER + len;
+            appended++;
+        }
+        if (fsync == FsyncPolicy.ALWAYS) active.map.force();
+    }
+
+    /** Up to {@code max} of the oldest spooled events, without removing them. */
+    public synchronized List<Entry> peek(int max) {
+        List<Entry> out = new ArrayList<>(Math.min(max, 1024));
+        for (Segment s : segments) {
+            int pos = s.drained;
+            while (out.size() < max && pos < s.writeEnd) {
+                int word = s.map.getInt(pos);
+                int len = word & LENGTH_MASK;
+                ByteBuffer bson = s.map.slice(pos + RECORD_HEADER, len);
+                HybridEvent e = codec.decode(new BsonBinaryReader(bson), DECODE);
+                out.add(new Entry(e, s, pos, pos + RECORD_HEADER + len, (word & MAYBE_WRITTEN) != 0));
+                pos += RECORD_HEADER + len;
+            }
+            if (out.size() >= max || pos < s.writeEnd) break;
+        }
+        return out;
+    }
+
+    /** Flags not-yet-acked entries as maybe written (a replay attempt failed after reaching the server). */
+    public synchronized void markMaybeWritten(List<Entry> entries) {
+        for (Entry en : entries) {
+            if (!en.maybeWritten()) en.segment().map.putInt(en.start(), en.segment().map.getInt(en.start()) | MAYBE_WRITTEN);
+        }
+    }
+
+    /** Marks everything up to and including {@code last} (from {@link #peek}) as replayed. */
+    public synchronized void ack(Entry last) {
+        while (!segments.isEmpty()) {
+            Segment s = segments.peekFirst();
+            int upTo = (s == last.segment()) ? last.end() : s.writeEnd;
+            for (int pos = s.drained; pos < upTo; ) {
+                int len = s.map.getInt(pos) & LENGTH_MASK;
+                pos += RECORD_HEADER + len;
+                pendingEvents--;
+                pendingBytes -= RECORD_HEADER + len;
+                drained++;
+            }
+            s.drained = upTo;
+            s.map.putInt(4, upTo);
+            if (fsync == FsyncPolicy.ALWAYS) s.map.force(4, 4);
+            if (s == last.segment()) {
+                if (s.drained == s.writeEnd && s != segments.peekLast()) deleteSegment(segments.pollFirst());
+                return;
+            }
+            deleteSegment(segments.pollFirst());
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingEvents == 0;
+    }
+
+    public synchronized long pendingEvents() {
+        return pendingEvents;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("dir", dir.toString());
+        m.put("fsync", fsync.name().toLowerCase(Locale.ROOT));
+        m.put("segments", segments.size());
+        m.put("pendingEvents", pendingEvents);
+        m.put("pendingBytes", pendingBytes);
+        m.put("appended", appended);
+        m.put("drained", drained);
+        return m;
+    }
+
+    /** Forces every segment's dirty pages to disk. */
+    public synchronized void forceAll() {
+        if (closed) return;
+        for (Segment s : segments) s.map.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        if (syncer != null) syncer.shutdownNow();
+        if (fsync != FsyncPolicy.NONE) forceAll();
+        closed = true;
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException ignored) {}
+        System.out.println("**** spool closed: " + pendingEvents + " events left in " + dir);
+    }
+
+    // ------------------------------------------------------------------------------------------
+
+    /** A mapped segment file; writeEnd and drained are offsets into it. */
+    public static final class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer map;
+        int writeEnd;
+        int drained;
+
+        Segment(long id, Path path, MappedByteBuffer map) {
+            this.id = id;
+            this.path = path;
+            this.map = map;
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> p.getFileName().toString().matches("spool-\\d{20}\\.seg")).sorted().toList();
+        }
+        for (Path p : files) {
+            long id = Long.parseLong(p.getFileName().toString().substring(6, 26));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+            Segment s = new Segment(id, p, map(p, Files.size(p)));
+            if (s.map.capacity() < HEADER || s.map.getInt(0) != MAGIC) {
+                Files.move(p, p.resolveSibling(p.getFileName() + ".corrupt"));
+                System.out.println("**** spool: " + p + " has no valid header, moved aside");
+                continue;
+            }
+            s.writeEnd = scanEnd(s);
+            s.drained = Math.max(HEADER, Math.min(s.map.getInt(4), s.writeEnd));
+            if (s.drained == s.writeEnd) {
+                Files.delete(p);
+                continue;
+            }
+            for (int pos = s.drained; pos < s.writeEnd; ) {
+                int len = s.map.getInt(pos) & LENGTH_MASK;
+                pos += RECORD_HEADER + len;
+                pendingEvents++;
+                pendingBytes += RECORD_HEADER + len;
+            }
+            segments.addLast(s);
+        }
+        if (!segments.isEmpty()) {
+            System.out.println("**** spool: recovered " + pendingEvents + " events in " + segments.size() + " segments from " + dir);
+        }
+        // never append after a possibly torn tail: new events always start in a fresh segment
+        segments.addLast(newSegment());
+    }
+
+    /** Offset just past the last complete, checksum-valid record. */
+    private int scanEnd(Segment s) {
+        int cap = s.map.capacity();
+        int pos = HEADER;
+        while (pos + RECORD_HEADER <= cap) {
+            int len = s.map.getInt(pos) & LENGTH_MASK;
+            if (len <= 0 || pos + RECORD_HEADER + len > cap) break;
+            byte[] bson = new byte[len];
+            s.map.get(pos + RECORD_HEADER, bson);
+            crc.reset();
+            crc.update(bson);
+            if ((int) crc.getValue() != s.map.getInt(pos + 4)) {
+                System.out.println("**** spool: torn record at " + s.path + ":" + pos + ", dropping the rest of the segment");
+                break;
+            }
+            pos += RECORD_HEADER + len;
+        }
+        return pos;
+    }
+
+    private void sealAndRoll(Segment active) {
+        if (fsync != FsyncPolicy.NONE) active.map.force();
+        segments.addLast(newSegment());
+        // the old active segment may already be fully drained
+        if (active.drained == active.writeEnd && segments.peekFirst() == active) deleteSegment(segments.pollFirst());
+    }
+
+    private Segment newSegment() {
+        long id = nextSegmentId++;
+        Path p = dir.resolve(String.format("spool-%020d.seg", id));
+        try {
+            Segment s = new Segment(id, p, map(p, segmentBytes));
+            s.map.putInt(0, MAGIC);
+            s.map.putInt(4, HEADER);
+            s.writeEnd = HEADER;
+            s.drained = HEADER;
+            return s;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot create spool segment " + p, e);
+        }
+    }
+
+    private void deleteSegment(Segment s) {
+        try {
+            Files.deleteIfExists(s.path);
+        } catch (IOException e) {
+            System.out.println("**** spool: could not delete " + s.path + ": " + e.getMessage());
+        }
+    }
+
+    private static MappedByteBuffer map(Path p, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
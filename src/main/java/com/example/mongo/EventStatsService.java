@@ -0,0 +1,205 @@
+package com.example.mongo;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Windowed temperature/status rollups for GET /events/stats.
+ *
+ * Buckets are aggregated server-side by MongoDB. A bucket that ended more than closedGrace ago is
+ * "closed" and is cached in memory; a request only aggregates from the first closed bucket it
+ * does not have yet, plus the still-open tail. Late inserts seen on the change stream drop the
+ * cached bucket they fall into. Cached buckets keep counting events the TTL index has since
+ * deleted, until the cache entry expires.
+ *
+ * Ranges of at least rollupMinRange whose window is a whole number of minutes are answered from
+ * the pre-aggregated hybrid_events_rollup buckets instead (see {@link RollupAggregator}); those
+ * also cover history the TTL index has already removed from the raw collection.
+ */
+public class EventStatsService implements EventChangeStreamWatcher.Listener {
+
+    private final HybridEventRepository repo;
+    private final SegmentedLruCache<Key, BucketStats> closedBuckets;
+    private final Set<Long> windowsSeen = ConcurrentHashMap.newKeySet();
+    private final long cacheTtlNanos;
+    private final long closedGraceMillis;
+    private final int maxBuckets;
+    private volatile EventRollupStore rollups;
+    private volatile long rollupMinRangeMillis;
+
+    /** Where a stats request is answered from; AUTO picks rollups for long ranges. */
+    public enum Source { AUTO, RAW, ROLLUP }
+
+    public EventStatsService(HybridEventRepository repo, int maxCachedBuckets, long cacheTtlSeconds,
+                             long closedGraceSeconds, int maxBuckets) {
+        this.repo = repo;
+        this.closedBuckets = new SegmentedLruCache<>(maxCachedBuckets);
+        this.cacheTtlNanos = TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+        this.closedGraceMillis = TimeUnit.SECONDS.toMillis(closedGraceSeconds);
+        this.maxBuckets = maxBuckets;
+    }
+
+    public void useRollups(EventRollupStore rollups, long minRangeSeconds) {
+        this.rollups = rollups;
+        this.rollupMinRangeMillis = TimeUnit.SECONDS.toMillis(minRangeSeconds);
+    }
+
+    public static Source parseSource(String source) {
+        if (source == null || source.isBlank()) return Source.AUTO;
+        try {
+            return Source.valueOf(source.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("source must be auto, raw or rollup");
+        }
+    }
+
+    /** "300", "300s", "5m", "1h", "1d" -> seconds. */
+    public static long parseWindowSeconds(String window) {
+        if (window == null || window.isBlank()) throw new IllegalArgumentException("missing query param 'window' (e.g. 60s, 5m, 1h)");
+        String w = window.trim().toLowerCase();
+        long unit = 1;
+        char last = w.charAt(w.length() - 1);
+        if (!Character.isDigit(last)) {
+            unit = switch (last) {
+                case 's' -> 1;
+                case 'm' -> 60;
+                case 'h' -> 3600;
+                case 'd' -> 86400;
+                default -> throw new IllegalArgumentException("window unit must be s, m, h or d");
+            };
+            w = w.substring(0, w.length() - 1);
+        }
+        try {
+            long seconds = Long.parseLong(w) * unit;
+            if (seconds < 1) throw new IllegalArgumentException("window must be positive");
+            return seconds;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid window '" + window + "'");
+        }
+    }
+
+    /**
+     * Buckets covering [from, to), widened to whole windows. Only non-empty buckets are returned.
+     *
+     * @throws IllegalArgumentException when the range holds more than maxBuckets windows
+     */
+    public Map<String, Object> stats(Instant from, Instant to, long windowSeconds) {
+        return stats(from, to, windowSeconds, Source.AUTO);
+    }
+
+    public Map<String, Object> stats(Instant from, Instant to, long windowSeconds, Source source) {
+        long w = TimeUnit.SECONDS.toMillis(windowSeconds);
+        long start = Math.floorDiv(from.toEpochMilli(), w) * w;
+        long end = -Math.floorDiv(-to.toEpochMilli(), w) * w;
+        if (end <= start) throw new IllegalArgumentException("'from' must be before 'to'");
+        if ((end - start) / w > maxBuckets) {
+            throw new IllegalArgumentException("range spans more than " + maxBuckets + " windows; use a larger window");
+        }
+
+        EventRollupStore r = rollups;
+        boolean rollupFits = r != null && w % EventRollupStore.Granularity.MINUTE.millis == 0;
+        if (source == Source.ROLLUP && !rollupFits) {
+            throw new IllegalArgumentException(r == null
+                    ? "rollups are disabled"
+                    : "source=rollup needs a window that is a whole number of minutes");
+        }
+        if (source == Source.ROLLUP || (source == Source.AUTO && rollupFits && end - start >= rollupMinRangeMillis)) {
+            return fromRollups(r, start, end, windowSeconds);
+        }
+        windowsSeen.add(w);
+
+        long closedLimit = Math.floorDiv(System.currentTimeMillis() - closedGraceMillis, w) * w;
+        long closedEnd = Math.min(end, Math.max(start, closedLimit));
+
+        // cached prefix of closed buckets; aggregate everything from the first gap on
+        List<BucketStats> out = new ArrayList<>();
+        long queryFrom = closedEnd;
+        int fromCache = 0;
+        for (long b = start; b < closedEnd; b += w) {
+            BucketStats cached = closedBuckets.get(new Key(w, b));
+            if (cached == null) {
+                queryFrom = b;
+                break;
+            }
+            fromCache++;
+            if (cached.getCount() > 0) out.add(cached);
+        }
+
+        if (queryFrom < end) {
+            // taken before aggregating: a late event invalidating a bucket meanwhile drops that bucket's put
+            long[] generations = new long[(int) Math.max(0, (closedEnd - queryFrom) / w)];
+            for (int k = 0; k < generations.length; k++) generations[k] = closedBuckets.generation(new Key(w, queryFrom + k * w));
+
+            List<BucketStats> fetched = repo.aggregateBuckets(Instant.ofEpochMilli(queryFrom), Instant.ofEpochMilli(end), w);
+            long expires = System.nanoTime() + cacheTtlNanos;
+            int i = 0;
+            // walk closed buckets in the queried span, caching empty ones too
+            for (int k = 0; k < generations.length; k++) {
+                long b = queryFrom + k * w;
+                BucketStats s = (i < fetched.size() && fetched.get(i).getStartMillis() == b) ? fetched.get(i++) : BucketStats.empty(b);
+                closedBuckets.putIfNotInvalidated(new Key(w, b), s, expires, generations[k]);
+            }
+            out.addAll(fetched);
+        }
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", Instant.ofEpochMilli(start).toString());
+        m.put("to", Instant.ofEpochMilli(end).toString());
+        m.put("windowSeconds", windowSeconds);
+        m.put("source", "raw");
+        m.put("bucketsFromCache", fromCache);
+        m.put("buckets", out.stream().map(BucketStats::toMap).toList());
+        return m;
+    }
+
+    /** Rollup docs are already small; hourly ones are used whenever the window allows. Not cached. */
+    private Map<String, Object> fromRollups(EventRollupStore r, long start, long end, long windowSeconds) {
+        long w = TimeUnit.SECONDS.toMillis(windowSeconds);
+        EventRollupStore.Granularity g = (w % EventRollupStore.Granularity.HOUR.millis == 0)
+                ? EventRollupStore.Granularity.HOUR
+                : EventRollupStore.Granularity.MINUTE;
+        List<BucketStats> out = r.buckets(g, Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), w);
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", Instant.ofEpochMilli(start).toString());
+        m.put("to", Instant.ofEpochMilli(end).toString());
+        m.put("windowSeconds", windowSeconds);
+        m.put("source", g == EventRollupStore.Granularity.HOUR ? "rollup-hour" : "rollup-minute");
+        m.put("buckets", out.stream().map(BucketStats::toMap).toList());
+        return m;
+    }
+
+    public Map<String, Object> cacheStats() {
+        return Map.of(
+                "size", closedBuckets.size(),
+                "hits", closedBuckets.hitCount(),
+                "misses", closedBuckets.missCount(),
+                "evictions", closedBuckets.evictionCount());
+    }
+
+    /** Late or corrected events make the closed bucket they land in stale. */
+    @Override
+    public void onChange(ChangeStreamDocument<HybridEvent> change) {
+        HybridEvent e = change.getFullDocument();
+        if (e == null || e.getEventTs() == null) return;
+        long ts = e.getEventTs().toEpochMilli();
+        for (long w : windowsSeen) {
+            closedBuckets.invalidate(new Key(w, Math.floorDiv(ts, w) * w));
+        }
+    }
+
+    @Override
+    public void onReset() {
+        closedBuckets.clear();
+    }
+
+    private record Key(long windowMillis, long startMillis) {}
+}
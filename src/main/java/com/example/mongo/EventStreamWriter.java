@@ -0,0 +1,252 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Writes events from a Mongo cursor straight to a response stream, one document at a time,
+ * so memory stays flat no matter how many documents the cursor yields.
+ *
+ * JSON:   [ {...}, {...} ]                     paged: {"events":[...],"next":"token"}
+ * NDJSON: one event per line                   paged: events, then a final {"next":"token"} line
+ * SMILE / CBOR: same structure as JSON, in Jackson's binary encodings
+ * BSON:   a document sequence (concatenated BSON documents, stored field names: _id, event_ts, id,
+ *         payload)                             paged: documents, then a final {"next":"token"} document
+ *
+ * The *Raw variants take RawBsonDocument cursors and transcode the BSON bytes directly
+ * ({@link RawEventJsonTranscoder}); the JSON they produce is the same.
+ */
+public class EventStreamWriter {
+
+    public enum Format {
+        JSON("application/json"),
+        NDJSON("application/x-ndjson"),
+        SMILE("application/x-jackson-smile"),
+        CBOR("application/cbor"),
+        BSON("application/bson");
+
+        public final String contentType;
+
+        Format(String contentType) { this.contentType = contentType; }
+
+        /** {@code ?format=} wins over the Accept header; JSON is the default. */
+        public static Format fromRequest(String formatParam, String accept) {
+            if (formatParam != null && !formatParam.isBlank()) {
+                try {
+                    return valueOf(formatParam.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("format must be one of json, ndjson, smile, cbor, bson");
+                }
+            }
+            if (accept != null) {
+                for (Format f : values()) {
+                    if (f != JSON && accept.contains(f.contentType)) return f;
+                }
+            }
+            return JSON;
+        }
+
+        /** Request body format from Content-Type; missing means JSON. */
+        public static Format fromContentType(String contentType) {
+            if (contentType == null || contentType.isBlank()) return JSON;
+            for (Format f : values()) {
+                if (contentType.startsWith(f.contentType)) return f;
+            }
+            throw new IllegalArgumentException("unsupported Content-Type '" + contentType + "'");
+        }
+    }
+
+    private static final EncoderContext ENCODE = EncoderContext.builder().build();
+    private static final int BSON_OUT_BUFFER = 64 * 1024;
+
+    private final ObjectMapper mapper;
+    private final JsonFactory smileFactory;
+    private final JsonFactory cborFactory;
+    private final ObjectWriter eventWriter;
+    private final ObjectWriter sparseEventWriter;
+    private final Codec<HybridEvent> bsonCodec; // typed BSON output; null = only raw passthrough can emit BSON
+
+    public EventStreamWriter(ObjectMapper mapper) {
+        this(mapper, null);
+    }
+
+    public EventStreamWriter(ObjectMapper mapper, Codec<HybridEvent> bsonCodec) {
+        this.mapper = mapper;
+        this.bsonCodec = bsonCodec;
+        this.smileFactory = new SmileFactory();
+        this.cborFactory = new CBORFactory();
+        // let the generator buffer fill up instead of flushing the response after every event
+        this.eventWriter = mapper.writerFor(HybridEvent.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // projected reads leave fields unset; leave them out instead of writing nulls
+        this.sparseEventWriter = mapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writerFor(HybridEvent.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /** Writes one element to the generator. */
+    private interface ElementWriter<T> {
+        void write(JsonGenerator gen, T value) throws IOException;
+    }
+
+    /** Streams every event; returns how many were written. */
+    public long writeAll(OutputStream out, Format format, Iterator<HybridEvent> events) throws IOException {
+        return writeAll(out, format, events, false);
+    }
+
+    /** As {@link #writeAll(OutputStream, Format, Iterator)}; {@code sparse} omits null fields (projected reads). */
+    public long writeAll(OutputStream out, Format format, Iterator<HybridEvent> events, boolean sparse) throws IOException {
+        if (format == Format.BSON) return bsonStream(out, events, null, typedBson(), null);
+        ObjectWriter writer = sparse ? sparseEventWriter : eventWriter;
+        return stream(out, format, events, writer::writeValue);
+    }
+
+    /** Raw passthrough of {@link #writeAll(OutputStream, Format, Iterator, boolean)}; BSON output is the stored bytes. */
+    public long writeAllRaw(OutputStream out, Format format, Iterator<RawBsonDocument> docs, boolean sparse) throws IOException {
+        if (format == Format.BSON) return bsonStream(out, docs, null, EventStreamWriter::writeRawBson, null);
+        return stream(out, format, docs, (gen, doc) -> RawEventJsonTranscoder.write(gen, doc, sparse));
+    }
+
+    /**
+     * Streams one keyset page. The "next" token is only emitted when the page is full,
+     * i.e. there may be more events after it.
+     */
+    public long writePage(OutputStream out, Format format, Iterator<HybridEvent> events, int limit) throws IOException {
+        if (format == Format.BSON) return bsonStream(out, events, limit, typedBson(), PageToken::of);
+        return page(out, format, events, limit, eventWriter::writeValue, PageToken::of);
+    }
+
+    /** Raw passthrough of {@link #writePage(OutputStream, Format, Iterator, int)}. */
+    public long writePageRaw(OutputStream out, Format format, Iterator<RawBsonDocument> docs, int limit) throws IOException {
+        if (format == Format.BSON) return bsonStream(out, docs, limit, EventStreamWriter::writeRawBson, PageToken::of);
+        return page(out, format, docs, limit, (gen, doc) -> RawEventJsonTranscoder.write(gen, doc, false), PageToken::of);
+    }
+
+    private <T> long stream(OutputStream out, Format format, Iterator<T> items, ElementWriter<T> writer) throws IOException {
+        try (JsonGenerator gen = newGenerator(out, format)) {
+            if (format != Format.NDJSON) gen.writeStartArray();
+            long n = 0;
+            while (items.hasNext()) {
+                writer.write(gen, items.next());
+                if (format == Format.NDJSON) gen.writeRaw('\n');
+                n++;
+            }
+            if (format != Format.NDJSON) gen.writeEndArray();
+            return n;
+        }
+    }
+
+    private <T> long page(OutputStream out, Format format, Iterator<T> items, int limit,
+                          ElementWriter<T> writer, Function<T, PageToken> token) throws IOException {
+        try (JsonGenerator gen = newGenerator(out, format)) {
+            if (format != Format.NDJSON) {
+                gen.writeStartObject();
+                gen.writeArrayFieldStart("events");
+            }
+
+            T last = null;
+            long n = 0;
+            while (items.hasNext()) {
+                last = items.next();
+                writer.write(gen, last);
+                if (format == Format.NDJSON) gen.writeRaw('\n');
+                n++;
+            }
+            String next = (n == limit && last != null) ? token.apply(last).encode() : null;
+
+            if (format != Format.NDJSON) {
+                gen.writeEndArray();
+                gen.writeStringField("next", next);
+                gen.writeEndObject();
+            } else {
+                gen.writeStartObject();
+                gen.writeStringField("next", next);
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            }
+            return n;
+        }
+    }
+
+    /** Writes one element's BSON bytes. */
+    private interface BsonElementWriter<T> {
+        void write(OutputStream out, T value) throws IOException;
+    }
+
+    /**
+     * BSON document sequence. {@code limit} null = plain stream; otherwise a page, closed by a
+     * {"next": token|null} document. Small documents are gathered in a buffered stream first.
+     */
+    private <T> long bsonStream(OutputStream out, Iterator<T> items, Integer limit,
+                                BsonElementWriter<T> writer, Function<T, PageToken> token) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, BSON_OUT_BUFFER);
+        T last = null;
+        long n = 0;
+        while (items.hasNext()) {
+            last = items.next();
+            writer.write(buffered, last);
+            n++;
+        }
+        if (limit != null) {
+            String next = (n == limit && last != null) ? token.apply(last).encode() : null;
+            BasicOutputBuffer buf = new BasicOutputBuffer(64);
+            new BsonDocumentCodec().encode(new BsonBinaryWriter(buf),
+                    new BsonDocument("next", next == null ? BsonNull.VALUE : new BsonString(next)), ENCODE);
+            buf.pipe(buffered);
+        }
+        buffered.flush();
+        return n;
+    }
+
+    private BsonElementWriter<HybridEvent> typedBson() {
+        if (bsonCodec == null) throw new IllegalStateException("BSON output needs a HybridEvent codec");
+        BasicOutputBuffer buf = new BasicOutputBuffer(); // reused for every event of the response
+        return (out, e) -> {
+            buf.truncateToPosition(0);
+            bsonCodec.encode(new BsonBinaryWriter(buf), e, ENCODE);
+            buf.pipe(out);
+        };
+    }
+
+    private static void writeRawBson(OutputStream out, RawBsonDocument doc) throws IOException {
+        ByteBuffer bytes = doc.getByteBuffer().asNIO();
+        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    }
+
+    private JsonGenerator newGenerator(OutputStream out, Format format) throws IOException {
+        JsonFactory factory = switch (format) {
+            case SMILE -> smileFactory;
+            case CBOR -> cborFactory;
+            default -> mapper.getFactory();
+        };
+        JsonGenerator gen = factory.createGenerator(out);
+        // the servlet container owns the response stream
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // NDJSON writes its own newlines between root values (binary formats have no separator)
+        if (format == Format.NDJSON) gen.setRootValueSeparator(null);
+        return gen;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.mongo;
+
+/** Field checks shared by every ingest path (single POST, batch, file import). */
+public final class EventValidator {
+
+    private EventValidator() {}
+
+    /** @return a client-facing error message, or null when the event can be inserted */
+    public static String problem(HybridEvent e) {
+        if (e == null) return "Event must be a JSON object";
+        if (e.getId() == null || e.getId().isBlank()) return "Field 'id' is required";
+        if (e.getEventTs() == null) return "Field 'event_ts' is required";
+        return null;
+    }
+}
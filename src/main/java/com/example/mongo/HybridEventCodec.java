@@ -0,0 +1,108 @@
+package com.example.mongo;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Hand-written HybridEvent codec: fields are read from / written to the BsonReader/BsonWriter
+ * directly, with no reflection and no intermediate Document.
+ *
+ * payload decodes either into a LinkedHashMap (default, same shape as the POJO codec produced)
+ * or into the typed {@link Payload} (typedPayload = true). Unknown top-level fields are skipped,
+ * like the POJO codec does; a mapped field of the wrong BSON type throws, as it did there too.
+ */
+public class HybridEventCodec implements CollectibleCodec<HybridEvent> {
+
+    private final CodecRegistry registry;
+    private final PayloadCodec payloadCodec;
+    private final boolean typedPayload;
+
+    public HybridEventCodec(CodecRegistry registry, PayloadCodec payloadCodec, boolean typedPayload) {
+        this.registry = registry;
+        this.payloadCodec = payloadCodec;
+        this.typedPayload = typedPayload;
+    }
+
+    @Override
+    public HybridEvent decode(BsonReader reader, DecoderContext ctx) {
+        HybridEvent e = new HybridEvent();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            BsonType type = reader.getCurrentBsonType();
+            if (type == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case "_id" -> e.setMongoObjectId(expect(reader, name, type, BsonType.OBJECT_ID).readObjectId());
+                case "event_ts" -> e.setEventTs(Instant.ofEpochMilli(expect(reader, name, type, BsonType.DATE_TIME).readDateTime()));
+                case "id" -> e.setId(expect(reader, name, type, BsonType.STRING).readString());
+                case "payload" -> {
+                    expect(reader, name, type, BsonType.DOCUMENT);
+                    e.setPayload(typedPayload ? payloadCodec.decode(reader, ctx) : BsonValues.readDocument(reader, ctx, registry));
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return e;
+    }
+
+    /** A mapped field with another BSON type cannot round-trip, so fail like the POJO codec rather than drop it. */
+    private static BsonReader expect(BsonReader reader, String name, BsonType actual, BsonType expected) {
+        if (actual != expected) {
+            throw new BsonInvalidOperationException("HybridEvent field '" + name + "' must be " + expected + ", not " + actual);
+        }
+        return reader;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, HybridEvent e, EncoderContext ctx) {
+        writer.writeStartDocument();
+        if (e.getMongoObjectId() != null) writer.writeObjectId("_id", e.getMongoObjectId());
+        if (e.getEventTs() != null) writer.writeDateTime("event_ts", e.getEventTs().toEpochMilli());
+        if (e.getId() != null) writer.writeString("id", e.getId());
+        Map<String, Object> payload = e.getPayload();
+        if (payload != null) {
+            writer.writeName("payload");
+            if (payload instanceof Payload p) payloadCodec.encode(writer, p, ctx);
+            else BsonValues.writeMap(writer, payload, ctx, registry);
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<HybridEvent> getEncoderClass() {
+        return HybridEvent.class;
+    }
+
+    @Override
+    public HybridEvent generateIdIfAbsentFromDocument(HybridEvent e) {
+        if (e.getMongoObjectId() == null) e.setMongoObjectId(new ObjectId());
+        return e;
+    }
+
+    @Override
+    public boolean documentHasId(HybridEvent e) {
+        return e.getMongoObjectId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(HybridEvent e) {
+        if (e.getMongoObjectId() == null) throw new IllegalStateException("HybridEvent has no _id");
+        return new BsonObjectId(e.getMongoObjectId());
+    }
+}
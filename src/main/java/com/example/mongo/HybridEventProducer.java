@@ -1,47 +1,80 @@
 package com.example.mongo;
 
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.FindOneAndUpdateOptions;
-import com.mongodb.client.model.ReturnDocument;
-import com.mongodb.client.model.Updates;
 import org.bson.Document;
 
 import java.time.Instant;
-import java.util.Map;
-import java.util.Random;
-
-import static com.mongodb.client.model.Filters.eq;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class HybridEventProducer {
 
-    private static final String COUNTER_ID = "hybrid_events_id_seq";
-
     private final MongoCollection<HybridEvent> events;
-    private final MongoCollection<Document> counters;
-    private final Random rnd = new Random();
+    private final SequenceAllocator ids;
+    private volatile RollupAggregator rollup;
+    private volatile SpoolFailover spool;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder spooled = new LongAdder();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
 
     public HybridEventProducer(MongoCollection<HybridEvent> eventsCollection,
                                MongoCollection<Document> countersCollection) {
+        this(eventsCollection, new CounterSequenceAllocator(countersCollection));
+    }
+
+    public HybridEventProducer(MongoCollection<HybridEvent> eventsCollection,
+                               SequenceAllocator ids) {
         this.events = eventsCollection;
-        this.counters = countersCollection;
+        this.ids = ids;
+    }
+
+    public void setRollupAggregator(RollupAggregator rollup) {
+        this.rollup = rollup;
+    }
+
+    /** With a spool, failover-type Mongo errors spool events locally instead of stopping the producer. */
+    public void setSpoolFailover(SpoolFailover spool) {
+        this.spool = spool;
+        if (spool != null) spool.setOnReplayed(this::recordWritten);
+    }
+
+    /**
+     * Runs {@code mongoWrite} for the batch (through the spool failover when set) and feeds the
+     * rollup with whatever was written directly; spooled events are fed when they are replayed.
+     */
+    public SpoolFailover.Outcome write(List<HybridEvent> batch, Consumer<List<HybridEvent>> mongoWrite) {
+        long t0 = System.nanoTime();
+        SpoolFailover s = spool;
+        if (s == null) {
+            mongoWrite.accept(batch);
+        } else if (s.write(batch, mongoWrite) == SpoolFailover.Outcome.SPOOLED) {
+            spooled.add(batch.size());
+            return SpoolFailover.Outcome.SPOOLED;
+        }
+        writeLatency.recordSince(t0);
+        written.add(batch.size());
+        recordWritten(batch);
+        return SpoolFailover.Outcome.WRITTEN;
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        m.counter("hybrid_producer_events_total", "Events produced", written::sum, "outcome", "written");
+        m.counter("hybrid_producer_events_total", "Events produced", spooled::sum, "outcome", "spooled");
+        m.latency("hybrid_producer_write_seconds", "Producer write (insertOne / insertMany) latency", writeLatency);
+    }
+
+    /** Feeds events that were written outside insertNext (batching/concurrent engines) into the rollup. */
+    public void recordWritten(List<HybridEvent> written) {
+        RollupAggregator r = rollup;
+        if (r != null) r.recordAll(written);
     }
 
-    /** Atomic sequence generator (safe even with multiple producers). */
+    /** Next sequence from the configured allocator (safe even with multiple producers). */
     public long nextSequence() {
-        Document updated = counters.findOneAndUpdate(
-                eq("_id", COUNTER_ID),
-                Updates.combine(
-                        Updates.inc("seq", 1),
-                        Updates.setOnInsert("_id", COUNTER_ID)
-                ),
-                new FindOneAndUpdateOptions()
-                        .upsert(true)
-                        .returnDocument(ReturnDocument.AFTER)
-        );
-
-        Object seqObj = updated.get("seq");
-        if (seqObj instanceof Number n) return n.longValue();
-        throw new IllegalStateException("Counter seq is not numeric: " + seqObj);
+        return ids.next();
     }
 
     public HybridEvent buildNextEvent(long seq) {
@@ -50,15 +83,11 @@ public class HybridEventProducer {
         e.setEventTs(Instant.now());
         e.setId("id_" + seq);
 
-        Map<String, Object> payload = Map.of(
-                "temperature", rnd.nextInt(100),
-                "status", (seq % 2 == 0) ? "OK" : "WARN",
-                "meta", Map.of(
-                        "sequence", seq,
-                        "source", "ansible"
-                )
-        );
-        e.setPayload(payload);
+        // typed payload: encoded field by field by PayloadCodec, still readable as a Map
+        e.setPayload(new Payload(
+                ThreadLocalRandom.current().nextInt(100),
+                (seq % 2 == 0) ? "OK" : "WARN",
+                new Meta(seq, "ansible")));
 
         return e;
     }
@@ -66,7 +95,7 @@ public class HybridEventProducer {
     public HybridEvent insertNext() {
         long seq = nextSequence();
         HybridEvent e = buildNextEvent(seq);
-        events.insertOne(e);
+        write(List.of(e), batch -> events.insertOne(e));
         return e;
     }
 
@@ -1,23 +1,74 @@
 package com.example.mongo;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ReadPreference;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static com.mongodb.client.model.Filters.eq;
 
 public class HybridEventRepository {
 
+    /** collMod error when existing documents violate the requested unique constraint. */
+    private static final int CANNOT_CONVERT_INDEX_TO_UNIQUE = 359;
+
     private final MongoCollection<HybridEvent> collection;
+    // the read endpoints' view of the collection (MONGO_READ_PREFERENCE), typed and as undecoded BSON
+    // (JSON passthrough read path); internal reads that must see this service's writes use `collection`
+    private volatile MongoCollection<HybridEvent> readCollection;
+    private volatile MongoCollection<RawBsonDocument> rawCollection;
+    // expireAfterSeconds of the event_ts_1 TTL index, or -1 when the index has no TTL
+    private long eventTtlSeconds = -1;
+    // whether id_1 enforces uniqueness; idempotent (upsert) ingest relies on it
+    private volatile UniqueIdIndex uniqueIdIndex = UniqueIdIndex.NONE;
+
+    /** NONE: plain index. PREPARED: new duplicates rejected, old ones may remain. UNIQUE: fully unique. */
+    public enum UniqueIdIndex { NONE, PREPARED, UNIQUE }
+    // optional write-path rollup stage; fed with every successfully inserted event
+    private volatile RollupAggregator rollup;
+    // optional group commit for insertOne (many concurrent single inserts -> one insertMany)
+    private volatile WriteCoalescer coalescer;
+    // optional local spool that takes insertOne writes while MongoDB is failing over
+    private volatile SpoolFailover spool;
+    // async driver behind the *Async methods (HTTP_EXECUTION_MODE=reactive)
+    private volatile ReactiveEventStore reactive;
 
     public HybridEventRepository(MongoCollection<HybridEvent> collection) {
         this.collection = collection;
+        this.readCollection = collection;
+        this.rawCollection = collection.withDocumentClass(RawBsonDocument.class);
         ensureIndexesNoCrash();
     }
 
@@ -26,6 +77,10 @@ public class HybridEventRepository {
         Set<String> names = new HashSet<>();
         for (Document d : collection.listIndexes()) {
             names.add(d.getString("name"));
+            if ("event_ts_1".equals(d.getString("name")) && d.get("expireAfterSeconds") instanceof Number ttl) {
+                eventTtlSeconds = ttl.longValue();
+            }
+            if ("id_1".equals(d.getString("name"))) uniqueIdIndex = uniqueState(d);
         }
 
         // Don't recreate event_ts_1 (it already exists with TTL in your DB)
@@ -34,24 +89,118 @@ public class HybridEventRepository {
             collection.createIndex(Indexes.ascending("event_ts"), new IndexOptions().name("event_ts_1"));
         }
 
+        // Keyset pagination sorts on (event_ts, _id); event_ts_1 alone would need an in-memory sort
+        if (!names.contains("event_ts_1__id_1")) {
+            collection.createIndex(Indexes.ascending("event_ts", "_id"), new IndexOptions().name("event_ts_1__id_1"));
+        }
+
+        // Range queries (ESR order: equality, sort, range). Status filters use the status-prefixed index;
+        // temperature is in both so it is checked on index keys before any document is fetched.
+        if (!names.contains("payload.status_1_event_ts_1_payload.temperature_1")) {
+            collection.createIndex(Indexes.ascending("payload.status", "event_ts", "payload.temperature"),
+                    new IndexOptions().name("payload.status_1_event_ts_1_payload.temperature_1"));
+        }
+        if (!names.contains("event_ts_1_payload.temperature_1")) {
+            collection.createIndex(Indexes.ascending("event_ts", "payload.temperature"),
+                    new IndexOptions().name("event_ts_1_payload.temperature_1"));
+        }
+
         // Optional for fast lookup by business id
         if (!names.contains("id_1")) {
             collection.createIndex(Indexes.ascending("id"), new IndexOptions().name("id_1"));
         }
     }
 
+    /**
+     * Read preference for the read endpoints: point lookups, lists, pages and ranges. Import dedupe
+     * (findExistingIds), findLatest (latest-buffer priming) and the stats aggregation stay on the
+     * collection's own preference (primary), since they must see this service's writes.
+     */
+    public void setReadPreference(ReadPreference readPreference) {
+        this.readCollection = collection.withReadPreference(readPreference);
+        this.rawCollection = readCollection.withDocumentClass(RawBsonDocument.class);
+    }
+
+    public void setRollupAggregator(RollupAggregator rollup) {
+        this.rollup = rollup;
+    }
+
+    public void setWriteCoalescer(WriteCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    public void setReactiveStore(ReactiveEventStore reactive) {
+        this.reactive = reactive;
+    }
+
+    /** Replayed events are fed to the rollup like direct inserts. */
+    public void setSpoolFailover(SpoolFailover spool) {
+        this.spool = spool;
+        if (spool != null) spool.setOnReplayed(this::recordReplayed);
+    }
+
+    /** Hook for events the spool drainer wrote; subclasses add cache invalidation. */
+    protected void recordReplayed(List<HybridEvent> events) {
+        RollupAggregator r = rollup;
+        if (r != null) r.recordAll(events);
+    }
+
+    public UniqueIdIndex getUniqueIdIndex() {
+        return uniqueIdIndex;
+    }
+
+    private static UniqueIdIndex uniqueState(Document index) {
+        if (Boolean.TRUE.equals(index.getBoolean("unique"))) return UniqueIdIndex.UNIQUE;
+        if (Boolean.TRUE.equals(index.getBoolean("prepareUnique"))) return UniqueIdIndex.PREPARED;
+        return UniqueIdIndex.NONE;
+    }
+
+    /**
+     * Converts id_1 to a unique index in place (MongoDB 6.0+ collMod), without dropping it:
+     * first prepareUnique, so no new duplicate can be inserted, then unique. If old duplicates
+     * are still stored the second step fails and the index stays PREPARED; clean them up and
+     * call this again. Safe to run on every start.
+     */
+    public UniqueIdIndex ensureUniqueIdIndex(MongoDatabase db) {
+        if (uniqueIdIndex == UniqueIdIndex.UNIQUE) return uniqueIdIndex;
+        String coll = collection.getNamespace().getCollectionName();
+        try {
+            if (uniqueIdIndex == UniqueIdIndex.NONE) {
+                db.runCommand(new Document("collMod", coll)
+                        .append("index", new Document("name", "id_1").append("prepareUnique", true)));
+                uniqueIdIndex = UniqueIdIndex.PREPARED;
+            }
+            db.runCommand(new Document("collMod", coll)
+                    .append("index", new Document("name", "id_1").append("unique", true)));
+            uniqueIdIndex = UniqueIdIndex.UNIQUE;
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() == CANNOT_CONVERT_INDEX_TO_UNIQUE) {
+                System.out.println("**** id_1 left as prepareUnique: stored events still share ids; dedupe them and restart ("
+                        + e.getErrorMessage() + ")");
+            } else {
+                System.out.println("**** could not make id_1 unique (MongoDB 6.0+ needed): " + e.getErrorMessage());
+            }
+        }
+        return uniqueIdIndex;
+    }
+
+    /** TTL of the event_ts_1 index in seconds (events vanish this long after event_ts), or -1 if none. */
+    public long getEventTtlSeconds() {
+        return eventTtlSeconds;
+    }
+
     /** Business id (field name is BSON "id") */
     public Optional<HybridEvent> findOneById(String id) {
-        return Optional.ofNullable(collection.find(eq("id", id)).first());
+        return Optional.ofNullable(readCollection.find(eq("id", id)).first());
     }
 
     /** Mongo _id (ObjectId) lookup */
     public Optional<HybridEvent> findOneByMongoObjectId(ObjectId oid) {
-        return Optional.ofNullable(collection.find(eq("_id", oid)).first());
+        return Optional.ofNullable(readCollection.find(eq("_id", oid)).first());
     }
 
     public Optional<HybridEvent> findOneByMongoId(String mongoIdHex) {
-        return Optional.ofNullable(collection.find(eq("_id", new ObjectId(mongoIdHex))).first());
+        return Optional.ofNullable(readCollection.find(eq("_id", new ObjectId(mongoIdHex))).first());
     }
 
 
@@ -60,23 +209,289 @@ public class HybridEventRepository {
         return findOneByMongoObjectId(new ObjectId(hex));
     }
 
+    /** {@link #findOneById} on the async driver; needs {@link #setReactiveStore}. */
+    public CompletableFuture<Optional<HybridEvent>> findOneByIdAsync(String id) {
+        return reactive().findOneById(id);
+    }
+
+    public CompletableFuture<Optional<HybridEvent>> findOneByMongoObjectIdAsync(ObjectId oid) {
+        return reactive().findOneByMongoObjectId(oid);
+    }
+
+    private ReactiveEventStore reactive() {
+        ReactiveEventStore r = reactive;
+        if (r == null) throw new IllegalStateException("no reactive store (HTTP_EXECUTION_MODE=reactive)");
+        return r;
+    }
+
     /** event_ts lookup (stored as BSON Date; driver will match Instant correctly with POJO codec) */
     public Optional<HybridEvent> findOneByEventTs(Instant ts) {
-        return Optional.ofNullable(collection.find(eq("event_ts", ts)).first());
+        return Optional.ofNullable(readCollection.find(eq("event_ts", ts)).first());
+    }
+
+    /** Which of the given business ids are already stored (answered from the id_1 index). */
+    public Set<String> findExistingIds(Collection<String> ids) {
+        Set<String> found = new HashSet<>();
+        if (ids == null || ids.isEmpty()) return found;
+        for (Document d : collection.withDocumentClass(Document.class)
+                .find(Filters.in("id", ids))
+                .projection(Projections.fields(Projections.include("id"), Projections.excludeId()))) {
+            found.add(d.getString("id"));
+        }
+        return found;
     }
 
     public List<HybridEvent> findAll() {
         List<HybridEvent> out = new ArrayList<>();
-        collection.find().into(out);
+        readCollection.find().into(out);
+        return out;
+    }
+
+    /** Whole collection as a lazily iterated cursor; the driver fetches batchSize documents per round trip. */
+    public MongoIterable<HybridEvent> streamAll(int batchSize) {
+        return readCollection.find().batchSize(batchSize);
+    }
+
+    /** {@link #streamAll(int)} without decoding: each document stays as its BSON bytes. */
+    public MongoIterable<RawBsonDocument> streamAllRaw(int batchSize) {
+        return rawCollection.find().batchSize(batchSize);
+    }
+
+    /**
+     * One keyset page ordered by (event_ts, _id), starting after the given token (null = first page).
+     * Served by the event_ts_1__id_1 index, so deep pages cost the same as the first one.
+     */
+    public MongoIterable<HybridEvent> findPage(PageToken after, int limit, int batchSize) {
+        return page(readCollection, after, limit, batchSize);
+    }
+
+    public MongoIterable<RawBsonDocument> findPageRaw(PageToken after, int limit, int batchSize) {
+        return page(rawCollection, after, limit, batchSize);
+    }
+
+    private static <T> MongoIterable<T> page(MongoCollection<T> coll, PageToken after, int limit, int batchSize) {
+        Bson filter = (after == null)
+                ? new Document()
+                : Filters.or(
+                        Filters.gt("event_ts", after.getEventTs()),
+                        Filters.and(eq("event_ts", after.getEventTs()), Filters.gt("_id", after.getMongoObjectId())));
+
+        return coll.find(filter)
+                .sort(Sorts.ascending("event_ts", "_id"))
+                .limit(limit)
+                .batchSize(Math.min(limit, batchSize));
+    }
+
+    /**
+     * event_ts range with optional status/temperature filter, projection and sort direction.
+     * Always bounded on event_ts, so it is answered from one of the event_ts indexes; projecting
+     * only event_ts/payload.status/payload.temperature makes it a covered query.
+     */
+    public MongoIterable<HybridEvent> findRange(EventRangeQuery q, int batchSize) {
+        return range(readCollection, q, batchSize);
+    }
+
+    public MongoIterable<RawBsonDocument> findRangeRaw(EventRangeQuery q, int batchSize) {
+        return range(rawCollection, q, batchSize);
+    }
+
+    private static <T> MongoIterable<T> range(MongoCollection<T> coll, EventRangeQuery q, int batchSize) {
+        List<Bson> and = new ArrayList<>();
+        EventFilter f = q.getFilter();
+        if (f.getStatus() != null) and.add(eq("payload.status", f.getStatus()));
+        and.add(Filters.gte("event_ts", q.getFrom()));
+        and.add(Filters.lt("event_ts", q.getTo()));
+        if (f.getMinTemperature() != null) and.add(Filters.gte("payload.temperature", f.getMinTemperature()));
+        if (f.getMaxTemperature() != null) and.add(Filters.lte("payload.temperature", f.getMaxTemperature()));
+
+        FindIterable<T> find = coll.find(Filters.and(and))
+                .sort(q.isDescending() ? Sorts.descending("event_ts") : Sorts.ascending("event_ts"))
+                .limit(q.getLimit())
+                .batchSize(Math.min(q.getLimit(), batchSize));
+
+        if (!q.getFields().isEmpty()) find = find.projection(projection(q.getFields()));
+        return find;
+    }
+
+    private static Bson projection(Set<String> fields) {
+        List<String> include = new ArrayList<>();
+        for (String f : fields) {
+            if (!"mongoId".equals(f)) include.add(f);
+        }
+        return fields.contains("mongoId")
+                ? Projections.include(include)
+                : Projections.fields(Projections.include(include), Projections.excludeId());
+    }
+
+    /**
+     * Tumbling-window rollup over event_ts in [from, to): $match on the event_ts index, then $group
+     * by bucket start (epoch millis floored to the window). Only non-empty buckets are returned.
+     */
+    public List<BucketStats> aggregateBuckets(Instant from, Instant to, long windowMillis) {
+        Document tsMillis = new Document("$toLong", "$event_ts");
+        Document bucket = new Document("$subtract", List.of(tsMillis, new Document("$mod", List.of(tsMillis, windowMillis))));
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(Filters.gte("event_ts", from), Filters.lt("event_ts", to))),
+                Aggregates.group(bucket,
+                        Accumulators.sum("count", 1),
+                        Accumulators.min("minTemp", "$payload.temperature"),
+                        Accumulators.max("maxTemp", "$payload.temperature"),
+                        Accumulators.avg("avgTemp", "$payload.temperature"),
+                        Accumulators.sum("ok", statusIs("OK")),
+                        Accumulators.sum("warn", statusIs("WARN"))),
+                Aggregates.sort(Sorts.ascending("_id")));
+
+        List<BucketStats> out = new ArrayList<>();
+        for (Document d : collection.withDocumentClass(Document.class).aggregate(pipeline)) {
+            out.add(BucketStats.fromDocument(d));
+        }
         return out;
     }
 
-    public void insertOne(HybridEvent event) {
-        collection.insertOne(event);
+    private static Document statusIs(String status) {
+        return new Document("$cond", List.of(new Document("$eq", List.of("$payload.status", status)), 1, 0));
+    }
+
+    /** The {@code n} newest events by (event_ts, _id), oldest first. */
+    public List<HybridEvent> findLatest(int n) {
+        List<HybridEvent> out = new ArrayList<>(n);
+        collection.find().sort(Sorts.descending("event_ts", "_id")).limit(n).into(out);
+        Collections.reverse(out);
+        return out;
+    }
+
+    /**
+     * Goes through the write coalescer when one is set; errors are the same as a plain insertOne.
+     * With a spool failover, SPOOLED means the event is on local disk and will be written by the drainer.
+     */
+    public SpoolFailover.Outcome insertOne(HybridEvent event) {
+        SpoolFailover s = spool;
+        if (s == null) {
+            insertOneDirect(event);
+        } else if (s.write(List.of(event), events -> insertOneDirect(event)) == SpoolFailover.Outcome.SPOOLED) {
+            return SpoolFailover.Outcome.SPOOLED;
+        }
+        RollupAggregator r = rollup;
+        if (r != null) r.record(event);
+        return SpoolFailover.Outcome.WRITTEN;
+    }
+
+    private void insertOneDirect(HybridEvent event) {
+        WriteCoalescer c = coalescer;
+        if (c != null) c.insert(event);
+        else collection.insertOne(event);
+    }
+
+    /**
+     * {@link #insertOne} without blocking the caller: the coalescer's future when one is set, the async
+     * driver otherwise. Errors (duplicate key, full queue or spool) complete the future exceptionally.
+     */
+    public CompletableFuture<SpoolFailover.Outcome> insertOneAsync(HybridEvent event) {
+        SpoolFailover s = spool;
+        CompletableFuture<SpoolFailover.Outcome> written = (s == null)
+                ? insertOneDirectAsync(event).thenApply(v -> SpoolFailover.Outcome.WRITTEN)
+                : s.writeAsync(List.of(event), () -> insertOneDirectAsync(event));
+        return written.thenApply(outcome -> {
+            RollupAggregator r = rollup;
+            if (r != null && outcome == SpoolFailover.Outcome.WRITTEN) r.record(event);
+            return outcome;
+        });
+    }
+
+    private CompletableFuture<Void> insertOneDirectAsync(HybridEvent event) {
+        WriteCoalescer c = coalescer;
+        try {
+            return c != null ? c.submit(event) : reactive().insertOne(event);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     public void insertMany(List<HybridEvent> events) {
         if (events == null || events.isEmpty()) return;
         collection.insertMany(events);
+        RollupAggregator r = rollup;
+        if (r != null) r.recordAll(events);
+    }
+
+    /** insertMany that keeps going past bad documents and reports which ones failed. */
+    public BulkInsertResult insertManyUnordered(List<HybridEvent> events) {
+        if (events == null || events.isEmpty()) return BulkInsertResult.success(0);
+        try {
+            collection.insertMany(events, new InsertManyOptions().ordered(false));
+            RollupAggregator r = rollup;
+            if (r != null) r.recordAll(events);
+            return BulkInsertResult.success(events.size());
+        } catch (MongoBulkWriteException e) {
+            BulkInsertResult result = BulkInsertResult.fromException(events.size(), e);
+            RollupAggregator r = rollup;
+            if (r != null) {
+                Set<Integer> failed = new HashSet<>();
+                for (BulkInsertResult.Failure f : result.failures()) failed.add(f.index);
+                for (int i = 0; i < events.size(); i++) {
+                    if (!failed.contains(i)) r.record(events.get(i));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Idempotent bulk ingest keyed on the business id, one unordered bulkWrite:
+     * KEEP_FIRST updateOne $setOnInsert, LAST_WRITE_WINS replaceOne guarded by event_ts <= new,
+     * REJECT plain insertOne. All three need the unique id index ({@link #ensureUniqueIdIndex}) to be
+     * race-free. Upserted events get their new _id set; client-supplied _ids are only used by REJECT.
+     */
+    public UpsertResult upsertMany(List<HybridEvent> events, ConflictPolicy policy) {
+        Codec<HybridEvent> codec = collection.getCodecRegistry().get(HybridEvent.class);
+        List<WriteModel<BsonDocument>> writes = new ArrayList<>(events.size());
+        for (HybridEvent e : events) writes.add(upsertModel(e, policy, codec));
+
+        BulkWriteResult ok = null;
+        MongoBulkWriteException failed = null;
+        try {
+            ok = collection.withDocumentClass(BsonDocument.class).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            failed = e;
+        }
+        UpsertResult result = UpsertResult.of(events.size(), policy, ok, failed);
+
+        BulkWriteResult written = (failed != null) ? failed.getWriteResult() : ok;
+        if (written != null && written.wasAcknowledged()) {
+            for (BulkWriteUpsert u : written.getUpserts()) {
+                if (u.getId().isObjectId()) events.get(u.getIndex()).setMongoObjectId(u.getId().asObjectId().getValue());
+            }
+        }
+        RollupAggregator r = rollup;
+        if (r != null) {
+            // replacements are not re-aggregated: the rollup keeps the first version's contribution
+            for (int i = 0; i < events.size(); i++) {
+                if (result.outcome(i) == UpsertResult.Outcome.INSERTED) r.record(events.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static WriteModel<BsonDocument> upsertModel(HybridEvent e, ConflictPolicy policy, Codec<HybridEvent> codec) {
+        if (policy == ConflictPolicy.REJECT) {
+            if (e.getMongoObjectId() == null) e.setMongoObjectId(new ObjectId());
+            return new InsertOneModel<>(toBson(e, codec));
+        }
+        BsonDocument doc = toBson(e, codec);
+        doc.remove("_id"); // _id is immutable on replace; upserts get a server-side one
+        if (policy == ConflictPolicy.KEEP_FIRST) {
+            return new UpdateOneModel<>(eq("id", e.getId()), new BsonDocument("$setOnInsert", doc), new UpdateOptions().upsert(true));
+        }
+        // newer stored event: the filter misses, the upsert collides with the unique id -> E11000 -> DUPLICATE
+        return new ReplaceOneModel<>(
+                Filters.and(eq("id", e.getId()), Filters.lte("event_ts", e.getEventTs())),
+                doc, new ReplaceOptions().upsert(true));
+    }
+
+    private static BsonDocument toBson(HybridEvent e, Codec<HybridEvent> codec) {
+        BsonDocument doc = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(doc), e, EncoderContext.builder().build());
+        return doc;
     }
 }
@@ -0,0 +1,57 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Persists import job checkpoints in Mongo (collection "import_checkpoints") so a restarted
+ * service can resume unfinished files from the last committed byte offset.
+ *
+ * Document: { _id: jobId, path, sizeBytes, lastModified, state, offset, rowsParsed, inserted, invalid, writeFailed, updatedAt }
+ */
+public class ImportCheckpointStore {
+
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+    private final MongoCollection<Document> checkpoints;
+
+    public ImportCheckpointStore(MongoCollection<Document> checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    public void save(ImportJob job, long lastModified) {
+        ImportProgress p = job.getProgress();
+        Document d = new Document("_id", job.getId())
+                .append("path", job.getPath())
+                .append("sizeBytes", p.getSizeBytes())
+                .append("lastModified", lastModified)
+                .append("state", job.getState().name())
+                .append("offset", p.getBytesCommitted())
+                .append("rowsParsed", p.getRowsParsed())
+                .append("inserted", p.getRowsInserted())
+                .append("invalid", p.getRowsInvalid())
+                .append("writeFailed", p.getRowsWriteFailed())
+                .append("updatedAt", new Date());
+        if (p.getError() != null) d.append("error", p.getError());
+        checkpoints.replaceOne(eq("_id", job.getId()), d, UPSERT);
+    }
+
+    public void delete(String jobId) {
+        checkpoints.deleteOne(eq("_id", jobId));
+    }
+
+    /** Jobs that were queued or running when the service last stopped. */
+    public List<Document> findUnfinished() {
+        List<Document> out = new ArrayList<>();
+        checkpoints.find(in("state", ImportJob.State.QUEUED.name(), ImportJob.State.RUNNING.name())).into(out);
+        return out;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.mongo;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** One background file import, as reported by GET /imports/{id}. */
+public class ImportJob {
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id;
+    private final String path;
+    private final Instant submittedAt;
+    private final boolean resumed;
+    private final long resumedFromOffset;
+    private final ImportProgress progress;
+    private volatile State state = State.QUEUED;
+
+    ImportJob(String id, String path, Instant submittedAt, boolean resumed, long resumedFromOffset, ImportProgress progress) {
+        this.id = id;
+        this.path = path;
+        this.submittedAt = submittedAt;
+        this.resumed = resumed;
+        this.resumedFromOffset = resumedFromOffset;
+        this.progress = progress;
+    }
+
+    public String getId() { return id; }
+    public String getPath() { return path; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    /** Picked up from a checkpoint of an earlier run, so rows after the offset may already be stored. */
+    public boolean isResumed() { return resumed; }
+    public long getResumedFromOffset() { return resumedFromOffset; }
+    public ImportProgress getProgress() { return progress; }
+    public State getState() { return state; }
+
+    void setState(State state) { this.state = state; }
+
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jobId", id);
+        m.put("state", state.name());
+        m.put("submittedAt", submittedAt.toString());
+        if (resumed) m.put("resumedFromOffset", resumedFromOffset);
+        m.putAll(progress.toMap());
+        return m;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.mongo;
+
+import org.bson.Document;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs file imports as background jobs on a bounded executor.
+ *
+ * - submit() returns immediately with a job id; a full queue is rejected instead of piling up
+ * - after every committed chunk the job's byte offset is checkpointed in Mongo
+ * - on startup resumeUnfinished() picks up jobs that were queued/running when the service stopped
+ */
+public class ImportJobManager implements AutoCloseable {
+
+    private static final int MAX_RETAINED_JOBS = 500;
+
+    private final EventFileImporter importer;
+    private final ImportCheckpointStore checkpoints;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private volatile boolean closing;
+
+    public ImportJobManager(EventFileImporter importer, ImportCheckpointStore checkpoints,
+                            int maxConcurrent, int maxQueued) {
+        this.importer = importer;
+        this.checkpoints = checkpoints;
+
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                r -> {
+                    Thread t = new Thread(r, "import-job-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** @throws RejectedExecutionException when the import queue is full */
+    public ImportJob submit(Path file) {
+        File f = file.toFile();
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.toString(), Instant.now(), false, 0,
+                new ImportProgress(file.toString(), f.length()));
+        try {
+            start(job, f.lastModified());
+        } catch (RejectedExecutionException e) {
+            checkpoints.delete(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<ImportJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public Collection<ImportJob> list() {
+        List<ImportJob> out = new ArrayList<>(jobs.values());
+        out.sort(Comparator.comparing(ImportJob::getSubmittedAt));
+        return out;
+    }
+
+    /** Re-queues checkpointed jobs from a previous run; returns how many were resumed. */
+    public int resumeUnfinished() {
+        int resumed = 0;
+        for (Document d : checkpoints.findUnfinished()) {
+            String id = d.getString("_id");
+            String path = d.getString("path");
+            long size = d.get("sizeBytes", Number.class).longValue();
+            long lastModified = d.get("lastModified", Number.class).longValue();
+            long offset = d.get("offset", Number.class).longValue();
+
+            ImportProgress progress = new ImportProgress(path, size);
+            progress.restore(offset,
+                    d.get("rowsParsed", Number.class).longValue(),
+                    d.get("inserted", Number.class).longValue(),
+                    d.get("invalid", Number.class).longValue(),
+                    d.get("writeFailed", Number.class).longValue());
+            ImportJob job = new ImportJob(id, path, Instant.now(), true, offset, progress);
+
+            File f = new File(path);
+            if (!f.isFile() || f.length() != size || f.lastModified() != lastModified) {
+                // resuming a different file from an old offset would import garbage
+                progress.finish("file changed or removed since checkpoint; not resumed");
+                job.setState(ImportJob.State.FAILED);
+                jobs.put(id, job);
+                checkpoints.save(job, lastModified);
+                continue;
+            }
+
+            try {
+                start(job, lastModified);
+                resumed++;
+                System.out.println("**** resuming import " + id + " at offset " + offset + ": " + path);
+            } catch (RejectedExecutionException e) {
+                System.out.println("**** import queue full, not resuming " + id + " now: " + path);
+            }
+        }
+        return resumed;
+    }
+
+    private void start(ImportJob job, long lastModified) {
+        pruneFinished();
+        jobs.put(job.getId(), job);
+        // checkpoint first: once queued, the job thread owns the checkpoint document
+        checkpoints.save(job, lastModified);
+        try {
+            executor.execute(() -> runJob(job, lastModified));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+    }
+
+    private void runJob(ImportJob job, long lastModified) {
+        job.setState(ImportJob.State.RUNNING);
+        checkpoints.save(job, lastModified);
+        try {
+            importer.run(Path.of(job.getPath()), job.getProgress(), job.getResumedFromOffset(), job.isResumed(),
+                    progress -> checkpoints.save(job, lastModified));
+            job.setState(ImportJob.State.DONE);
+            System.out.println("**** import finished " + job.getProgress());
+        } catch (Exception e) {
+            if (closing) return; // leave the checkpoint as RUNNING so the next start resumes it
+            job.setState(ImportJob.State.FAILED);
+            System.out.println("**** import failed " + job.getProgress());
+            e.printStackTrace();
+        }
+        checkpoints.save(job, lastModified);
+    }
+
+    private void pruneFinished() {
+        if (jobs.size() < MAX_RETAINED_JOBS) return;
+        jobs.values().stream()
+                .filter(ImportJob::isFinished)
+                .sorted(Comparator.comparing(ImportJob::getSubmittedAt))
+                .limit(jobs.size() - MAX_RETAINED_JOBS + 1L)
+                .forEach(j -> jobs.remove(j.getId()));
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mongo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Live counters for one file import; updated by the parse and write stages, read by status reporting. */
+public class ImportProgress {
+
+    private final String path;
+    private final long sizeBytes;
+    private final long startedNanos = System.nanoTime();
+
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong bytesCommitted = new AtomicLong();
+    final AtomicLong rowsParsed = new AtomicLong();
+    final AtomicLong rowsInserted = new AtomicLong();
+    final AtomicLong rowsInvalid = new AtomicLong();
+    final AtomicLong rowsWriteFailed = new AtomicLong();
+    final AtomicLong rowsSkipped = new AtomicLong();
+    private volatile long rowsInsertedAtStart;
+
+    private volatile long finishedNanos;
+    private volatile String error;
+
+    public ImportProgress(String path, long sizeBytes) {
+        this.path = path;
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getPath() { return path; }
+    public long getBytesRead() { return bytesRead.get(); }
+    /** File offset up to which every row has been written (or counted as failed). */
+    public long getBytesCommitted() { return bytesCommitted.get(); }
+    public long getRowsInserted() { return rowsInserted.get(); }
+    public long getRowsFailed() { return rowsInvalid.get() + rowsWriteFailed.get(); }
+    public boolean isFinished() { return finishedNanos != 0; }
+    public String getError() { return error; }
+
+    /** Carries totals over from a checkpoint so a resumed import keeps counting where it stopped. */
+    void restore(long bytesCommitted, long rowsParsed, long rowsInserted, long rowsInvalid, long rowsWriteFailed) {
+        this.bytesCommitted.set(bytesCommitted);
+        this.bytesRead.set(bytesCommitted);
+        this.rowsParsed.set(rowsParsed);
+        this.rowsInserted.set(rowsInserted);
+        this.rowsInvalid.set(rowsInvalid);
+        this.rowsWriteFailed.set(rowsWriteFailed);
+        this.rowsInsertedAtStart = rowsInserted;
+    }
+
+    public long getSizeBytes() { return sizeBytes; }
+    public long getRowsParsed() { return rowsParsed.get(); }
+    public long getRowsInvalid() { return rowsInvalid.get(); }
+    public long getRowsWriteFailed() { return rowsWriteFailed.get(); }
+
+    void finish(String error) {
+        this.error = error;
+        this.finishedNanos = System.nanoTime();
+    }
+
+    public double rowsPerSecond() {
+        long end = isFinished() ? finishedNanos : System.nanoTime();
+        double secs = (end - startedNanos) / 1e9;
+        return secs <= 0 ? 0 : (rowsInserted.get() - rowsInsertedAtStart) / secs;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("path", path);
+        m.put("sizeBytes", sizeBytes);
+        m.put("bytesRead", bytesRead.get());
+        m.put("bytesCommitted", bytesCommitted.get());
+        m.put("rowsParsed", rowsParsed.get());
+        m.put("inserted", rowsInserted.get());
+        m.put("invalid", rowsInvalid.get());
+        m.put("writeFailed", rowsWriteFailed.get());
+        m.put("skippedExisting", rowsSkipped.get());
+        m.put("rowsPerSec", Math.round(rowsPerSecond()));
+        m.put("finished", isFinished());
+        if (error != null) m.put("error", error);
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d bytes, %d inserted, %d failed, %.0f rows/s",
+                path, bytesRead.get(), sizeBytes, rowsInserted.get(), getRowsFailed(), rowsPerSecond());
+    }
+}
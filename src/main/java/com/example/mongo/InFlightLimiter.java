@@ -0,0 +1,66 @@
+package com.example.mongo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of HTTP requests being worked on at once. With virtual threads nothing else bounds
+ * concurrency, so without a cap a burst turns into an unbounded queue in front of the Mongo pool;
+ * past the cap requests are refused immediately (503 + Retry-After) instead of timing out later.
+ *
+ * tryAcquire/release are one CAS each; every successful tryAcquire must be paired with one release.
+ */
+public class InFlightLimiter {
+
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /** maxInFlight <= 0 admits everything (requests are still counted). */
+    public InFlightLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight <= 0 ? Integer.MAX_VALUE : maxInFlight;
+    }
+
+    public boolean tryAcquire() {
+        int n;
+        do {
+            n = inFlight.get();
+            if (n >= maxInFlight) {
+                rejected.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(n, n + 1));
+        admitted.increment();
+        peak.accumulateAndGet(n + 1, Math::max);
+        return true;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        m.gauge("hybrid_http_in_flight", "HTTP requests currently being handled", inFlight::get);
+        m.gauge("hybrid_http_max_in_flight", "Admission limit (0 = unlimited)", () -> maxInFlight == Integer.MAX_VALUE ? 0 : maxInFlight);
+        m.counter("hybrid_http_admission_total", "Admission decisions", admitted::sum, "outcome", "admitted");
+        m.counter("hybrid_http_admission_total", "Admission decisions", rejected::sum, "outcome", "rejected");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("maxInFlight", maxInFlight == Integer.MAX_VALUE ? 0 : maxInFlight);
+        m.put("inFlight", inFlight.get());
+        m.put("peak", peak.get());
+        m.put("admitted", admitted.sum());
+        m.put("rejected", rejected.sum());
+        return m;
+    }
+}
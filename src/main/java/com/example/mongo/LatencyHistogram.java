@@ -0,0 +1,74 @@
+package com.example.mongo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram for latencies in nanoseconds (HdrHistogram-style, ~3% precision).
+ *
+ * Values below 64 get their own bucket; above that every power of two is split into 32 linear
+ * sub-buckets. Recording is a single atomic increment, so it is cheap enough for hot paths.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;       // 32
+    private static final int LINEAR_LIMIT = SUB_COUNT << 1;  // 64
+    private static final int BUCKETS = (63 - SUB_BITS) * SUB_COUNT + LINEAR_LIMIT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        total.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Convenience for {@code recordNanos(System.nanoTime() - startNanos)}. */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public long count() { return total.sum(); }
+
+    public long sumNanos() { return sum.sum(); }
+
+    public long maxNanos() { return max.get(); }
+
+    /** Value at the given percentile (0..100), in nanoseconds. Returns 0 when empty. */
+    public long percentileNanos(double percentile) {
+        long n = count();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * (percentile / 100.0)));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxNanos());
+        }
+        return maxNanos();
+    }
+
+    public double percentileMillis(double percentile) {
+        return percentileNanos(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR_LIMIT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (v >>> shift);
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = index - (long) shift * SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
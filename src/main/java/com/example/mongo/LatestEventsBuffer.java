@@ -0,0 +1,147 @@
+package com.example.mongo;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The most recent N events in commit order, kept current by the change stream.
+ * GET /events/latest is answered from here without touching the database.
+ *
+ * Events are keyed by _id, so a document delivered both by the startup prime query and by the
+ * stream is stored once, and updates/deletes replace or drop the buffered copy.
+ */
+public class LatestEventsBuffer implements EventChangeStreamWatcher.Listener {
+
+    private final int capacity;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // insertion-ordered: oldest first
+    private final LinkedHashMap<ObjectId, HybridEvent> events = new LinkedHashMap<>();
+
+    public LatestEventsBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Seeds the buffer; {@code oldestFirst} must be in ascending commit/event order. The stream is
+     * already open while the prime query runs, so whatever it has delivered is newer: primed events
+     * go in behind those, and an event the stream already holds keeps the stream's copy.
+     */
+    public void prime(Collection<HybridEvent> oldestFirst) {
+        lock.writeLock().lock();
+        try {
+            LinkedHashMap<ObjectId, HybridEvent> live = new LinkedHashMap<>(events);
+            events.clear();
+            for (HybridEvent e : oldestFirst) {
+                if (e == null || e.getMongoObjectId() == null || live.containsKey(e.getMongoObjectId())) continue;
+                events.remove(e.getMongoObjectId());
+                events.put(e.getMongoObjectId(), e);
+            }
+            events.putAll(live);
+            Iterator<HybridEvent> it = events.values().iterator();
+            while (events.size() > capacity) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(HybridEvent e) {
+        if (e == null || e.getMongoObjectId() == null) return;
+        lock.writeLock().lock();
+        try {
+            // re-put moves nothing in a LinkedHashMap; remove first so a replayed insert counts as newest
+            events.remove(e.getMongoObjectId());
+            events.put(e.getMongoObjectId(), e);
+            if (events.size() > capacity) {
+                Iterator<HybridEvent> it = events.values().iterator();
+                it.next();
+                it.remove();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Newest first, at most {@code n}. */
+    public List<HybridEvent> latest(int n) {
+        lock.readLock().lock();
+        try {
+            List<HybridEvent> all = new ArrayList<>(events.values());
+            int from = Math.max(0, all.size() - n);
+            List<HybridEvent> out = new ArrayList<>(all.size() - from);
+            for (int i = all.size() - 1; i >= from; i--) out.add(all.get(i));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return events.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<HybridEvent> change) {
+        switch (change.getOperationType()) {
+            case INSERT -> add(change.getFullDocument());
+            case REPLACE, UPDATE -> replace(change);
+            case DELETE -> remove(documentId(change));
+            default -> { /* drop/rename/invalidate: nothing to buffer */ }
+        }
+    }
+
+    private void replace(ChangeStreamDocument<HybridEvent> change) {
+        HybridEvent doc = change.getFullDocument();
+        ObjectId id = documentId(change);
+        if (id == null) return;
+        lock.writeLock().lock();
+        try {
+            if (!events.containsKey(id)) return; // not one of the latest
+            if (doc == null) events.remove(id);   // deleted before the lookup ran
+            else events.replace(id, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(ObjectId id) {
+        if (id == null) return;
+        lock.writeLock().lock();
+        try {
+            events.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static ObjectId documentId(ChangeStreamDocument<?> change) {
+        if (change.getDocumentKey() == null) return null;
+        BsonValue id = change.getDocumentKey().get("_id");
+        return (id != null && id.isObjectId()) ? id.asObjectId().getValue() : null;
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of("size", size(), "capacity", capacity);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.mongo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load against a running ServerApp, for comparing HTTP_EXECUTION_MODE settings
+ * under the same load. Each of {@code concurrency} virtual threads sends one request, waits for the
+ * response, and sends the next.
+ *
+ * Usage:
+ *   LoadTestMain [baseUrl] [read|write|mixed] [concurrency] [seconds] [idRange]
+ *
+ *   read   GET /events/by-id/id_N with N uniform in [1, idRange] (ids written by ProducerMain)
+ *   write  POST /events with a fresh id per request
+ *   mixed  90% read, 10% write
+ *
+ * Prints throughput, latency percentiles of successful requests, and 503s (admission control) separately.
+ */
+public class LoadTestMain {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = (args.length > 0) ? args[0] : "http://localhost:8080";
+        String scenario = (args.length > 1) ? args[1].toLowerCase() : "read";
+        int concurrency = (args.length > 2) ? Integer.parseInt(args[2]) : 200;
+        long seconds = (args.length > 3) ? Long.parseLong(args[3]) : 30;
+        long idRange = (args.length > 4) ? Long.parseLong(args[4]) : 100_000;
+        if (!List.of("read", "write", "mixed").contains(scenario)) {
+            throw new IllegalArgumentException("scenario must be read, write or mixed: " + scenario);
+        }
+
+        // HTTP/1.1 keep-alive like most clients of this API; no h2c upgrade attempt per connection
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        LatencyHistogram ok = new LatencyHistogram();
+        LongAdder busy = new LongAdder();     // 503
+        LongAdder notFound = new LongAdder(); // 404 (id outside what is stored)
+        LongAdder failed = new LongAdder();   // other 4xx/5xx
+        LongAdder errors = new LongAdder();   // connect/timeouts
+
+        System.out.println("**** load test " + scenario + " " + baseUrl + " concurrency=" + concurrency + " seconds=" + seconds);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long t0 = System.nanoTime();
+        List<Thread> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(Thread.ofVirtual().name("load-" + i).start(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    boolean write = "write".equals(scenario) || ("mixed".equals(scenario) && rnd.nextInt(10) == 0);
+                    HttpRequest req = write
+                            ? HttpRequest.newBuilder(URI.create(baseUrl + "/events"))
+                                    .timeout(Duration.ofSeconds(30))
+                                    .header("Content-Type", "application/json")
+                                    .POST(HttpRequest.BodyPublishers.ofString(eventJson(rnd)))
+                                    .build()
+                            : HttpRequest.newBuilder(URI.create(baseUrl + "/events/by-id/id_" + rnd.nextLong(1, idRange + 1)))
+                                    .timeout(Duration.ofSeconds(30))
+                                    .GET()
+                                    .build();
+                    long start = System.nanoTime();
+                    try {
+                        int status = client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status < 300) ok.recordSince(start);
+                        else if (status == 503) busy.increment();
+                        else if (status == 404) notFound.increment();
+                        else failed.increment();
+                    } catch (InterruptedException ie) {
+                        return;
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            }));
+        }
+        for (Thread t : workers) t.join();
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        long total = ok.count() + busy.sum() + notFound.sum() + failed.sum() + errors.sum();
+        System.out.printf("**** requests=%d (%.0f/s) ok=%d (%.0f/s) 503=%d 404=%d failed=%d errors=%d%n",
+                total, total / elapsed, ok.count(), ok.count() / elapsed, busy.sum(), notFound.sum(), failed.sum(), errors.sum());
+        System.out.printf("**** ok latency ms p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                ok.percentileMillis(50), ok.percentileMillis(90), ok.percentileMillis(99), ok.percentileMillis(99.9),
+                ok.maxNanos() / 1e6);
+    }
+
+    private static String eventJson(ThreadLocalRandom rnd) {
+        return "{\"id\":\"lt_" + UUID.randomUUID() + "\",\"event_ts\":\"" + Instant.now() + "\","
+                + "\"payload\":{\"temperature\":" + rnd.nextInt(100) + ",\"status\":\"OK\","
+                + "\"meta\":{\"sequence\":" + rnd.nextLong(1_000_000) + ",\"source\":\"loadtest\"}}}";
+    }
+}
@@ -1,24 +1,87 @@
 package com.example.mongo;
 
-import org.bson.codecs.pojo.annotations.BsonProperty;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class Meta {
-    @BsonProperty("sequence")
-    private int sequence;
+/**
+ * Typed payload.meta. It is also a read-only-ish {@code Map<String,Object>} view, so code that
+ * reads {@code payload.get("meta")} as a map keeps working. Fields with an unexpected BSON type
+ * or unknown names are kept in {@code extra} so nothing is lost on a round trip.
+ */
+public class Meta extends AbstractMap<String, Object> {
 
-    @BsonProperty("source")
+    private Long sequence;
     private String source;
+    private Map<String, Object> extra; // null unless the document had unknown / oddly typed fields
 
     public Meta() {}
 
-    public Meta(int sequence, String source) {
+    public Meta(long sequence, String source) {
         this.sequence = sequence;
         this.source = source;
     }
 
-    public int getSequence() { return sequence; }
-    public void setSequence(int sequence) { this.sequence = sequence; }
+    public Long getSequence() { return sequence; }
+    public void setSequence(Long sequence) { this.sequence = sequence; }
 
     public String getSource() { return source; }
     public void setSource(String source) { this.source = source; }
+
+    Map<String, Object> extra() { return extra; }
+
+    @Override
+    public Object get(Object key) {
+        if ("sequence".equals(key) && sequence != null) return sequence;
+        if ("source".equals(key) && source != null) return source;
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null || (extra != null && extra.containsKey(key));
+    }
+
+    /** As {@link Payload#put}: a key is either in its typed field or in {@code extra}, never both. */
+    @Override
+    public Object put(String key, Object value) {
+        Object old = get(key);
+        if ("sequence".equals(key) && value instanceof Number n && !(value instanceof Double)) {
+            sequence = n.longValue();
+        } else if ("source".equals(key) && value instanceof String s) {
+            source = s;
+        } else {
+            if ("sequence".equals(key)) sequence = null;
+            else if ("source".equals(key)) source = null;
+            if (extra == null) extra = new LinkedHashMap<>();
+            extra.put(key, value);
+            return old;
+        }
+        if (extra != null) extra.remove(key);
+        return old;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                List<Entry<String, Object>> entries = new ArrayList<>(2 + (extra == null ? 0 : extra.size()));
+                if (sequence != null) entries.add(new SimpleImmutableEntry<>("sequence", sequence));
+                if (source != null) entries.add(new SimpleImmutableEntry<>("source", source));
+                if (extra != null) entries.addAll(extra.entrySet());
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return (sequence != null ? 1 : 0) + (source != null ? 1 : 0) + (extra == null ? 0 : extra.size());
+            }
+        };
+    }
 }
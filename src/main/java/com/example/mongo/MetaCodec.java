@@ -0,0 +1,56 @@
+package com.example.mongo;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.Map;
+
+/** payload.meta <-> {@link Meta}; sequence accepts int32 or int64. */
+public class MetaCodec implements Codec<Meta> {
+
+    private final CodecRegistry registry;
+
+    public MetaCodec(CodecRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Meta decode(BsonReader reader, DecoderContext ctx) {
+        Meta m = new Meta();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            BsonType type = reader.getCurrentBsonType();
+            if ("sequence".equals(name) && type == BsonType.INT64) m.setSequence(reader.readInt64());
+            else if ("sequence".equals(name) && type == BsonType.INT32) m.setSequence((long) reader.readInt32());
+            else if ("source".equals(name) && type == BsonType.STRING) m.setSource(reader.readString());
+            else m.put(name, BsonValues.readValue(reader, ctx, registry));
+        }
+        reader.readEndDocument();
+        return m;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Meta m, EncoderContext ctx) {
+        writer.writeStartDocument();
+        if (m.getSequence() != null) writer.writeInt64("sequence", m.getSequence());
+        if (m.getSource() != null) writer.writeString("source", m.getSource());
+        if (m.extra() != null) {
+            for (Map.Entry<String, Object> e : m.extra().entrySet()) {
+                writer.writeName(e.getKey());
+                BsonValues.writeValue(writer, e.getValue(), ctx, registry);
+            }
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Meta> getEncoderClass() {
+        return Meta.class;
+    }
+}
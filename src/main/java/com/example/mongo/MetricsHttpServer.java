@@ -0,0 +1,41 @@
+package com.example.mongo;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal /metrics endpoint for processes without Javalin (the producers), on the JDK's built-in
+ * HTTP server. One daemon thread; a scrape renders the registry and returns.
+ */
+public class MetricsHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    public MetricsHttpServer(String host, int port, MetricsRegistry metrics) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot bind metrics port " + port, e);
+        }
+        server.createContext("/metrics", exchange -> {
+            byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", MetricsRegistry.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        System.out.println("**** metrics on http://" + host + ":" + port + "/metrics");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
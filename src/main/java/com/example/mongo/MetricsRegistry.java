@@ -0,0 +1,166 @@
+package com.example.mongo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics exposed at /metrics in the Prometheus text format (version 0.0.4).
+ *
+ * Recording goes through lock-free recorders: counters are LongAdders and latencies are
+ * {@link LatencyHistogram}s (one atomic increment per value). Gauges and existing counters are read
+ * through suppliers at scrape time only. Latencies are exported as summaries in seconds with
+ * lifetime quantiles plus _sum/_count, so rate(_sum)/rate(_count) still gives a windowed mean.
+ *
+ * Labels are given as name/value pairs: {@code counter("x_total", "help", "route", "/events")}.
+ */
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    /** One metric name: help, type, and its children by label set. */
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<List<String>, Object> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /** Counter recorder, created on first use. */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).children.computeIfAbsent(key(labels), k -> new LongAdder());
+    }
+
+    /** Counter read from an existing monotonic value. */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).children.put(key(labels), value);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).children.put(key(labels), value);
+    }
+
+    /** Latency recorder (nanoseconds in, seconds out), created on first use. */
+    public LatencyHistogram latency(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).children.computeIfAbsent(key(labels), k -> new LatencyHistogram());
+    }
+
+    /** Exports a histogram that is recorded elsewhere. */
+    public void latency(String name, String help, LatencyHistogram histogram, String... labels) {
+        family(name, help, Type.SUMMARY).children.put(key(labels), histogram);
+    }
+
+    /** Drops every child of a family (gauges over a changing set, e.g. running import jobs). */
+    public void clear(String name) {
+        Family f = families.get(name);
+        if (f != null) f.children.clear();
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (f.type != type) throw new IllegalArgumentException(name + " is already registered as a " + f.type);
+        return f;
+    }
+
+    private static List<String> key(String[] labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("labels must be name/value pairs");
+        return labels.length == 0 ? List.of() : Arrays.asList(labels);
+    }
+
+    // ------------------------------------------------------------------------------------------
+
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        writeTo(sb);
+        return sb.toString();
+    }
+
+    public void writeTo(Appendable out) {
+        try {
+            for (Family f : families.values()) {
+                if (f.children.isEmpty()) continue;
+                out.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+                out.append("# TYPE ").append(f.name).append(' ').append(f.type.name().toLowerCase()).append('\n');
+                List<Map.Entry<List<String>, Object>> children = new ArrayList<>(f.children.entrySet());
+                children.sort(Map.Entry.comparingByKey((a, b) -> String.join("\u0000", a).compareTo(String.join("\u0000", b))));
+                for (Map.Entry<List<String>, Object> child : children) {
+                    write(out, f, child.getKey(), child.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(Appendable out, Family f, List<String> labels, Object metric) throws IOException {
+        switch (metric) {
+            case LongAdder a -> sample(out, f.name, labels, null, a.sum());
+            case LongSupplier s -> sample(out, f.name, labels, null, s.getAsLong());
+            case DoubleSupplier s -> sample(out, f.name, labels, null, s.getAsDouble());
+            case LatencyHistogram h -> {
+                for (double q : QUANTILES) {
+                    sample(out, f.name, labels, Double.toString(q), h.percentileNanos(q * 100) / 1e9);
+                }
+                sample(out, f.name + "_sum", labels, null, h.sumNanos() / 1e9);
+                sample(out, f.name + "_count", labels, null, h.count());
+            }
+            default -> throw new IllegalStateException("unknown metric " + metric.getClass());
+        }
+    }
+
+    private static void sample(Appendable out, String name, List<String> labels, String quantile, double value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty() || quantile != null) {
+            out.append('{');
+            boolean first = true;
+            for (int i = 0; i < labels.size(); i += 2) {
+                if (!first) out.append(',');
+                label(out, labels.get(i), labels.get(i + 1));
+                first = false;
+            }
+            if (quantile != null) {
+                if (!first) out.append(',');
+                label(out, "quantile", quantile);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) out.append(Long.toString((long) value));
+        else out.append(Double.toString(value));
+        out.append('\n');
+    }
+
+    private static void label(Appendable out, String name, String value) throws IOException {
+        out.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
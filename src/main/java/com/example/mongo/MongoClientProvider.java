@@ -2,17 +2,27 @@ package com.example.mongo;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.*;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.bson.Document;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static org.bson.codecs.configuration.CodecRegistries.*;
 
 public class MongoClientProvider implements AutoCloseable {
 
     private final MongoClient mongoClient;
     private final MongoDatabase database;
+    private final MongoPoolMonitor poolMonitor; // null when MONGO_POOL_MONITOR=false
+    private final MongoClientSettings settings;
 
     public MongoClientProvider(Config cfg) {
         String uri = "mongodb://" + cfg.mongoUser + ":" + cfg.mongoPassword + "@"
@@ -20,18 +30,104 @@ public class MongoClientProvider implements AutoCloseable {
 
         System.out.println("**** mongo connection string  " + uri); //rkb
 
-        CodecRegistry pojoCodecRegistry = fromRegistries(
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .codecRegistry(codecRegistry(cfg.mongoCodec, cfg.mongoTypedPayload))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(cfg.mongoPoolMaxSize)
+                        .minSize(cfg.mongoPoolMinSize)
+                        .maxWaitTime(cfg.mongoPoolMaxWaitMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(cfg.mongoPoolMaxIdleMs, TimeUnit.MILLISECONDS)
+                        .maxConnecting(cfg.mongoPoolMaxConnecting))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(cfg.mongoConnectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(cfg.mongoSocketTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(cfg.mongoServerSelectionTimeoutMs, TimeUnit.MILLISECONDS))
+                .compressorList(compressors(cfg.mongoCompressors));
+        // client stays on primary; MONGO_READ_PREFERENCE only goes to the read endpoints (see readPreference)
+        ReadPreference endpointReads = readPreference(cfg.mongoReadPreference);
+        WriteConcern wc = writeConcern(cfg.mongoWriteConcern);
+        if (wc != null) settings.writeConcern(wc);
+
+        this.poolMonitor = cfg.mongoPoolMonitor ? new MongoPoolMonitor() : null;
+        if (poolMonitor != null) {
+            settings.applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(poolMonitor))
+                    .addCommandListener(poolMonitor);
+        }
+        System.out.println("**** mongo pool max=" + cfg.mongoPoolMaxSize + " wait=" + cfg.mongoPoolMaxWaitMs
+                + "ms compressors=[" + cfg.mongoCompressors + "] readPreference(read endpoints)=" + endpointReads.getName()
+                + " writeConcern=" + cfg.mongoWriteConcern);
+
+        this.settings = settings.build();
+        this.mongoClient = MongoClients.create(this.settings);
+        this.database = mongoClient.getDatabase(cfg.mongoDb);
+    }
+
+    /**
+     * "direct" (default): hand-written HybridEvent/Payload/Meta codecs, POJO codec only as fallback.
+     * "pojo": the original reflective PojoCodecProvider for everything.
+     */
+    public static CodecRegistry codecRegistry(String codec, boolean typedPayload) {
+        CodecRegistry pojo = fromRegistries(
                 MongoClientSettings.getDefaultCodecRegistry(),
                 fromProviders(PojoCodecProvider.builder().automatic(true).build())
         );
+        if ("pojo".equalsIgnoreCase(codec)) return pojo;
+        return fromRegistries(fromProviders(new EventCodecProvider(typedPayload)), pojo);
+    }
 
-        MongoClientSettings settings = MongoClientSettings.builder()
-                .applyConnectionString(new ConnectionString(uri))
-                .codecRegistry(pojoCodecRegistry)
-                .build();
+    /** "zstd,snappy" -> compressors in preference order; the server picks the first one it supports. */
+    public static List<MongoCompressor> compressors(String spec) {
+        List<MongoCompressor> out = new ArrayList<>();
+        if (spec == null) return out;
+        for (String name : spec.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "" -> {}
+                case "zstd" -> out.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> out.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> out.add(MongoCompressor.createZlibCompressor());
+                default -> throw new IllegalArgumentException("unknown compressor '" + name.trim() + "' (zstd, snappy, zlib)");
+            }
+        }
+        return out;
+    }
 
-        this.mongoClient = MongoClients.create(settings);
-        this.database = mongoClient.getDatabase(cfg.mongoDb);
+    /**
+     * "default" keeps the collection's write concern (null); otherwise "majority" or a w number,
+     * each optionally followed by ",j" for journaled acknowledgement (e.g. "1,j").
+     */
+    public static WriteConcern writeConcern(String spec) {
+        if (spec == null || spec.isBlank() || "default".equalsIgnoreCase(spec.trim())) return null;
+        String[] parts = spec.trim().toLowerCase().split("\\s*,\\s*");
+        WriteConcern wc = switch (parts[0]) {
+            case "majority" -> WriteConcern.MAJORITY;
+            default -> {
+                try { yield new WriteConcern(Integer.parseInt(parts[0])); }
+                catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("write concern must be default, majority or a number, optionally with ,j: " + spec);
+                }
+            }
+        };
+        if (parts.length > 1) {
+            if (!"j".equals(parts[1])) throw new IllegalArgumentException("unknown write concern option '" + parts[1] + "' in " + spec);
+            wc = wc.withJournal(true);
+        }
+        return wc;
+    }
+
+    /**
+     * MONGO_READ_PREFERENCE, for the read endpoints' collection only (HybridEventRepository#setReadPreference).
+     * Everything else reads from the primary because it has to see its own writes.
+     */
+    public static ReadPreference readPreference(String spec) {
+        return ReadPreference.valueOf(spec.trim());
+    }
+
+    /** The collection with {@code spec} applied; unchanged for "default". */
+    public static <T> MongoCollection<T> withWriteConcern(MongoCollection<T> collection, String spec) {
+        WriteConcern wc = writeConcern(spec);
+        return wc == null ? collection : collection.withWriteConcern(wc);
     }
 
     public MongoCollection<HybridEvent> getCollection(Config cfg) {
@@ -42,6 +138,36 @@ public class MongoClientProvider implements AutoCloseable {
         return mongoClient.getDatabase(dbName).getCollection(collectionName);
     }
 
+    /**
+     * Async store on a Reactive Streams client built from the same settings; its pool is separate
+     * from the sync one (MONGO_POOL_MAX_SIZE each) but reports to the same pool monitor.
+     */
+    public ReactiveEventStore createReactiveStore(Config cfg) {
+        return new ReactiveEventStore(com.mongodb.reactivestreams.client.MongoClients.create(settings),
+                cfg.mongoDb, cfg.mongoCollection, cfg.ingestWriteConcern, readPreference(cfg.mongoReadPreference));
+    }
+
+    /** null when ROLLUP_ENABLED=false. */
+    public EventRollupStore createRollupStore(Config cfg) {
+        if (!cfg.rollupEnabled) return null;
+        return new EventRollupStore(getRawCollection(cfg.mongoDb, cfg.mongoCollection + "_rollup"));
+    }
+
+    /** null when SPOOL_ENABLED=false. Each process needs its own spool directory ({@code name}). */
+    public SpoolFailover createSpoolFailover(Config cfg, String name) {
+        if (!cfg.spoolEnabled) return null;
+        MongoCollection<HybridEvent> events = getCollection(cfg);
+        EventSpool spool = new EventSpool(Path.of(cfg.spoolDir, name), events.getCodecRegistry().get(HybridEvent.class),
+                cfg.spoolSegmentMb * 1024 * 1024, cfg.spoolMaxMb * 1024 * 1024,
+                EventSpool.FsyncPolicy.parse(cfg.spoolFsync), cfg.spoolFsyncIntervalMs);
+        return new SpoolFailover(spool, events, cfg.spoolSlowWriteMs, cfg.spoolLatencyThreshold,
+                cfg.spoolErrorThreshold, cfg.spoolDrainBatch);
+    }
+
+    public MongoPoolMonitor getPoolMonitor() {
+        return poolMonitor;
+    }
+
     public com.mongodb.client.MongoClient getClient() {
         return mongoClient;
     }
@@ -0,0 +1,196 @@
+package com.example.mongo;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolClearedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Driver event listener for sizing the connection pool from data: how long operations wait to check
+ * out a connection, how many connections are open / in use, why checkouts fail, and per-command
+ * (insert, find, getMore, aggregate, ...) server round-trip latency.
+ *
+ * Registered on MongoClientSettings by {@link MongoClientProvider}; callbacks run on driver threads,
+ * so everything here is a lock-free counter or histogram.
+ */
+public class MongoPoolMonitor implements ConnectionPoolListener, CommandListener {
+
+    private final LatencyHistogram checkoutWait = new LatencyHistogram();
+    private final LongAdder checkouts = new LongAdder();
+    private final Map<ConnectionCheckOutFailedEvent.Reason, LongAdder> checkoutFailures = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger maxInUse = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder poolCleared = new LongAdder();
+    private volatile int maxPoolSize;
+
+    private final Map<String, LatencyHistogram> commandLatency = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> commandFailures = new ConcurrentHashMap<>();
+    private volatile MetricsRegistry metrics;
+
+    // --- connection pool ---
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        maxPoolSize = event.getSettings().getMaxSize();
+    }
+
+    @Override
+    public void connectionPoolCleared(ConnectionPoolClearedEvent event) {
+        poolCleared.increment();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkouts.increment();
+        checkoutWait.recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        checkoutFailures.computeIfAbsent(event.getReason(), r -> new LongAdder()).increment();
+        checkoutWait.recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        created.increment();
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        closed.increment();
+        open.decrementAndGet();
+    }
+
+    // --- commands ---
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        command(event.getCommandName()).recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        command(event.getCommandName()).recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        commandFailures.computeIfAbsent(event.getCommandName(), this::newFailureCounter).increment();
+    }
+
+    private LatencyHistogram command(String name) {
+        LatencyHistogram h = commandLatency.get(name);
+        return h != null ? h : commandLatency.computeIfAbsent(name, this::newCommandHistogram);
+    }
+
+    private LatencyHistogram newCommandHistogram(String name) {
+        LatencyHistogram h = new LatencyHistogram();
+        MetricsRegistry m = metrics;
+        if (m != null) m.latency("hybrid_mongo_command_seconds", "MongoDB command round-trip time", h, "command", name);
+        return h;
+    }
+
+    private LongAdder newFailureCounter(String name) {
+        LongAdder n = new LongAdder();
+        MetricsRegistry m = metrics;
+        if (m != null) m.counter("hybrid_mongo_command_failures_total", "Failed MongoDB commands", n::sum, "command", name);
+        return n;
+    }
+
+    /** Exports pool gauges and per-command latency (including commands seen before this call). */
+    public void registerMetrics(MetricsRegistry m) {
+        m.gauge("hybrid_mongo_pool_connections", "Connections in the driver pool", open::get, "state", "open");
+        m.gauge("hybrid_mongo_pool_connections", "Connections in the driver pool", inUse::get, "state", "in_use");
+        m.gauge("hybrid_mongo_pool_max_size", "Configured maximum pool size", () -> maxPoolSize);
+        m.counter("hybrid_mongo_pool_checkouts_total", "Connection checkouts", checkouts::sum);
+        m.latency("hybrid_mongo_pool_checkout_wait_seconds", "Time spent waiting for a pooled connection", checkoutWait);
+        m.counter("hybrid_mongo_pool_cleared_total", "Pool clears (server marked unknown, e.g. failover)", poolCleared::sum);
+        for (ConnectionCheckOutFailedEvent.Reason reason : ConnectionCheckOutFailedEvent.Reason.values()) {
+            m.counter("hybrid_mongo_pool_checkout_failures_total", "Failed connection checkouts by reason", () -> {
+                LongAdder n = checkoutFailures.get(reason);
+                return n == null ? 0 : n.sum();
+            }, "reason", reason.name().toLowerCase());
+        }
+        metrics = m;
+        commandLatency.forEach((name, h) -> m.latency("hybrid_mongo_command_seconds", "MongoDB command round-trip time", h, "command", name));
+        commandFailures.forEach((name, n) -> m.counter("hybrid_mongo_command_failures_total", "Failed MongoDB commands", n::sum, "command", name));
+    }
+
+    public LatencyHistogram checkoutWait() {
+        return checkoutWait;
+    }
+
+    /** Command name -> latency of every completed (succeeded or failed) command. */
+    public Map<String, LatencyHistogram> commandLatency() {
+        return commandLatency;
+    }
+
+    public int connectionsOpen() {
+        return open.get();
+    }
+
+    public int connectionsInUse() {
+        return inUse.get();
+    }
+
+    public int maxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("maxSize", maxPoolSize);
+        pool.put("open", open.get());
+        pool.put("inUse", inUse.get());
+        pool.put("maxInUse", maxInUse.get());
+        pool.put("created", created.sum());
+        pool.put("closed", closed.sum());
+        pool.put("cleared", poolCleared.sum());
+        pool.put("checkouts", checkouts.sum());
+        pool.put("checkoutWaitP50Ms", checkoutWait.percentileMillis(50));
+        pool.put("checkoutWaitP99Ms", checkoutWait.percentileMillis(99));
+        pool.put("checkoutWaitMaxMs", checkoutWait.maxNanos() / 1e6);
+        Map<String, Long> failures = new TreeMap<>();
+        checkoutFailures.forEach((reason, n) -> failures.put(reason.name().toLowerCase(), n.sum()));
+        pool.put("checkoutFailures", failures);
+
+        Map<String, Object> commands = new TreeMap<>();
+        commandLatency.forEach((name, h) -> {
+            Map<String, Object> c = new LinkedHashMap<>();
+            c.put("count", h.count());
+            LongAdder f = commandFailures.get(name);
+            c.put("failed", f == null ? 0 : f.sum());
+            c.put("p50Ms", h.percentileMillis(50));
+            c.put("p99Ms", h.percentileMillis(99));
+            c.put("maxMs", h.maxNanos() / 1e6);
+            commands.put(name, c);
+        });
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("pool", pool);
+        m.put("commands", commands);
+        return m;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mongo;
+
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination token: the (event_ts, _id) of the last event on a page.
+ * Clients pass it back as {@code ?after=} and must not interpret it.
+ */
+public final class PageToken {
+
+    private final Instant eventTs;
+    private final ObjectId mongoObjectId;
+
+    public PageToken(Instant eventTs, ObjectId mongoObjectId) {
+        if (eventTs == null || mongoObjectId == null) {
+            throw new IllegalArgumentException("page token needs both event_ts and _id");
+        }
+        this.eventTs = eventTs;
+        this.mongoObjectId = mongoObjectId;
+    }
+
+    public static PageToken of(HybridEvent last) {
+        return new PageToken(last.getEventTs(), last.getMongoObjectId());
+    }
+
+    /** Same token, read lazily from the raw BSON of the last event (passthrough read path). */
+    public static PageToken of(RawBsonDocument last) {
+        return new PageToken(Instant.ofEpochMilli(last.getDateTime("event_ts").getValue()), last.getObjectId("_id").getValue());
+    }
+
+    public Instant getEventTs() { return eventTs; }
+    public ObjectId getMongoObjectId() { return mongoObjectId; }
+
+    public String encode() {
+        String raw = eventTs.toEpochMilli() + ":" + mongoObjectId.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** @throws IllegalArgumentException if the token was not produced by {@link #encode()} */
+    public static PageToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            return new PageToken(
+                    Instant.ofEpochMilli(Long.parseLong(raw.substring(0, sep))),
+                    new ObjectId(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid page token", e);
+        }
+    }
+}
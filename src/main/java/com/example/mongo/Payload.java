@@ -1,16 +1,28 @@
 package com.example.mongo;
 
-import org.bson.codecs.pojo.annotations.BsonProperty;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class Payload {
-    @BsonProperty("temperature")
-    private int temperature;
+/**
+ * Typed event payload, produced by {@link PayloadCodec} when MONGO_TYPED_PAYLOAD=true.
+ *
+ * It is also a {@code Map<String,Object>} view over its fields, so it can sit in
+ * {@link HybridEvent#getPayload()} and everything that reads the payload as a map (filters,
+ * rollups, Jackson) works unchanged. Temperature keeps the numeric type it was stored with.
+ * Unknown or oddly typed fields go to {@code extra}.
+ */
+public class Payload extends AbstractMap<String, Object> {
 
-    @BsonProperty("status")
+    private Number temperature;
     private String status;
-
-    @BsonProperty("meta")
     private Meta meta;
+    private Map<String, Object> extra; // null unless the document had unknown / oddly typed fields
 
     public Payload() {}
 
@@ -20,12 +32,77 @@ public class Payload {
         this.meta = meta;
     }
 
-    public int getTemperature() { return temperature; }
-    public void setTemperature(int temperature) { this.temperature = temperature; }
+    public Number getTemperature() { return temperature; }
+    public void setTemperature(Number temperature) { this.temperature = temperature; }
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
     public Meta getMeta() { return meta; }
     public void setMeta(Meta meta) { this.meta = meta; }
+
+    Map<String, Object> extra() { return extra; }
+
+    @Override
+    public Object get(Object key) {
+        if ("temperature".equals(key) && temperature != null) return temperature;
+        if ("status".equals(key) && status != null) return status;
+        if ("meta".equals(key) && meta != null) return meta;
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null || (extra != null && extra.containsKey(key));
+    }
+
+    /** A key lives in exactly one place: its typed field, or {@code extra} when the value does not fit it. */
+    @Override
+    public Object put(String key, Object value) {
+        Object old = get(key);
+        if ("temperature".equals(key) && (value instanceof Integer || value instanceof Long || value instanceof Double)) {
+            temperature = (Number) value;
+        } else if ("status".equals(key) && value instanceof String s) {
+            status = s;
+        } else if ("meta".equals(key) && value instanceof Meta m) {
+            meta = m;
+        } else {
+            clearTyped(key);
+            if (extra == null) extra = new LinkedHashMap<>();
+            extra.put(key, value);
+            return old;
+        }
+        if (extra != null) extra.remove(key);
+        return old;
+    }
+
+    private void clearTyped(String key) {
+        switch (key) {
+            case "temperature" -> temperature = null;
+            case "status" -> status = null;
+            case "meta" -> meta = null;
+            default -> {}
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                List<Entry<String, Object>> entries = new ArrayList<>(3 + (extra == null ? 0 : extra.size()));
+                if (temperature != null) entries.add(new SimpleImmutableEntry<>("temperature", temperature));
+                if (status != null) entries.add(new SimpleImmutableEntry<>("status", status));
+                if (meta != null) entries.add(new SimpleImmutableEntry<>("meta", meta));
+                if (extra != null) entries.addAll(extra.entrySet());
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return (temperature != null ? 1 : 0) + (status != null ? 1 : 0) + (meta != null ? 1 : 0)
+                        + (extra == null ? 0 : extra.size());
+            }
+        };
+    }
 }
@@ -0,0 +1,78 @@
+package com.example.mongo;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.Map;
+
+/** payload <-> {@link Payload}; temperature accepts int32, int64 or double and keeps that type. */
+public class PayloadCodec implements Codec<Payload> {
+
+    private final CodecRegistry registry;
+    private final MetaCodec metaCodec;
+
+    public PayloadCodec(CodecRegistry registry, MetaCodec metaCodec) {
+        this.registry = registry;
+        this.metaCodec = metaCodec;
+    }
+
+    @Override
+    public Payload decode(BsonReader reader, DecoderContext ctx) {
+        Payload p = new Payload();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            BsonType type = reader.getCurrentBsonType();
+            switch (name) {
+                case "temperature" -> {
+                    if (type == BsonType.INT32) p.setTemperature(reader.readInt32());
+                    else if (type == BsonType.DOUBLE) p.setTemperature(reader.readDouble());
+                    else if (type == BsonType.INT64) p.setTemperature(reader.readInt64());
+                    else p.put(name, BsonValues.readValue(reader, ctx, registry));
+                }
+                case "status" -> {
+                    if (type == BsonType.STRING) p.setStatus(reader.readString());
+                    else p.put(name, BsonValues.readValue(reader, ctx, registry));
+                }
+                case "meta" -> {
+                    if (type == BsonType.DOCUMENT) p.setMeta(metaCodec.decode(reader, ctx));
+                    else p.put(name, BsonValues.readValue(reader, ctx, registry));
+                }
+                default -> p.put(name, BsonValues.readValue(reader, ctx, registry));
+            }
+        }
+        reader.readEndDocument();
+        return p;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Payload p, EncoderContext ctx) {
+        writer.writeStartDocument();
+        if (p.getTemperature() != null) {
+            writer.writeName("temperature");
+            BsonValues.writeValue(writer, p.getTemperature(), ctx, registry);
+        }
+        if (p.getStatus() != null) writer.writeString("status", p.getStatus());
+        if (p.getMeta() != null) {
+            writer.writeName("meta");
+            metaCodec.encode(writer, p.getMeta(), ctx);
+        }
+        if (p.extra() != null) {
+            for (Map.Entry<String, Object> e : p.extra().entrySet()) {
+                writer.writeName(e.getKey());
+                BsonValues.writeValue(writer, e.getValue(), ctx, registry);
+            }
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Payload> getEncoderClass() {
+        return Payload.class;
+    }
+}
@@ -3,27 +3,156 @@ package com.example.mongo;
 import com.mongodb.client.MongoCollection;
 import org.bson.Document;
 
+/**
+ * Usage:
+ *   ProducerMain [count] [throttleSeconds]
+ *       one insertOne per event, sleeping throttleSeconds between events (original mode)
+ *   ProducerMain batch [count] [eventsPerSecond] [batchSize] [lingerMs]
+ *       batched, pipelined unordered insertMany paced by a target rate (0 = unlimited)
+ *   ProducerMain concurrent [count] [workers] [eventsPerSecond] [batchSize]
+ *       K virtual-thread workers sharing one rate limiter and one id allocator
+ *
+ * count = -1 runs forever.
+ */
 public class ProducerMain {
 
     public static void main(String[] args) {
         Config cfg = new Config();
 
+        if (args.length > 0 && "batch".equalsIgnoreCase(args[0])) {
+            runBatch(cfg, args);
+            return;
+        }
+        if (args.length > 0 && "concurrent".equalsIgnoreCase(args[0])) {
+            runConcurrent(cfg, args);
+            return;
+        }
+
         int count = (args.length > 0) ? Integer.parseInt(args[0]) : -1; // -1 = forever
         long throttleSeconds = (args.length > 1) ? Long.parseLong(args[1]) : 1;
 
-        try (MongoClientProvider provider = new MongoClientProvider(cfg)) {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (MongoClientProvider provider = new MongoClientProvider(cfg);
+             RollupAggregator rollup = rollupAggregator(cfg, provider);
+             SpoolFailover spool = provider.createSpoolFailover(cfg, "producer")) {
+            MetricsHttpServer metricsServer = metricsServer(cfg, metrics, provider, spool);
+            try {
+                HybridEventProducer producer = newProducer(cfg, provider);
+                producer.setRollupAggregator(rollup);
+                producer.setSpoolFailover(spool);
+                producer.registerMetrics(metrics);
+
+                if (count < 0) producer.runForever(throttleSeconds);
+                else producer.runNTimes(count, throttleSeconds);
+            } finally {
+                if (metricsServer != null) metricsServer.close();
+            }
+        }
+    }
+
+    private static void runBatch(Config cfg, String[] args) {
+        long count = (args.length > 1) ? Long.parseLong(args[1]) : -1;
+        double eventsPerSecond = (args.length > 2) ? Double.parseDouble(args[2]) : cfg.producerTargetRate;
+        int batchSize = (args.length > 3) ? Integer.parseInt(args[3]) : cfg.producerBatchSize;
+        long lingerMs = (args.length > 4) ? Long.parseLong(args[4]) : cfg.producerLingerMs;
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (MongoClientProvider provider = new MongoClientProvider(cfg);
+             RollupAggregator rollup = rollupAggregator(cfg, provider);
+             SpoolFailover spool = provider.createSpoolFailover(cfg, "producer")) {
+            MetricsHttpServer metricsServer = metricsServer(cfg, metrics, provider, spool);
+            try {
+                HybridEventProducer producer = newProducer(cfg, provider);
+                producer.setRollupAggregator(rollup);
+                producer.setSpoolFailover(spool);
+                producer.registerMetrics(metrics);
+                BatchingProducer batching = new BatchingProducer(
+                        producer, provider.getCollection(cfg), batchSize, lingerMs, eventsPerSecond);
+
+                // Ctrl-C / systemd stop: finish the current batch and still print the summary
+                Thread main = Thread.currentThread();
+                Thread hook = new Thread(() -> {
+                    batching.stop();
+                    try { main.join(10_000); } catch (InterruptedException ignored) {}
+                });
+                Runtime.getRuntime().addShutdownHook(hook);
+
+                BatchingProducer.RunStats stats = batching.run(count);
+                System.out.println("**** producer finished: " + stats);
+
+                try { Runtime.getRuntime().removeShutdownHook(hook); } catch (IllegalStateException ignored) {}
+            } finally {
+                if (metricsServer != null) metricsServer.close();
+            }
+        }
+    }
 
-            // Typed events collection (POJO)
-            MongoCollection<HybridEvent> events = provider.getCollection(cfg);
+    private static void runConcurrent(Config cfg, String[] args) {
+        long count = (args.length > 1) ? Long.parseLong(args[1]) : -1;
+        int workers = (args.length > 2) ? Integer.parseInt(args[2]) : cfg.producerWorkers;
+        double eventsPerSecond = (args.length > 3) ? Double.parseDouble(args[3]) : cfg.producerTargetRate;
+        int batchSize = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
 
-            // Raw counters collection (Document)
-            MongoCollection<Document> counters =
-                    provider.getRawCollection(cfg.mongoDb, "counters");
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (MongoClientProvider provider = new MongoClientProvider(cfg);
+             RollupAggregator rollup = rollupAggregator(cfg, provider);
+             SpoolFailover spool = provider.createSpoolFailover(cfg, "producer")) {
+            MetricsHttpServer metricsServer = metricsServer(cfg, metrics, provider, spool);
+            try {
+                HybridEventProducer producer = newProducer(cfg, provider);
+                producer.setRollupAggregator(rollup);
+                producer.setSpoolFailover(spool);
+                producer.registerMetrics(metrics);
+                ConcurrentProducer engine = new ConcurrentProducer(
+                        producer, provider.getCollection(cfg), workers, eventsPerSecond, batchSize);
 
-            HybridEventProducer producer = new HybridEventProducer(events, counters);
+                // Ctrl-C / systemd stop: let workers finish their in-flight writes, then print the summary
+                Thread main = Thread.currentThread();
+                Thread hook = new Thread(() -> {
+                    engine.stop();
+                    try { main.join(10_000); } catch (InterruptedException ignored) {}
+                });
+                Runtime.getRuntime().addShutdownHook(hook);
+
+                BatchingProducer.RunStats stats = engine.run(count, 5);
+                System.out.println("**** producer finished: " + stats);
+
+                try { Runtime.getRuntime().removeShutdownHook(hook); } catch (IllegalStateException ignored) {}
+            } finally {
+                if (metricsServer != null) metricsServer.close();
+            }
+        }
+    }
+
+    private static HybridEventProducer newProducer(Config cfg, MongoClientProvider provider) {
+        // Typed events collection (POJO)
+        MongoCollection<HybridEvent> events = provider.getCollection(cfg);
+
+        // Raw counters collection (Document)
+        MongoCollection<Document> counters =
+                provider.getRawCollection(cfg.mongoDb, "counters");
+
+        return new HybridEventProducer(events, sequenceAllocator(cfg, counters));
+    }
+
+    /** null when ROLLUP_ENABLED=false (try-with-resources skips null resources). */
+    private static RollupAggregator rollupAggregator(Config cfg, MongoClientProvider provider) {
+        EventRollupStore store = provider.createRollupStore(cfg);
+        return store == null ? null : new RollupAggregator(store, cfg.rollupFlushMs);
+    }
+
+    /** null when PRODUCER_METRICS_PORT=0; otherwise /metrics with pool, command, spool and producer metrics. */
+    static MetricsHttpServer metricsServer(Config cfg, MetricsRegistry metrics, MongoClientProvider provider, SpoolFailover spool) {
+        if (cfg.producerMetricsPort <= 0) return null;
+        if (provider.getPoolMonitor() != null) provider.getPoolMonitor().registerMetrics(metrics);
+        if (spool != null) spool.registerMetrics(metrics);
+        return new MetricsHttpServer(cfg.bindHost, cfg.producerMetricsPort, metrics);
+    }
 
-            if (count < 0) producer.runForever(throttleSeconds);
-            else producer.runNTimes(count, throttleSeconds);
+    static SequenceAllocator sequenceAllocator(Config cfg, MongoCollection<Document> counters) {
+        if ("counter".equalsIgnoreCase(cfg.producerIdAllocator)) {
+            return new CounterSequenceAllocator(counters);
         }
+        return new BlockSequenceAllocator(counters, cfg.producerIdBlockMin, cfg.producerIdBlockMax);
     }
 }
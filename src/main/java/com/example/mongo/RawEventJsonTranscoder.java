@@ -0,0 +1,126 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReaderMark;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Transcodes a stored event straight from its BSON bytes to JSON tokens on a JsonGenerator,
+ * without building a HybridEvent or payload maps in between.
+ *
+ * Output matches what Jackson writes for {@link HybridEvent} with the app's mapper:
+ * field order event_ts, id, payload, mongoId; event_ts as an ISO instant; _id as hex "mongoId";
+ * missing fields as null, or left out when {@code sparse} (projected reads). Inside the payload,
+ * dates use Jackson's default StdDateFormat and ObjectIds are written as hex strings.
+ *
+ * The generator writes into its own recycled buffer, so nothing is allocated per event beyond
+ * the reader and the few strings the format requires.
+ */
+public final class RawEventJsonTranscoder {
+
+    private RawEventJsonTranscoder() {}
+
+    public static void write(JsonGenerator gen, RawBsonDocument doc, boolean sparse) throws IOException {
+        try (BsonBinaryReader reader = new BsonBinaryReader(doc.getByteBuffer().asNIO())) {
+            String mongoId = null;
+            long eventTs = 0;
+            boolean hasEventTs = false;
+            String id = null;
+            BsonReaderMark payload = null;
+
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                BsonType type = reader.getCurrentBsonType();
+                if ("_id".equals(name) && type == BsonType.OBJECT_ID) mongoId = reader.readObjectId().toHexString();
+                else if ("event_ts".equals(name) && type == BsonType.DATE_TIME) { eventTs = reader.readDateTime(); hasEventTs = true; }
+                else if ("id".equals(name) && type == BsonType.STRING) id = reader.readString();
+                else if ("payload".equals(name) && type == BsonType.DOCUMENT) { payload = reader.getMark(); reader.skipValue(); }
+                else reader.skipValue();
+            }
+
+            gen.writeStartObject();
+            if (hasEventTs) gen.writeStringField("event_ts", Instant.ofEpochMilli(eventTs).toString());
+            else if (!sparse) gen.writeNullField("event_ts");
+            if (id != null) gen.writeStringField("id", id);
+            else if (!sparse) gen.writeNullField("id");
+            if (payload != null) {
+                payload.reset();
+                gen.writeFieldName("payload");
+                writeValue(gen, reader);
+            } else if (!sparse) gen.writeNullField("payload");
+            if (mongoId != null) gen.writeStringField("mongoId", mongoId);
+            else if (!sparse) gen.writeNullField("mongoId");
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeValue(JsonGenerator gen, BsonBinaryReader reader) throws IOException {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT -> {
+                reader.readStartDocument();
+                gen.writeStartObject();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    gen.writeFieldName(reader.readName());
+                    writeValue(gen, reader);
+                }
+                gen.writeEndObject();
+                reader.readEndDocument();
+            }
+            case ARRAY -> {
+                reader.readStartArray();
+                if (gen instanceof CBORGenerator) {
+                    // Jackson writes a List as a definite-length CBOR array; count the elements first to match
+                    BsonReaderMark start = reader.getMark();
+                    int size = 0;
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        reader.skipValue();
+                        size++;
+                    }
+                    start.reset();
+                    gen.writeStartArray(null, size);
+                } else {
+                    gen.writeStartArray();
+                }
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) writeValue(gen, reader);
+                gen.writeEndArray();
+                reader.readEndArray();
+            }
+            case STRING -> gen.writeString(reader.readString());
+            case INT32 -> gen.writeNumber(reader.readInt32());
+            case INT64 -> gen.writeNumber(reader.readInt64());
+            case DOUBLE -> gen.writeNumber(reader.readDouble());
+            case DECIMAL128 -> {
+                Decimal128 d = reader.readDecimal128();
+                if (d.isNaN() || d.isInfinite()) gen.writeString(d.toString());
+                else gen.writeNumber(d.bigDecimalValue());
+            }
+            case BOOLEAN -> gen.writeBoolean(reader.readBoolean());
+            case DATE_TIME -> gen.writeString(formatDate(reader.readDateTime()));
+            case OBJECT_ID -> gen.writeString(reader.readObjectId().toHexString());
+            case NULL -> {
+                reader.readNull();
+                gen.writeNull();
+            }
+            default -> {
+                // binary, regex, timestamps etc. never appear in event payloads; keep the JSON valid
+                reader.skipValue();
+                gen.writeNull();
+            }
+        }
+    }
+
+    private static String formatDate(long millis) {
+        // StdDateFormat is not thread-safe; dates inside payloads are rare enough to create one per value
+        return new StdDateFormat().format(new Date(millis));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.mongo;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Point reads and single inserts on the Reactive Streams driver (HTTP_EXECUTION_MODE=reactive).
+ * Every call returns a future that completes on a driver thread, so no request thread waits on
+ * MongoDB. Built from the same settings as the sync client (codecs, pool, timeouts, pool monitor),
+ * but it is a second client with its own connection pool.
+ */
+public class ReactiveEventStore implements AutoCloseable {
+
+    private final MongoClient client;
+    private final MongoCollection<HybridEvent> collection;
+
+    /** {@code readPreference}: for the point reads (the endpoints' MONGO_READ_PREFERENCE); inserts always go to the primary. */
+    public ReactiveEventStore(MongoClient client, String db, String collection, String writeConcern, ReadPreference readPreference) {
+        this.client = client;
+        MongoCollection<HybridEvent> c = client.getDatabase(db).getCollection(collection, HybridEvent.class)
+                .withReadPreference(readPreference);
+        WriteConcern wc = MongoClientProvider.writeConcern(writeConcern);
+        this.collection = wc == null ? c : c.withWriteConcern(wc);
+    }
+
+    public CompletableFuture<Optional<HybridEvent>> findOneById(String id) {
+        return first(collection.find(eq("id", id)).first());
+    }
+
+    public CompletableFuture<Optional<HybridEvent>> findOneByMongoObjectId(ObjectId oid) {
+        return first(collection.find(eq("_id", oid)).first());
+    }
+
+    /** The codec assigns _id before the insert is sent, as with the sync driver. */
+    public CompletableFuture<Void> insertOne(HybridEvent event) {
+        return first(collection.insertOne(event)).thenApply(r -> null);
+    }
+
+    /** Result of a single-result publisher (find().first(), insertOne); empty when it completes with none. */
+    private static <T> CompletableFuture<Optional<T>> first(Publisher<T> publisher) {
+        CompletableFuture<Optional<T>> f = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(T value) {
+                f.complete(Optional.of(value));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                f.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                f.complete(Optional.empty());
+            }
+        });
+        return f;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
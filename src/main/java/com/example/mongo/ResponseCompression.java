@@ -0,0 +1,331 @@
+package com.example.mongo;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import io.javalin.http.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Content-Encoding for event reads: the streamed routes (GET /events, /events/range) and the
+ * single-event lookups.
+ *
+ * - the encoding is negotiated from Accept-Encoding (q-values and "*" honoured), ties going to
+ *   the server's order (HTTP_COMPRESSION, default zstd,br,gzip)
+ * - the first minBytes of the body are held back; a body that ends below that goes out as is
+ * - gzip Deflaters are pooled and reset between responses; zstd takes its buffers from the
+ *   driver codec's RecyclingBufferPool; br is only offered when the brotli4j native library loads
+ *
+ * Javalin's own compression has no zstd and a fixed compressor list, so event reads encode here;
+ * it still covers the small ctx.json responses (and stays out of the way once Content-Encoding is set).
+ */
+public class ResponseCompression {
+
+    public enum Encoding {
+        ZSTD("zstd"), BR("br"), GZIP("gzip"), IDENTITY("identity");
+
+        public final String token;
+
+        Encoding(String token) { this.token = token; }
+
+        static Encoding parse(String s) {
+            for (Encoding e : values()) if (e.token.equals(s) && e != IDENTITY) return e;
+            throw new IllegalArgumentException("unknown HTTP_COMPRESSION encoding '" + s + "'; use zstd, br or gzip");
+        }
+    }
+
+    static final int GZIP_LEVEL = 5;
+    static final int ZSTD_LEVEL = 3;
+    static final int BROTLI_QUALITY = 4;
+    private static final int DEFLATE_BUFFER = 8192;
+    private static final int POOLED_DEFLATERS = 64;
+
+    private final List<Encoding> preference;
+    private final int minBytes;
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOLED_DEFLATERS);
+    private final Map<Encoding, LongAdder> responses = new EnumMap<>(Encoding.class);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    /** {@code spec}: comma-separated encodings in server preference order; blank turns compression off. */
+    public ResponseCompression(String spec, int minBytes) {
+        this(spec, minBytes, Brotli4jLoader.isAvailable());
+    }
+
+    ResponseCompression(String spec, int minBytes, boolean brotliAvailable) {
+        List<Encoding> p = new ArrayList<>();
+        for (String s : spec.split(",")) {
+            s = s.trim().toLowerCase(Locale.ROOT);
+            if (s.isEmpty()) continue;
+            Encoding e = Encoding.parse(s);
+            if (e == Encoding.BR && !brotliAvailable) {
+                System.out.println("**** brotli native library not available on this platform; not offering br");
+                continue;
+            }
+            if (!p.contains(e)) p.add(e);
+        }
+        this.preference = List.copyOf(p);
+        this.minBytes = Math.max(0, minBytes);
+        for (Encoding e : Encoding.values()) responses.put(e, new LongAdder());
+    }
+
+    public boolean isEnabled() {
+        return !preference.isEmpty();
+    }
+
+    public boolean offers(Encoding e) {
+        return preference.contains(e);
+    }
+
+    public int minBytes() {
+        return minBytes;
+    }
+
+    /** Best encoding for an Accept-Encoding header; IDENTITY when nothing we offer is acceptable. */
+    public Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank() || preference.isEmpty()) return Encoding.IDENTITY;
+        Map<String, Double> q = new LinkedHashMap<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] kv = part.split(";");
+            String coding = kv[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.isEmpty()) continue;
+            double weight = 1.0;
+            for (int i = 1; i < kv.length; i++) {
+                String param = kv[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try { weight = Double.parseDouble(param.substring(2)); }
+                    catch (NumberFormatException e) { weight = 0; }
+                }
+            }
+            q.put(coding, weight);
+        }
+        Double any = q.get("*");
+        Encoding best = Encoding.IDENTITY;
+        double bestQ = 0;
+        for (Encoding e : preference) {
+            Double w = q.getOrDefault(e.token, any);
+            if (w != null && w > bestQ) {
+                best = e;
+                bestQ = w;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The response body stream for {@code ctx}, encoded as negotiated. Must be closed; closing
+     * finishes the encoding but leaves the servlet stream open.
+     */
+    public OutputStream stream(Context ctx) throws IOException {
+        Encoding enc = negotiate(ctx.header("Accept-Encoding"));
+        OutputStream sink = new FilterOutputStream(ctx.res().getOutputStream()) {
+            @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+            @Override public void close() throws IOException { out.flush(); }
+        };
+        if (enc == Encoding.IDENTITY) {
+            responses.get(Encoding.IDENTITY).increment();
+            return sink;
+        }
+        return open(enc, sink, e -> ctx.header("Content-Encoding", e.token));
+    }
+
+    /**
+     * Encodes an already serialized body (single-event reads) and sets Content-Encoding; bodies under
+     * minBytes come back unchanged. No I/O, so it is safe on driver callback threads.
+     */
+    public byte[] encode(Context ctx, byte[] body) {
+        Encoding enc = negotiate(ctx.header("Accept-Encoding"));
+        if (enc == Encoding.IDENTITY || body.length < minBytes) {
+            responses.get(Encoding.IDENTITY).increment();
+            return body;
+        }
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(Math.max(64, body.length / 2));
+        try (OutputStream out = encoder(enc, buf)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ctx.header("Content-Encoding", enc.token);
+        responses.get(enc).increment();
+        bytesIn.add(body.length);
+        bytesOut.add(buf.size());
+        return buf.toByteArray();
+    }
+
+    /** Deferred encoder over {@code sink}; {@code onEncode} runs once the body is known to be large enough. */
+    OutputStream open(Encoding enc, OutputStream sink, Consumer<Encoding> onEncode) {
+        return new DeferredStream(enc, sink, onEncode);
+    }
+
+    private OutputStream encoder(Encoding enc, OutputStream out) throws IOException {
+        return switch (enc) {
+            case GZIP -> new PooledGzipStream(out);
+            case ZSTD -> new ZstdOutputStreamNoFinalizer(out, RecyclingBufferPool.INSTANCE).setLevel(ZSTD_LEVEL);
+            case BR -> new BrotliOutputStream(out, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+            case IDENTITY -> out;
+        };
+    }
+
+    /** Holds the first minBytes back so small bodies are not encoded at all. */
+    private final class DeferredStream extends OutputStream {
+        private final Encoding enc;
+        private final OutputStream sink;
+        private final Consumer<Encoding> onEncode;
+        private final byte[] head;
+        private int count;
+        private long written;
+        private CountingStream counted;
+        private OutputStream encoder;
+        private boolean closed;
+
+        DeferredStream(Encoding enc, OutputStream sink, Consumer<Encoding> onEncode) {
+            this.enc = enc;
+            this.sink = sink;
+            this.onEncode = onEncode;
+            this.head = new byte[minBytes];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            written += len;
+            if (encoder != null) {
+                encoder.write(b, off, len);
+            } else if (count + len <= head.length) {
+                System.arraycopy(b, off, head, count, len);
+                count += len;
+            } else {
+                onEncode.accept(enc);
+                counted = new CountingStream(sink);
+                encoder = encoder(enc, counted);
+                encoder.write(head, 0, count);
+                encoder.write(b, off, len);
+            }
+        }
+
+        /** No-op until the encoding is decided: flushing early would commit an unencoded response. */
+        @Override
+        public void flush() throws IOException {
+            if (encoder != null) encoder.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (encoder == null) {
+                responses.get(Encoding.IDENTITY).increment();
+                sink.write(head, 0, count);
+                sink.close();
+                return;
+            }
+            encoder.close();
+            responses.get(enc).increment();
+            bytesIn.add(written);
+            bytesOut.add(counted.count);
+        }
+    }
+
+    private static final class CountingStream extends FilterOutputStream {
+        long count;
+
+        CountingStream(OutputStream out) { super(out); }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /** GZIP (RFC 1952) on a pooled raw Deflater; the Deflater goes back to the pool on close. */
+    private final class PooledGzipStream extends DeflaterOutputStream {
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final CRC32 crc = new CRC32();
+        private boolean finished;
+
+        PooledGzipStream(OutputStream out) throws IOException {
+            super(out, borrowDeflater(), DEFLATE_BUFFER);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            super.finish();
+            long size = def.getBytesRead();
+            out.write(new byte[]{
+                    (byte) crc.getValue(), (byte) (crc.getValue() >> 8), (byte) (crc.getValue() >> 16), (byte) (crc.getValue() >> 24),
+                    (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)});
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.reset();
+                if (!deflaters.offer(def)) def.end();
+            }
+        }
+    }
+
+    private Deflater borrowDeflater() {
+        Deflater d = deflaters.poll();
+        return d != null ? d : new Deflater(GZIP_LEVEL, true);
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        for (Encoding e : Encoding.values()) {
+            m.counter("hybrid_http_encoded_responses_total", "Event read responses by Content-Encoding",
+                    responses.get(e)::sum, "encoding", e.token);
+        }
+        m.counter("hybrid_http_encoded_bytes_total", "Bytes through the response encoders", bytesIn::sum, "stage", "in");
+        m.counter("hybrid_http_encoded_bytes_total", "Bytes through the response encoders", bytesOut::sum, "stage", "out");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("encodings", preference.stream().map(e -> e.token).toList());
+        m.put("minBytes", minBytes);
+        Map<String, Long> byEncoding = new LinkedHashMap<>();
+        for (Encoding e : Encoding.values()) byEncoding.put(e.token, responses.get(e).sum());
+        m.put("responses", byEncoding);
+        m.put("bytesIn", bytesIn.sum());
+        m.put("bytesOut", bytesOut.sum());
+        m.put("pooledDeflaters", deflaters.size());
+        return m;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-path rollup stage: every inserted event is folded into in-memory per-minute and per-hour
+ * deltas, and the deltas are flushed to {@link EventRollupStore} on a timer. Thousands of events
+ * per second become one upsert per touched bucket per flush.
+ *
+ * A flush that fails puts back the deltas that were certainly not applied, so counts are delayed
+ * rather than lost (they are lost only if the process dies before a later flush succeeds). The
+ * upserts are $inc, so a delta that may already be applied is never retried:
+ * - a MongoBulkWriteException: only the writes listed in getWriteErrors() go back; the rest were applied
+ * - a write-concern error or a lost reply: the outcome is unknown; the deltas are dropped and counted
+ *   in {@link #uncertainBuckets()} (an undercount at worst, never a double count)
+ */
+public final class RollupAggregator implements AutoCloseable {
+
+    record BucketKey(EventRollupStore.Granularity granularity, long startMillis) {}
+
+    /** Mutable per-bucket accumulator; guarded by the ConcurrentHashMap bin lock via compute(). */
+    static final class Delta {
+        long count;
+        long tempCount;
+        double sumTemp;
+        double minTemp = Double.POSITIVE_INFINITY;
+        double maxTemp = Double.NEGATIVE_INFINITY;
+        long ok;
+        long warn;
+
+        void add(HybridEvent e) {
+            count++;
+            Map<String, Object> p = e.getPayload();
+            if (p == null) return;
+            if (p.get("temperature") instanceof Number n) {
+                double t = n.doubleValue();
+                tempCount++;
+                sumTemp += t;
+                minTemp = Math.min(minTemp, t);
+                maxTemp = Math.max(maxTemp, t);
+            }
+            Object status = p.get("status");
+            if ("OK".equals(status)) ok++;
+            else if ("WARN".equals(status)) warn++;
+        }
+
+        Delta merge(Delta o) {
+            count += o.count;
+            tempCount += o.tempCount;
+            sumTemp += o.sumTemp;
+            minTemp = Math.min(minTemp, o.minTemp);
+            maxTemp = Math.max(maxTemp, o.maxTemp);
+            ok += o.ok;
+            warn += o.warn;
+            return this;
+        }
+    }
+
+    private final EventRollupStore store;
+    private final ConcurrentHashMap<BucketKey, Delta> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final LongAdder uncertain = new LongAdder();
+
+    public RollupAggregator(EventRollupStore store, long flushIntervalMillis) {
+        this.store = store;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rollup-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Folds successfully inserted events into the pending deltas. Cheap; called on the write path. */
+    public void record(HybridEvent e) {
+        if (e == null || e.getEventTs() == null) return;
+        long ts = e.getEventTs().toEpochMilli();
+        for (EventRollupStore.Granularity g : EventRollupStore.Granularity.values()) {
+            BucketKey key = new BucketKey(g, Math.floorDiv(ts, g.millis) * g.millis);
+            pending.compute(key, (k, d) -> {
+                if (d == null) d = new Delta();
+                d.add(e);
+                return d;
+            });
+        }
+    }
+
+    public void recordAll(List<HybridEvent> events) {
+        if (events == null) return;
+        for (HybridEvent e : events) record(e);
+    }
+
+    /** Writes all pending deltas now. */
+    public void flush() {
+        // insertion-ordered: merge() writes in this order, so bulk write error indices refer to it
+        Map<BucketKey, Delta> batch = new LinkedHashMap<>();
+        for (BucketKey k : new ArrayList<>(pending.keySet())) {
+            Delta d = pending.remove(k);
+            if (d != null) batch.put(k, d);
+        }
+        try {
+            store.merge(batch);
+        } catch (MongoBulkWriteException e) {
+            List<BucketKey> keys = new ArrayList<>(batch.keySet());
+            for (BulkWriteError err : e.getWriteErrors()) {
+                BucketKey k = keys.get(err.getIndex());
+                pending.merge(k, batch.get(k), Delta::merge);
+            }
+            if (e.getWriteConcernError() != null) uncertain.add(batch.size() - e.getWriteErrors().size());
+            throw e;
+        } catch (RuntimeException e) {
+            if (SpoolFailover.mayHaveWritten(e)) {
+                uncertain.add(batch.size());
+            } else {
+                batch.forEach((k, d) -> pending.merge(k, d, Delta::merge));
+            }
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.out.println("**** rollup flush failed (" + pending.size() + " buckets queued for the next flush): " + e.getMessage());
+        }
+    }
+
+    public int pendingBuckets() {
+        return pending.size();
+    }
+
+    /** Bucket deltas whose flush ended with an unknown outcome and that were not retried. */
+    public long uncertainBuckets() {
+        return uncertain.sum();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try { flusher.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        flushQuietly();
+    }
+}
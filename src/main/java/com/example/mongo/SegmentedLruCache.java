@@ -0,0 +1,245 @@
+package com.example.mongo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache with segmented-LRU eviction and per-entry expiry.
+ *
+ * New entries land in a small probation segment; a second hit promotes them to the protected
+ * segment (80% of capacity). One-off lookups therefore churn through probation without pushing
+ * out the ids that dashboards keep polling. The key space is split into independently locked
+ * shards so concurrent request threads rarely contend.
+ *
+ * Read-through callers that load on a miss take {@link #generation} before loading and store with
+ * {@link #putIfNotInvalidated}: an invalidate() that lands while the load is in flight (the load may
+ * have seen the old state) then drops the late put instead of letting it live until its expiry.
+ */
+public class SegmentedLruCache<K, V> {
+
+    private static final int SHARDS = 16;
+    // generation counters per shard; keys hash onto them, so unrelated invalidations rarely drop a load
+    private static final int GENERATION_STRIPES = 64;
+
+    private final Shard<K, V>[] shards;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public SegmentedLruCache(int maxEntries) {
+        if (maxEntries < SHARDS) maxEntries = SHARDS;
+        @SuppressWarnings("unchecked")
+        Shard<K, V>[] s = (Shard<K, V>[]) new Shard<?, ?>[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            s[i] = new Shard<>(maxEntries / SHARDS, evictions, expirations);
+        }
+        this.shards = s;
+    }
+
+    /** Cached value, or null when absent or expired. */
+    public V get(K key) {
+        V v = shard(key).get(key, System.nanoTime());
+        if (v == null) misses.increment();
+        else hits.increment();
+        return v;
+    }
+
+    /** Stores a value that stops being returned at {@code expiresAtNanos} (System.nanoTime() clock). */
+    public void put(K key, V value, long expiresAtNanos) {
+        shard(key).put(key, value, expiresAtNanos);
+    }
+
+    /**
+     * Changes whenever {@code key} may have been invalidated (also, now and then, on invalidations of
+     * keys that share its counter). Take it before loading the value that goes to {@link #putIfNotInvalidated}.
+     */
+    public long generation(K key) {
+        return shard(key).generation(stripe(key));
+    }
+
+    /** Stores the value unless the key was invalidated, or the cache cleared, since {@code generation}. */
+    public boolean putIfNotInvalidated(K key, V value, long expiresAtNanos, long generation) {
+        return shard(key).put(key, value, expiresAtNanos, stripe(key), generation);
+    }
+
+    public void invalidate(K key) {
+        shard(key).remove(key, stripe(key));
+    }
+
+    public void clear() {
+        for (Shard<K, V> s : shards) s.clear();
+    }
+
+    public long size() {
+        long n = 0;
+        for (Shard<K, V> s : shards) n += s.size();
+        return n;
+    }
+
+    public long hitCount() { return hits.sum(); }
+    public long missCount() { return misses.sum(); }
+    public long evictionCount() { return evictions.sum(); }
+    public long expirationCount() { return expirations.sum(); }
+
+    private Shard<K, V> shard(K key) {
+        return shards[spread(key) & (SHARDS - 1)];
+    }
+
+    /** Uses the hash bits above the shard index. */
+    private static int stripe(Object key) {
+        return (spread(key) >>> Integer.numberOfTrailingZeros(SHARDS)) & (GENERATION_STRIPES - 1);
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtNanos;
+
+        Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean expired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    private static final class Shard<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongAdder evictions;
+        private final LongAdder expirations;
+        private final int capacity;
+        private final int protectedCapacity;
+        // access-ordered: iteration starts at the least recently used entry
+        private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        // bumped by remove() (the key's stripe) and clear() (all stripes), under the lock
+        private final long[] generations = new long[GENERATION_STRIPES];
+
+        Shard(int capacity, LongAdder evictions, LongAdder expirations) {
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.capacity = Math.max(1, capacity);
+            this.protectedCapacity = (int) (this.capacity * 0.8);
+        }
+
+        V get(K key, long now) {
+            lock.lock();
+            try {
+                Entry<V> e = protectedSegment.get(key);
+                if (e != null) {
+                    if (!e.expired(now)) return e.value;
+                    protectedSegment.remove(key);
+                    expirations.increment();
+                    return null;
+                }
+
+                e = probation.remove(key);
+                if (e == null) return null;
+                if (e.expired(now)) {
+                    expirations.increment();
+                    return null;
+                }
+                promote(key, e);
+                return e.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long generation(int stripe) {
+            lock.lock();
+            try {
+                return generations[stripe];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean put(K key, V value, long expiresAtNanos, int stripe, long expectedGeneration) {
+            lock.lock();
+            try {
+                if (generations[stripe] != expectedGeneration) return false;
+                put(key, value, expiresAtNanos);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(K key, V value, long expiresAtNanos) {
+            lock.lock();
+            try {
+                Entry<V> e = new Entry<>(value, expiresAtNanos);
+                if (protectedSegment.containsKey(key)) {
+                    protectedSegment.put(key, e);
+                    return;
+                }
+                probation.put(key, e);
+                while (probation.size() + protectedSegment.size() > capacity) {
+                    evictOne(probation.isEmpty() ? protectedSegment : probation);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(K key, int stripe) {
+            lock.lock();
+            try {
+                generations[stripe]++;
+                if (protectedSegment.remove(key) == null) probation.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                for (int i = 0; i < generations.length; i++) generations[i]++;
+                probation.clear();
+                protectedSegment.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return probation.size() + protectedSegment.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void promote(K key, Entry<V> e) {
+            protectedSegment.put(key, e);
+            if (protectedSegment.size() > protectedCapacity) {
+                // demote the protected LRU back to probation instead of dropping it
+                Iterator<Map.Entry<K, Entry<V>>> it = protectedSegment.entrySet().iterator();
+                Map.Entry<K, Entry<V>> lru = it.next();
+                it.remove();
+                probation.put(lru.getKey(), lru.getValue());
+            }
+        }
+
+        private void evictOne(LinkedHashMap<K, Entry<V>> segment) {
+            Iterator<Map.Entry<K, Entry<V>>> it = segment.entrySet().iterator();
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.mongo;
+
+/**
+ * Source of business sequence numbers used to build "id_&lt;seq&gt;" values.
+ *
+ * Implementations must be thread-safe and must never hand out the same value twice,
+ * even when several producers (threads or JVMs) share the same counters document.
+ * Gaps are allowed.
+ */
+public interface SequenceAllocator {
+
+    /** Next unique sequence value. */
+    long next();
+}
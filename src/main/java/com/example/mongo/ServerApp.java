@@ -3,27 +3,168 @@ package com.example.mongo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import io.javalin.Javalin;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
 import io.javalin.json.JavalinJackson;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
 import org.bson.types.ObjectId;  //rkb not sure this is needed
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ServerApp {
 
     //rkb private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private static ObjectMapper buildMapper() {
+    static ObjectMapper buildMapper() {
         return new ObjectMapper()
         .registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule())
         .disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     }
 
 
+    /** Ingest rows by endpoint and outcome; rate() over it gives rows/sec. */
+    private static void countIngest(MetricsRegistry metrics, String path, String outcome, long n) {
+        if (n > 0) metrics.counter("hybrid_ingest_events_total", "Events handled by the ingest endpoints", "path", path, "outcome", outcome).add(n);
+    }
+
+    /** Route pattern for metrics labels ("/events/by-id/{id}"); unmatched paths share one label. */
+    private static String routeLabel(io.javalin.http.Context ctx) {
+        try {
+            String route = ctx.endpointHandlerPath();
+            return route == null || route.isEmpty() ? "unmatched" : route;
+        } catch (RuntimeException e) {
+            return "unmatched";
+        }
+    }
+
+    /** Routes outside admission control: probes, scrapes and long-lived SSE connections. */
+    private static final Set<String> NOT_ADMISSION_CONTROLLED = Set.of("/health", "/metrics", "/events/stream");
+    private static final String ADMITTED = "inFlightAdmitted";
+    /** POST routes under ingest admission (per-client rate, adaptive concurrency). */
+    private static final Set<String> INGEST_PATHS = Set.of("/events", "/events/batch", "/events/import-file");
+    private static final String INGEST_CLIENT = "ingestClient";
+    private static final String INGEST_ADMITTED = "ingestAdmitted";
+    /** Events written by an admitted ingest request (unset = 1), to judge its latency per event. */
+    private static final String INGEST_EVENTS = "ingestEvents";
+
+    /** Ingest client key: the configured header when the request has it, else the remote address. */
+    private static String clientId(Context ctx, String header) {
+        if (!header.isEmpty()) {
+            String v = ctx.header(header);
+            if (v != null && !v.isBlank()) return v.length() > 128 ? v.substring(0, 128) : v.trim();
+        }
+        return ctx.ip();
+    }
+
+    /** 201 written / 202 accepted into the local spool (written to MongoDB once it recovers). */
+    private static void inserted(Context ctx, MetricsRegistry metrics, HybridEvent e, SpoolFailover.Outcome outcome) {
+        if (outcome == SpoolFailover.Outcome.SPOOLED) {
+            countIngest(metrics, "single", "spooled", 1);
+            ctx.status(202).json(e);
+            return;
+        }
+        countIngest(metrics, "single", "inserted", 1);
+        ctx.status(201).json(e);
+    }
+
+    /** 503 for a full coalescer queue or spool, 409 for a duplicate id; false for any other error. */
+    private static boolean insertRefused(Context ctx, MetricsRegistry metrics, HybridEvent e, Throwable ex) {
+        if (ex instanceof RejectedExecutionException) {
+            countIngest(metrics, "single", "rejected", 1);
+            ctx.status(503).header("Retry-After", "1").json(Map.of("error", ex.getMessage() + ", retry later"));
+            return true;
+        }
+        if (ex instanceof MongoWriteException mwe && mwe.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+            countIngest(metrics, "single", "duplicate", 1);
+            ctx.status(409).json(Map.of("error", "event with this id already exists", "id", e.getId()));
+            return true;
+        }
+        return false;
+    }
+
+    /** 404; 304 when If-None-Match already has this version; else the event, encoded as negotiated. */
+    private static void found(Context ctx, Optional<HybridEvent> found, ObjectMapper mapper,
+                              ResponseCompression compression, boolean etags, LongAdder notModified) {
+        if (found.isEmpty()) { ctx.status(404).json(Map.of("error", "not found")); return; }
+        ctx.header("Vary", "Accept-Encoding");
+        String tag = etags ? ConditionalGet.eventTag(found.get(), compression.negotiate(ctx.header("Accept-Encoding"))) : null;
+        if (ConditionalGet.notModified(ctx, tag)) {
+            notModified.increment();
+            return;
+        }
+        byte[] body;
+        try { body = mapper.writeValueAsBytes(found.get()); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        ctx.contentType("application/json").result(compression.encode(ctx, body));
+    }
+
+    /**
+     * Answers 304 for a streamed list read the client already has, before the query runs. The tag
+     * covers everything that shapes the body; null tag (ETags off, no high-water mark) never matches.
+     */
+    private static boolean listNotModified(Context ctx, EventStreamWriter.Format format, boolean etags,
+                                           EventChangeStreamWatcher watcher, ResponseCompression compression, LongAdder notModified) {
+        ctx.header("Vary", "Accept, Accept-Encoding");
+        if (!etags) return false;
+        String tag = ConditionalGet.listTag(watcher.highWaterMark(), ctx.path(), ctx.queryString(), format.name(),
+                compression.negotiate(ctx.header("Accept-Encoding")).token);
+        if (!ConditionalGet.notModified(ctx, tag)) return false;
+        notModified.increment();
+        return true;
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+    }
+
+    /** ISO-8601 instant query param; null/blank means missing. */
+    private static Instant parseInstant(String name, String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("missing query param '" + name + "' (ISO-8601 like 2026-01-30T12:34:56Z)");
+        }
+        try { return Instant.parse(value); }
+        catch (Exception e) {
+            throw new IllegalArgumentException("invalid '" + name + "'; use ISO-8601 like 2026-01-30T12:34:56Z");
+        }
+    }
+
+    /**
+     * ?onConflict= or the configured default; null = blind insert.
+     * @throws IllegalStateException when a policy is asked for but id_1 does not enforce uniqueness
+     */
+    private static ConflictPolicy conflictPolicy(String param, ConflictPolicy defaultPolicy, HybridEventRepository repo) {
+        ConflictPolicy p = (param == null) ? defaultPolicy : ConflictPolicy.parse(param);
+        if (p != null && repo.getUniqueIdIndex() == HybridEventRepository.UniqueIdIndex.NONE) {
+            throw new IllegalStateException("idempotent ingest needs a unique id index; start with EVENTS_UNIQUE_ID_INDEX=true");
+        }
+        return p;
+    }
+
     public static void main(String[] args) {
         Config cfg = new Config();
 
@@ -35,7 +176,115 @@ public class ServerApp {
 
         // DO NOT use try-with-resources here.
         MongoClientProvider provider = new MongoClientProvider(cfg);
-        HybridEventRepository repo = new HybridEventRepository(provider.getCollection(cfg));
+        // Prometheus /metrics; recorders are lock-free, gauges are read at scrape time
+        MetricsRegistry metrics = new MetricsRegistry();
+        if (provider.getPoolMonitor() != null) provider.getPoolMonitor().registerMetrics(metrics);
+        MongoCollection<HybridEvent> ingestCollection =
+                MongoClientProvider.withWriteConcern(provider.getCollection(cfg), cfg.ingestWriteConcern);
+        HybridEventRepository repo = cfg.cacheEnabled
+                ? new CachingHybridEventRepository(ingestCollection,
+                        cfg.cacheMaxEntries, cfg.cacheTtlSeconds, cfg.cacheNegativeTtlSeconds)
+                : new HybridEventRepository(ingestCollection);
+        repo.setReadPreference(MongoClientProvider.readPreference(cfg.mongoReadPreference));
+        // Group commit for single-event POST /events
+        WriteCoalescer coalescer = cfg.ingestCoalesceEnabled
+                ? new WriteCoalescer(MongoClientProvider.withWriteConcern(provider.getCollection(cfg), cfg.ingestCoalesceWriteConcern),
+                        cfg.ingestCoalesceMaxBatch, cfg.ingestCoalesceLingerMs, cfg.ingestCoalesceMaxQueued, cfg.ingestCoalesceFlushers)
+                : null;
+        repo.setWriteCoalescer(coalescer);
+        // Local write-ahead spool for POST /events while MongoDB is slow or unreachable
+        SpoolFailover spool = provider.createSpoolFailover(cfg, "server");
+        repo.setSpoolFailover(spool);
+        if (coalescer != null) coalescer.registerMetrics(metrics);
+        if (spool != null) spool.registerMetrics(metrics);
+        // JSON/NDJSON/Smile/CBOR through Jackson; BSON through the same codec the driver uses
+        Codec<HybridEvent> eventCodec = provider.getCollection(cfg).getCodecRegistry().get(HybridEvent.class);
+        EventStreamWriter streams = new EventStreamWriter(mapper, eventCodec);
+        EventBatchReader batchReader = new EventBatchReader(mapper, eventCodec);
+        EventBatchIngestor batchIngestor = new EventBatchIngestor(repo, cfg.batchSubBatchSize);
+        if (cfg.eventsUniqueIdIndex) {
+            System.out.println("**** id_1 unique index: " + repo.ensureUniqueIdIndex(provider.getDatabase(cfg.mongoDb)));
+        }
+        ConflictPolicy defaultPolicy = ConflictPolicy.parse(cfg.ingestConflictPolicy);
+        // reactive: point reads and plain single inserts return futures from the async driver
+        String executionMode = cfg.httpExecutionMode.trim().toLowerCase();
+        if (!Set.of("virtual", "platform", "reactive").contains(executionMode)) {
+            throw new IllegalArgumentException("HTTP_EXECUTION_MODE must be virtual, platform or reactive: " + cfg.httpExecutionMode);
+        }
+        ReactiveEventStore reactive = "reactive".equals(executionMode) ? provider.createReactiveStore(cfg) : null;
+        repo.setReactiveStore(reactive);
+        InFlightLimiter inFlight = new InFlightLimiter(cfg.httpMaxInFlight);
+        inFlight.registerMetrics(metrics);
+        QueuedThreadPool jettyPool = "virtual".equals(executionMode)
+                ? null
+                : new QueuedThreadPool(cfg.httpMaxThreads, Math.min(8, cfg.httpMaxThreads), 60_000);
+        if (jettyPool != null) {
+            jettyPool.setName("http");
+            metrics.gauge("hybrid_http_threads", "Jetty request threads", jettyPool::getThreads, "state", "started");
+            metrics.gauge("hybrid_http_threads", "Jetty request threads", jettyPool::getBusyThreads, "state", "busy");
+            metrics.gauge("hybrid_http_queued_jobs", "Requests waiting for a Jetty thread", jettyPool::getQueueSize);
+        }
+        // Ingest admission: per-client event budgets (429) and a concurrency limit that follows Mongo write latency (503)
+        ClientRateLimiter clientLimits = new ClientRateLimiter(cfg.ingestClientRate, cfg.ingestClientBurst, cfg.ingestMaxClients);
+        clientLimits.registerMetrics(metrics);
+        AdaptiveConcurrencyLimiter ingestLimit = cfg.ingestAdaptiveEnabled
+                ? new AdaptiveConcurrencyLimiter(cfg.ingestConcurrencyInitial, cfg.ingestConcurrencyMin,
+                        cfg.ingestConcurrencyMax, cfg.ingestLatencyTargetMs)
+                : null;
+        if (ingestLimit != null) {
+            ingestLimit.registerMetrics(metrics);
+        }
+        LongAdder ingestRateLimited = metrics.counter("hybrid_ingest_admission_total", "Ingest admission decisions", "outcome", "rate_limited");
+        LongAdder ingestShed = metrics.counter("hybrid_ingest_admission_total", "Ingest admission decisions", "outcome", "shed");
+        LongAdder ingestAdmitted = metrics.counter("hybrid_ingest_admission_total", "Ingest admission decisions", "outcome", "admitted");
+        // Event reads: negotiated zstd/br/gzip, and ETags so unchanged reads get a 304 without touching Mongo
+        ResponseCompression compression = new ResponseCompression(cfg.httpCompression, cfg.httpCompressionMinBytes);
+        compression.registerMetrics(metrics);
+        LongAdder notModified = metrics.counter("hybrid_http_not_modified_total", "Event reads answered 304 from If-None-Match");
+        System.out.println("**** http execution=" + executionMode
+                + (jettyPool != null ? " maxThreads=" + cfg.httpMaxThreads : "") + " maxInFlight=" + cfg.httpMaxInFlight);
+        EventFileImporter importer = new EventFileImporter(mapper, repo, cfg.importChunkSize, cfg.importQueueDepth);
+        ImportJobManager imports = new ImportJobManager(importer,
+                new ImportCheckpointStore(provider.getRawCollection(cfg.mongoDb, "import_checkpoints")),
+                cfg.importMaxConcurrent, cfg.importMaxQueued);
+
+        // Change stream: latest-events buffer + invalidation of cached lookups on writes from other producers
+        LatestEventsBuffer latest = new LatestEventsBuffer(cfg.latestBufferSize);
+        EventFeedHub feed = new EventFeedHub(mapper, cfg.sseQueueSize, cfg.sseMaxSubscribers,
+                EventFeedHub.SlowConsumerPolicy.valueOf(cfg.sseSlowConsumerPolicy.toUpperCase()));
+        EventStatsService stats = new EventStatsService(repo, cfg.statsCacheMaxBuckets, cfg.statsCacheTtlSeconds,
+                cfg.statsClosedGraceSeconds, cfg.statsMaxBuckets);
+
+        // Incremental per-minute/per-hour rollups fed by this node's inserts (and the producers')
+        EventRollupStore rollupStore = provider.createRollupStore(cfg);
+        RollupAggregator rollup = rollupStore == null ? null : new RollupAggregator(rollupStore, cfg.rollupFlushMs);
+        if (rollup != null) {
+            repo.setRollupAggregator(rollup);
+            stats.useRollups(rollupStore, TimeUnit.HOURS.toSeconds(cfg.statsRollupMinRangeHours));
+        }
+        if (rollup != null) metrics.gauge("hybrid_rollup_pending_buckets", "Rollup buckets waiting for the next flush", rollup::pendingBuckets);
+        if (rollup != null) metrics.counter("hybrid_rollup_uncertain_buckets_total", "Rollup bucket deltas dropped after a flush with an unknown outcome", rollup::uncertainBuckets);
+        for (ImportJob.State state : ImportJob.State.values()) {
+            metrics.gauge("hybrid_import_jobs", "Import jobs by state (retained jobs)",
+                    () -> imports.list().stream().filter(j -> j.getState() == state).count(), "state", state.name().toLowerCase());
+        }
+        metrics.gauge("hybrid_import_rows_per_second", "Insert rate summed over running import jobs",
+                () -> imports.list().stream().filter(j -> j.getState() == ImportJob.State.RUNNING)
+                        .mapToDouble(j -> j.getProgress().rowsPerSecond()).sum());
+        metrics.gauge("hybrid_import_bytes_remaining", "Bytes left to commit across running import jobs",
+                () -> imports.list().stream().filter(j -> j.getState() == ImportJob.State.RUNNING)
+                        .mapToLong(j -> j.getProgress().getSizeBytes() - j.getProgress().getBytesCommitted()).sum());
+        EventChangeStreamWatcher watcher = new EventChangeStreamWatcher(provider.getCollection(cfg));
+        if (cfg.changeStreamEnabled) {
+            watcher.addListener(latest);
+            watcher.addListener(feed);
+            watcher.addListener(stats);
+            if (repo instanceof CachingHybridEventRepository cached) watcher.addListener(cached.invalidationListener());
+            if (watcher.start()) {
+                // stream is open before priming, so nothing committed in between is missed
+                latest.prime(repo.findLatest(cfg.latestBufferSize));
+            }
+        }
 
         // Javalin app = Javalin.create(j -> j.http.defaultContentType = "application/json")
         //         .start(cfg.bindHost, cfg.httpPort);
@@ -49,10 +298,74 @@ public class ServerApp {
             // Use "true" to include stack traces in dev error responses, "false" to hide them.
             j.jsonMapper(new JavalinJackson(mapper, true)); // true for dev, false for prod
             j.http.defaultContentType = "application/json";
+            if (jettyPool == null) j.useVirtualThreads = true;
+            else j.jetty.threadPool = jettyPool;
+            // Javalin's gzip/br for the remaining ctx.json responses; skipped once Content-Encoding is set
+            if (compression.isEnabled()) {
+                CompressionStrategy strategy = new CompressionStrategy(
+                        compression.offers(ResponseCompression.Encoding.BR) ? new Brotli(ResponseCompression.BROTLI_QUALITY) : null,
+                        compression.offers(ResponseCompression.Encoding.GZIP) ? new Gzip(ResponseCompression.GZIP_LEVEL) : null);
+                strategy.setDefaultMinSizeForCompression(cfg.httpCompressionMinBytes);
+                j.http.customCompression(strategy);
+            } else {
+                j.http.disableCompression();
+            }
+            // per-route latency; the route pattern (not the raw path) keeps label cardinality bounded.
+            // Runs once per request on every path (including async handlers that failed), so the
+            // in-flight permit is released here rather than in an after-handler.
+            j.requestLogger.http((ctx, ms) -> {
+                if (ctx.attribute(ADMITTED) != null) inFlight.release();
+                if (ctx.attribute(INGEST_ADMITTED) != null) {
+                    ingestLimit.release();
+                    // import-file only queues a background job, so its latency says nothing about MongoDB
+                    if (ctx.statusCode() >= 500) ingestLimit.onOverload();
+                    else if (ctx.statusCode() < 400 && !ctx.path().equals("/events/import-file")) {
+                        Long events = ctx.attribute(INGEST_EVENTS);
+                        ingestLimit.onLatency((long) (ms * 1_000_000L), events == null ? 1 : events);
+                    }
+                }
+                metrics.latency("hybrid_http_request_seconds", "HTTP request latency by route",
+                        "method", ctx.method().name(), "route", routeLabel(ctx), "status", ctx.statusCode() / 100 + "xx")
+                        .recordNanos((long) (ms * 1_000_000L));
+            });
         }).start(cfg.bindHost, cfg.httpPort);
 
+        // Admission control: refuse early instead of queueing without bound behind the Mongo pool
+        String retryAfter = String.valueOf(cfg.httpRetryAfterSeconds);
+        app.before(ctx -> {
+            if (NOT_ADMISSION_CONTROLLED.contains(ctx.path())) return;
+            if (!inFlight.tryAcquire()) {
+                ctx.status(503).header("Retry-After", retryAfter).json(Map.of("error", "server busy, retry later"));
+                ctx.skipRemainingHandlers();
+                return;
+            }
+            ctx.attribute(ADMITTED, Boolean.TRUE);
+        });
+
+        app.before(ctx -> {
+            if (ctx.method() != HandlerType.POST || !INGEST_PATHS.contains(ctx.path())) return;
+            String client = clientId(ctx, cfg.ingestClientIdHeader);
+            if (!clientLimits.tryAcquire(client)) {
+                ingestRateLimited.increment();
+                ctx.status(429).header("Retry-After", String.valueOf(clientLimits.retryAfterSeconds(client)))
+                        .json(Map.of("error", "ingest rate limit exceeded, retry later", "client", client));
+                ctx.skipRemainingHandlers();
+                return;
+            }
+            if (ingestLimit != null && !ingestLimit.tryAcquire()) {
+                ingestShed.increment();
+                ctx.status(503).header("Retry-After", retryAfter).json(Map.of("error", "ingest overloaded, retry later"));
+                ctx.skipRemainingHandlers();
+                return;
+            }
+            ingestAdmitted.increment();
+            ctx.attribute(INGEST_CLIENT, client);
+            if (ingestLimit != null) ctx.attribute(INGEST_ADMITTED, Boolean.TRUE);
+        });
+
         // Helpful while developing: return real exception info
         app.exception(Exception.class, (e, ctx) -> {
+            metrics.counter("hybrid_http_exceptions_total", "Unhandled exceptions by type", "exception", e.getClass().getSimpleName()).increment();
             e.printStackTrace();
             ctx.status(500).json(Map.of(
                     "error", e.getClass().getName(),
@@ -64,13 +377,227 @@ public class ServerApp {
 
         app.get("/health", ctx -> ctx.json(Map.of("ok", true)));
 
-        app.get("/events", ctx -> ctx.json(repo.findAll()));
+        app.get("/metrics", ctx -> ctx.contentType(MetricsRegistry.CONTENT_TYPE).result(metrics.scrape()));
+
+        app.get("/stats/change-stream", ctx -> {
+            Map<String, Object> m = new LinkedHashMap<>(watcher.status());
+            m.put("latestBuffer", latest.stats());
+            m.put("feed", feed.stats());
+            ctx.json(m);
+        });
+
+        // Pool sizing data: checkout waits, connections in use, per-command latency
+        app.get("/stats/mongo", ctx -> {
+            MongoPoolMonitor monitor = provider.getPoolMonitor();
+            ctx.json(monitor == null ? Map.of("enabled", false) : monitor.stats());
+        });
+
+        app.get("/stats/http", ctx -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("executionMode", executionMode);
+            m.put("admission", inFlight.stats());
+            m.put("ingestRateLimit", clientLimits.stats());
+            m.put("ingestConcurrency", ingestLimit == null ? Map.of("enabled", false) : ingestLimit.stats());
+            m.put("compression", compression.stats());
+            m.put("etags", cfg.httpEtags);
+            m.put("notModified", notModified.sum());
+            if (jettyPool != null) {
+                m.put("threads", Map.of("max", jettyPool.getMaxThreads(), "started", jettyPool.getThreads(),
+                        "busy", jettyPool.getBusyThreads(), "queued", jettyPool.getQueueSize()));
+            }
+            ctx.json(m);
+        });
+
+        app.get("/stats/ingest", ctx -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("coalesce", coalescer == null ? Map.of("enabled", false) : coalescer.stats());
+            m.put("spool", spool == null ? Map.of("enabled", false) : spool.stats());
+            ctx.json(m);
+        });
+
+        app.get("/stats/cache", ctx -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("lookups", repo instanceof CachingHybridEventRepository cached ? cached.cacheStats() : Map.of("enabled", false));
+            m.put("statsBuckets", stats.cacheStats());
+            ctx.json(m);
+        });
+
+        // Streams the cursor straight into the response; ?limit= switches to keyset pages (?after=<next token>)
+        app.get("/events", ctx -> {
+            EventStreamWriter.Format format;
+            try { format = EventStreamWriter.Format.fromRequest(ctx.queryParam("format"), ctx.header("Accept")); }
+            catch (IllegalArgumentException e) {
+                ctx.status(400).json(Map.of("error", e.getMessage()));
+                return;
+            }
+
+            int batchSize = cfg.eventsBatchSize;
+            String batchParam = ctx.queryParam("batchSize");
+            if (batchParam != null) {
+                try { batchSize = Integer.parseInt(batchParam); }
+                catch (NumberFormatException e) { batchSize = -1; }
+                if (batchSize < 1) {
+                    ctx.status(400).json(Map.of("error", "batchSize must be a positive integer"));
+                    return;
+                }
+            }
+
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam == null) {
+                if (listNotModified(ctx, format, cfg.httpEtags, watcher, compression, notModified)) return;
+                ctx.contentType(format.contentType);
+                if (cfg.eventsRawPassthrough) {
+                    try (MongoCursor<RawBsonDocument> cursor = repo.streamAllRaw(batchSize).cursor();
+                         OutputStream out = compression.stream(ctx)) {
+                        streams.writeAllRaw(out, format, cursor, false);
+                    }
+                    return;
+                }
+                try (MongoCursor<HybridEvent> cursor = repo.streamAll(batchSize).cursor();
+                     OutputStream out = compression.stream(ctx)) {
+                    streams.writeAll(out, format, cursor);
+                }
+                return;
+            }
+
+            int limit;
+            try { limit = Integer.parseInt(limitParam); }
+            catch (NumberFormatException e) { limit = -1; }
+            if (limit < 1 || limit > cfg.eventsMaxPage) {
+                ctx.status(400).json(Map.of("error", "limit must be between 1 and " + cfg.eventsMaxPage));
+                return;
+            }
+
+            PageToken after = null;
+            String afterParam = ctx.queryParam("after");
+            if (afterParam != null && !afterParam.isBlank()) {
+                try { after = PageToken.decode(afterParam); }
+                catch (IllegalArgumentException e) {
+                    ctx.status(400).json(Map.of("error", "invalid 'after' token"));
+                    return;
+                }
+            }
+
+            if (listNotModified(ctx, format, cfg.httpEtags, watcher, compression, notModified)) return;
+            ctx.contentType(format.contentType);
+            if (cfg.eventsRawPassthrough) {
+                try (MongoCursor<RawBsonDocument> cursor = repo.findPageRaw(after, limit, batchSize).cursor();
+                     OutputStream out = compression.stream(ctx)) {
+                    streams.writePageRaw(out, format, cursor, limit);
+                }
+                return;
+            }
+            try (MongoCursor<HybridEvent> cursor = repo.findPage(after, limit, batchSize).cursor();
+                 OutputStream out = compression.stream(ctx)) {
+                streams.writePage(out, format, cursor, limit);
+            }
+        });
+
+        // event_ts range [from, to) with optional ?status=&minTemp=&maxTemp=&fields=a,b&order=asc|desc&limit=
+        app.get("/events/range", ctx -> {
+            EventRangeQuery q;
+            EventStreamWriter.Format format;
+            try {
+                String limitParam = ctx.queryParam("limit");
+                int limit = (limitParam == null) ? 1000 : Integer.parseInt(limitParam);
+                if (limit > cfg.eventsMaxPage) throw new IllegalArgumentException("limit must be <= " + cfg.eventsMaxPage);
+                String order = ctx.queryParamAsClass("order", String.class).getOrDefault("asc");
+                if (!order.equals("asc") && !order.equals("desc")) throw new IllegalArgumentException("order must be 'asc' or 'desc'");
+                String toParam = ctx.queryParam("to");
+
+                q = new EventRangeQuery(
+                        parseInstant("from", ctx.queryParam("from")),
+                        toParam == null ? Instant.now() : parseInstant("to", toParam),
+                        EventFilter.parse(ctx.queryParam("status"), ctx.queryParam("minTemp"), ctx.queryParam("maxTemp")),
+                        EventRangeQuery.parseFields(ctx.queryParam("fields")),
+                        order.equals("desc"),
+                        limit);
+                format = EventStreamWriter.Format.fromRequest(ctx.queryParam("format"), ctx.header("Accept"));
+            } catch (IllegalArgumentException e) {
+                String msg = (e instanceof NumberFormatException) ? "limit must be an integer" : e.getMessage();
+                ctx.status(400).json(Map.of("error", msg));
+                return;
+            }
+
+            // without ?to= the window ends at "now", so the result can change with no write at all
+            boolean fixedWindow = ctx.queryParam("to") != null;
+            if (listNotModified(ctx, format, cfg.httpEtags && fixedWindow, watcher, compression, notModified)) return;
+            ctx.contentType(format.contentType);
+            if (cfg.eventsRawPassthrough) {
+                try (MongoCursor<RawBsonDocument> cursor = repo.findRangeRaw(q, cfg.eventsBatchSize).cursor();
+                     OutputStream out = compression.stream(ctx)) {
+                    streams.writeAllRaw(out, format, cursor, !q.getFields().isEmpty());
+                }
+                return;
+            }
+            try (MongoCursor<HybridEvent> cursor = repo.findRange(q, cfg.eventsBatchSize).cursor();
+                 OutputStream out = compression.stream(ctx)) {
+                streams.writeAll(out, format, cursor, !q.getFields().isEmpty());
+            }
+        });
+
+        // Tumbling-window rollups: ?from=&to=&window=60s|5m|1h[&source=auto|raw|rollup] (to defaults to now)
+        app.get("/events/stats", ctx -> {
+            Map<String, Object> result;
+            try {
+                String toParam = ctx.queryParam("to");
+                result = stats.stats(
+                        parseInstant("from", ctx.queryParam("from")),
+                        toParam == null ? Instant.now() : parseInstant("to", toParam),
+                        EventStatsService.parseWindowSeconds(ctx.queryParam("window")),
+                        EventStatsService.parseSource(ctx.queryParam("source")));
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).json(Map.of("error", e.getMessage()));
+                return;
+            }
+            ctx.json(result);
+        });
+
+        // Served from the change-stream buffer only; no database query
+        app.get("/events/latest", ctx -> {
+            if (!watcher.isRunning()) {
+                ctx.status(503).json(Map.of("error", "change stream is not running", "watcher", watcher.status()));
+                return;
+            }
+            int n = latest.capacity();
+            String nParam = ctx.queryParam("n");
+            if (nParam != null) {
+                try { n = Integer.parseInt(nParam); }
+                catch (NumberFormatException e) { n = -1; }
+                if (n < 1 || n > latest.capacity()) {
+                    ctx.status(400).json(Map.of("error", "n must be between 1 and " + latest.capacity()));
+                    return;
+                }
+            }
+            ctx.json(latest.latest(n));
+        });
+
+        // Live feed of new inserts (Server-Sent Events); optional ?status=&minTemp=&maxTemp=
+        app.sse("/events/stream", client -> {
+            if (!watcher.isRunning()) {
+                client.sendEvent("error", "{\"error\":\"change stream is not running\"}");
+                client.close();
+                return;
+            }
+            EventFilter filter;
+            try {
+                filter = EventFilter.parse(client.ctx().queryParam("status"),
+                        client.ctx().queryParam("minTemp"), client.ctx().queryParam("maxTemp"));
+            } catch (IllegalArgumentException e) {
+                client.sendEvent("error", mapper.valueToTree(Map.of("error", e.getMessage())).toString());
+                client.close();
+                return;
+            }
+            feed.subscribe(client, filter);
+        });
 
         app.get("/events/by-id/{id}", ctx -> {
             String id = ctx.pathParam("id");
-            var found = repo.findOneById(id);
-            if (found.isEmpty()) { ctx.status(404).json(Map.of("error", "not found")); return; }
-            ctx.json(found.get());
+            if (reactive != null) {
+                ctx.future(() -> repo.findOneByIdAsync(id).thenAccept(found -> found(ctx, found, mapper, compression, cfg.httpEtags, notModified)));
+                return;
+            }
+            found(ctx, repo.findOneById(id), mapper, compression, cfg.httpEtags, notModified);
         });
 
         app.get("/events/by-mongoid/{mongoId}", ctx -> {
@@ -80,9 +607,11 @@ public class ServerApp {
                 ctx.status(400).json(Map.of("error", "mongoId must be a valid ObjectId hex string"));
                 return;
             }
-            var found = repo.findOneByMongoId(mongoId);
-            if (found.isEmpty()) { ctx.status(404).json(Map.of("error", "not found")); return; }
-            ctx.json(found.get());
+            if (reactive != null) {
+                ctx.future(() -> repo.findOneByMongoObjectIdAsync(new ObjectId(mongoId)).thenAccept(found -> found(ctx, found, mapper, compression, cfg.httpEtags, notModified)));
+                return;
+            }
+            found(ctx, repo.findOneByMongoId(mongoId), mapper, compression, cfg.httpEtags, notModified);
         });
 
         app.get("/events/by-event-ts", ctx -> {
@@ -98,32 +627,91 @@ public class ServerApp {
                 return;
             }
 
-            var found = repo.findOneByEventTs(instant);
-            if (found.isEmpty()) { ctx.status(404).json(Map.of("error", "not found")); return; }
-            ctx.json(found.get());
+            found(ctx, repo.findOneByEventTs(instant), mapper, compression, cfg.httpEtags, notModified);
         });
 
+        // ?onConflict=keep_first|last_write_wins|reject makes the write idempotent on the business id
         app.post("/events", ctx -> {
             HybridEvent e = mapper.readValue(ctx.body(), HybridEvent.class);
-            if (e.getId() == null || e.getId().isBlank()) {
-                ctx.status(400).json(Map.of("error", "Field 'id' is required"));
+            String problem = EventValidator.problem(e);
+            if (problem != null) {
+                ctx.status(400).json(Map.of("error", problem));
                 return;
             }
-            if (e.getEventTs() == null) {
-                ctx.status(400).json(Map.of("error", "Field 'event_ts' is required"));
+            ConflictPolicy policy;
+            try { policy = conflictPolicy(ctx.queryParam("onConflict"), defaultPolicy, repo); }
+            catch (IllegalArgumentException ex) {
+                ctx.status(400).json(Map.of("error", ex.getMessage()));
+                return;
+            } catch (IllegalStateException ex) {
+                ctx.status(503).json(Map.of("error", ex.getMessage()));
                 return;
             }
-            repo.insertOne(e);
-            ctx.status(201).json(e);
+
+            if (policy == null && reactive != null) {
+                ctx.future(() -> repo.insertOneAsync(e).handle((outcome, err) -> {
+                    if (err == null) inserted(ctx, metrics, e, outcome);
+                    else if (!insertRefused(ctx, metrics, e, unwrap(err))) throw new CompletionException(unwrap(err));
+                    return null;
+                }));
+                return;
+            }
+            if (policy == null) {
+                SpoolFailover.Outcome outcome;
+                try { outcome = repo.insertOne(e); }
+                catch (RejectedExecutionException | MongoWriteException ex) {
+                    if (!insertRefused(ctx, metrics, e, ex)) throw ex;
+                    return;
+                }
+                inserted(ctx, metrics, e, outcome);
+                return;
+            }
+
+            UpsertResult r = repo.upsertMany(List.of(e), policy);
+            countIngest(metrics, "single", r.outcome(0).name().toLowerCase(), 1);
+            switch (r.outcome(0)) {
+                case INSERTED -> ctx.status(201).json(e);
+                case REPLACED -> ctx.status(200).json(e);
+                case DUPLICATE -> ctx.status(409).json(Map.of("error", "event with this id already exists", "id", e.getId()));
+                case FAILED -> ctx.status(500).json(Map.of("error", String.valueOf(r.message(0))));
+            }
         });
 
+        // Body: JSON array (default), NDJSON, Smile, CBOR or a BSON document sequence, chosen by Content-Type.
+        // Parsed item by item, validated, and written in bounded unordered sub-batches.
         app.post("/events/batch", ctx -> {
-            List<HybridEvent> events = mapper.readValue(
-                    ctx.body(),
-                    mapper.getTypeFactory().constructCollectionType(List.class, HybridEvent.class)
-            );
-            repo.insertMany(events);
-            ctx.status(201).json(Map.of("inserted", events.size()));
+            EventStreamWriter.Format format;
+            try { format = EventStreamWriter.Format.fromContentType(ctx.header("Content-Type")); }
+            catch (IllegalArgumentException e) {
+                ctx.status(415).json(Map.of("error", e.getMessage()));
+                return;
+            }
+
+            Iterator<HybridEvent> items;
+            try { items = batchReader.read(ctx.bodyInputStream(), format); }
+            catch (IllegalArgumentException | IOException e) {
+                ctx.status(400).json(Map.of("error", "unreadable body: " + e.getMessage()));
+                return;
+            }
+            ConflictPolicy policy;
+            try { policy = conflictPolicy(ctx.queryParam("onConflict"), defaultPolicy, repo); }
+            catch (IllegalArgumentException ex) {
+                ctx.status(400).json(Map.of("error", ex.getMessage()));
+                return;
+            } catch (IllegalStateException ex) {
+                ctx.status(503).json(Map.of("error", ex.getMessage()));
+                return;
+            }
+            // per-index results; 201 all written, 207 some duplicate/invalid/failed
+            EventBatchIngestor.Result result = batchIngestor.ingest(items, policy);
+            // admission took one token; the rest of the batch is charged now and delays the client's next request
+            String client = ctx.attribute(INGEST_CLIENT);
+            if (client != null) clientLimits.charge(client, result.received() - 1);
+            ctx.attribute(INGEST_EVENTS, (long) result.received());
+            for (EventBatchIngestor.Status s : EventBatchIngestor.Status.values()) {
+                countIngest(metrics, "batch", s.name().toLowerCase(), result.count(s));
+            }
+            ctx.status(result.httpStatus()).json(result.toMap());
         });
 
         app.post("/events/import-file", ctx -> {
@@ -140,16 +728,38 @@ public class ServerApp {
                 return;
             }
 
-            List<HybridEvent> events = mapper.readValue(
-                    f,
-                    mapper.getTypeFactory().constructCollectionType(List.class, HybridEvent.class)
-            );
-            repo.insertMany(events);
-            ctx.json(Map.of("inserted", events.size(), "path", path));
+            ImportJob job;
+            try { job = imports.submit(f.toPath()); }
+            catch (RejectedExecutionException e) {
+                ctx.status(503).json(Map.of("error", "import queue is full, retry later"));
+                return;
+            }
+            ctx.status(202).json(Map.of(
+                    "jobId", job.getId(),
+                    "path", path,
+                    "status", "/imports/" + job.getId()
+            ));
         });
 
+        app.get("/imports", ctx -> ctx.json(imports.list().stream().map(ImportJob::toMap).toList()));
+
+        app.get("/imports/{id}", ctx -> {
+            var job = imports.get(ctx.pathParam("id"));
+            if (job.isEmpty()) { ctx.status(404).json(Map.of("error", "not found")); return; }
+            ctx.json(job.get().toMap());
+        });
+
+        // Pick up imports that were interrupted by the last shutdown/crash
+        imports.resumeUnfinished();
+
         // Close Mongo when the JVM is shutting down
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try { imports.close(); } catch (Exception ignored) {}
+            if (coalescer != null) try { coalescer.close(); } catch (Exception ignored) {}
+            if (spool != null) try { spool.close(); } catch (Exception ignored) {}
+            if (reactive != null) try { reactive.close(); } catch (Exception ignored) {}
+            try { watcher.close(); } catch (Exception ignored) {}
+            if (rollup != null) try { rollup.close(); } catch (Exception ignored) {}
             try { provider.close(); } catch (Exception ignored) {}
             try { app.stop(); } catch (Exception ignored) {}
         }));
@@ -0,0 +1,294 @@
+package com.example.mongo;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.MongoSocketReadTimeoutException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteConcernException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decides, per write, whether events go to MongoDB or to the local {@link EventSpool}, and replays the
+ * spool in the background.
+ *
+ * DIRECT:   the write runs against MongoDB. A failover-type error (network, timeout, no primary,
+ *           write concern) spools the events instead of failing the caller; errorThreshold
+ *           consecutive errors, or latencyThreshold consecutive writes slower than slowMillis,
+ *           switch to SPOOLING.
+ * SPOOLING: writes go straight to the spool, so callers see local-disk latency while MongoDB fails
+ *           over. The drainer replays the spool in batches (unordered insertMany, exponential backoff
+ *           while MongoDB keeps failing) and switches back to DIRECT once the spool is empty.
+ *
+ * Errors that are about the document itself (duplicate key, validation) are never spooled. During
+ * replay a duplicate key means the event was already written; other per-document errors drop the
+ * record with a log line, since retrying it can never succeed.
+ *
+ * A write concern error or a lost reply usually means the primary did apply the write. Those events
+ * are spooled as "maybe written", and a duplicate on their replay is reported to onReplayed like an
+ * insert, so rollups still count them exactly once.
+ */
+public class SpoolFailover implements AutoCloseable {
+
+    public enum Mode { DIRECT, SPOOLING }
+
+    public enum Outcome { WRITTEN, SPOOLED }
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+    private static final long MIN_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 10_000;
+
+    private final EventSpool spool;
+    private final MongoCollection<HybridEvent> collection;
+    private final long slowNanos;
+    private final int errorThreshold;
+    private final int latencyThreshold;
+    private final int drainBatch;
+    private final Thread drainer;
+
+    private volatile Mode mode = Mode.DIRECT;
+    private volatile boolean closed;
+    private volatile Consumer<List<HybridEvent>> onReplayed = events -> {};
+    private final AtomicInteger consecutiveErrors = new AtomicInteger();
+    private final AtomicInteger consecutiveSlow = new AtomicInteger();
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    public SpoolFailover(EventSpool spool, MongoCollection<HybridEvent> collection, long slowMillis,
+                         int latencyThreshold, int errorThreshold, int drainBatch) {
+        this.spool = spool;
+        this.collection = collection;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.latencyThreshold = Math.max(1, latencyThreshold);
+        this.errorThreshold = Math.max(1, errorThreshold);
+        this.drainBatch = Math.max(1, drainBatch);
+        // leftovers from the last run are replayed first
+        if (!spool.isEmpty()) mode = Mode.SPOOLING;
+        this.drainer = new Thread(this::drainLoop, "spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /** Called with the events the drainer actually inserted (rollups, cache invalidation). */
+    public void setOnReplayed(Consumer<List<HybridEvent>> onReplayed) {
+        this.onReplayed = onReplayed == null ? events -> {} : onReplayed;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Runs {@code mongoWrite} for the events, or spools them (see class comment). Document-level
+     * errors are rethrown; a full spool throws RejectedExecutionException.
+     */
+    public Outcome write(List<HybridEvent> events, Consumer<List<HybridEvent>> mongoWrite) {
+        if (mode == Mode.SPOOLING) return spool(events);
+
+        long t0 = System.nanoTime();
+        try {
+            mongoWrite.accept(events);
+        } catch (RuntimeException e) {
+            if (!isFailoverError(e)) throw e;
+            return failedOver(events, e);
+        }
+        return written(t0);
+    }
+
+    /** {@link #write} for an async {@code mongoWrite}; errors come back on the future, not thrown. */
+    public CompletableFuture<Outcome> writeAsync(List<HybridEvent> events, Supplier<CompletableFuture<Void>> mongoWrite) {
+        if (mode == Mode.SPOOLING) {
+            try { return CompletableFuture.completedFuture(spool(events)); }
+            catch (RuntimeException e) { return CompletableFuture.failedFuture(e); }
+        }
+        long t0 = System.nanoTime();
+        return mongoWrite.get().handle((v, err) -> {
+            if (err == null) return written(t0);
+            Throwable cause = (err instanceof CompletionException && err.getCause() != null) ? err.getCause() : err;
+            if (cause instanceof RuntimeException e && isFailoverError(e)) return failedOver(events, e);
+            throw cause instanceof CompletionException ce ? ce : new CompletionException(cause);
+        });
+    }
+
+    private Outcome written(long t0) {
+        consecutiveErrors.set(0);
+        if (System.nanoTime() - t0 > slowNanos) {
+            if (consecutiveSlow.incrementAndGet() >= latencyThreshold) trip("mongo writes slower than " + TimeUnit.NANOSECONDS.toMillis(slowNanos) + "ms");
+        } else {
+            consecutiveSlow.set(0);
+        }
+        return Outcome.WRITTEN;
+    }
+
+    private Outcome failedOver(List<HybridEvent> events, RuntimeException e) {
+        if (consecutiveErrors.incrementAndGet() >= errorThreshold) trip("mongo errors: " + e.getMessage());
+        // an unordered insertMany may have written some of them; replay treats those as duplicates
+        return spool(events, mayHaveWritten(e));
+    }
+
+    private Outcome spool(List<HybridEvent> events) {
+        return spool(events, false);
+    }
+
+    private Outcome spool(List<HybridEvent> events, boolean maybeWritten) {
+        spool.append(events, maybeWritten);
+        spooled.add(events.size());
+        return Outcome.SPOOLED;
+    }
+
+    private void trip(String reason) {
+        if (mode == Mode.SPOOLING) return;
+        mode = Mode.SPOOLING;
+        failovers.increment();
+        System.out.println("**** spool failover: " + reason + ", spooling writes locally");
+    }
+
+    /** The write reached the server and may have been applied: write concern errors, a reply lost on the way back. */
+    static boolean mayHaveWritten(RuntimeException e) {
+        if (e instanceof MongoBulkWriteException bwe) return bwe.getWriteConcernError() != null;
+        return e instanceof MongoWriteConcernException
+                || e instanceof MongoSocketReadException
+                || e instanceof MongoSocketReadTimeoutException;
+    }
+
+    /** Network, selection and step-down errors; not errors about the documents themselves. */
+    static boolean isFailoverError(RuntimeException e) {
+        if (e instanceof MongoBulkWriteException bwe) {
+            return bwe.getWriteConcernError() != null && bwe.getWriteErrors().isEmpty();
+        }
+        return e instanceof MongoSocketException
+                || e instanceof MongoTimeoutException
+                || e instanceof MongoExecutionTimeoutException
+                || e instanceof MongoNotPrimaryException
+                || e instanceof MongoNodeIsRecoveringException
+                || e instanceof MongoWriteConcernException
+                || (e instanceof MongoException me && me.hasErrorLabel("RetryableWriteError"));
+    }
+
+    private void drainLoop() {
+        long backoff = MIN_BACKOFF_MS;
+        while (!closed) {
+            try {
+                List<EventSpool.Entry> batch = spool.peek(drainBatch);
+                if (batch.isEmpty()) {
+                    if (mode == Mode.SPOOLING) {
+                        mode = Mode.DIRECT;
+                        consecutiveErrors.set(0);
+                        consecutiveSlow.set(0);
+                        System.out.println("**** spool drained, writing to mongo directly again");
+                    }
+                    Thread.sleep(MIN_BACKOFF_MS);
+                    continue;
+                }
+                if (replay(batch)) {
+                    backoff = MIN_BACKOFF_MS;
+                } else {
+                    Thread.sleep(backoff);
+                    backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+                }
+            } catch (InterruptedException ie) {
+                return;
+            } catch (RuntimeException e) {
+                System.out.println("**** spool drainer error: " + e);
+                try { Thread.sleep(backoff); } catch (InterruptedException ie) { return; }
+                backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+            }
+        }
+    }
+
+    /** true when the batch is settled (written, duplicate or dropped) and acked; false to retry later. */
+    private boolean replay(List<EventSpool.Entry> batch) {
+        List<HybridEvent> docs = new ArrayList<>(batch.size());
+        for (EventSpool.Entry en : batch) docs.add(en.event());
+
+        boolean[] notInserted = new boolean[docs.size()];
+        int alreadyWritten = 0;
+        try {
+            collection.insertMany(docs, UNORDERED);
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                spool.markMaybeWritten(batch);
+                return false;
+            }
+            for (BulkWriteError err : e.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(err.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                    duplicates.increment();
+                    // our own earlier write landed after all: still new to onReplayed (rollups)
+                    if (batch.get(err.getIndex()).maybeWritten()) {
+                        alreadyWritten++;
+                        continue;
+                    }
+                    notInserted[err.getIndex()] = true;
+                } else {
+                    notInserted[err.getIndex()] = true;
+                    dropped.increment();
+                    System.out.println("**** spool: dropping event " + docs.get(err.getIndex()).getId() + ": " + err.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!isFailoverError(e)) throw e;
+            if (mayHaveWritten(e)) spool.markMaybeWritten(batch);
+            return false;
+        }
+
+        spool.ack(batch.get(batch.size() - 1));
+        List<HybridEvent> inserted = new ArrayList<>(docs.size());
+        for (int i = 0; i < docs.size(); i++) if (!notInserted[i]) inserted.add(docs.get(i));
+        replayed.add(inserted.size() - alreadyWritten);
+        if (!inserted.isEmpty()) onReplayed.accept(inserted);
+        return true;
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        m.gauge("hybrid_spool_spooling", "1 while writes go to the local spool", () -> mode == Mode.SPOOLING ? 1 : 0);
+        m.gauge("hybrid_spool_pending_events", "Events in the local spool waiting for replay", spool::pendingEvents);
+        m.counter("hybrid_spool_failovers_total", "Switches from direct writes to spooling", failovers::sum);
+        m.counter("hybrid_spool_events_total", "Spool traffic", spooled::sum, "outcome", "spooled");
+        m.counter("hybrid_spool_events_total", "Spool traffic", replayed::sum, "outcome", "replayed");
+        m.counter("hybrid_spool_events_total", "Spool traffic", duplicates::sum, "outcome", "duplicate");
+        m.counter("hybrid_spool_events_total", "Spool traffic", dropped::sum, "outcome", "dropped");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("mode", mode.name().toLowerCase());
+        m.put("failovers", failovers.sum());
+        m.put("spooled", spooled.sum());
+        m.put("replayed", replayed.sum());
+        m.put("duplicates", duplicates.sum());
+        m.put("dropped", dropped.sum());
+        m.put("spool", spool.stats());
+        return m;
+    }
+
+    /** Stops the drainer and closes the spool; whatever is still spooled is replayed on the next start. */
+    @Override
+    public void close() {
+        closed = true;
+        drainer.interrupt();
+        try { drainer.join(5_000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        spool.close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.mongo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket rate limiter kept as a single "theoretical arrival time" (GCRA), so acquiring is one CAS.
+ *
+ * - permitsPerSecond <= 0 means unlimited.
+ * - burst is how many permits an idle bucket can hand out at once.
+ * - Safe to share between threads (and virtual threads: waiting uses parkNanos).
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE / 2);
+
+    public TokenBucketRateLimiter(double permitsPerSecond, long burst) {
+        this.intervalNanos = permitsPerSecond <= 0 ? 0 : Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+    }
+
+    public boolean isUnlimited() {
+        return intervalNanos == 0;
+    }
+
+    /** Blocks until {@code permits} are available. */
+    public void acquire(int permits) {
+        tryAcquire(permits, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /** Takes {@code permits} only if they are available right now. */
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes {@code permits} if they become available within {@code timeout}, waiting as needed.
+     * Nothing is consumed when it returns false.
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        if (intervalNanos == 0) return true;
+        long maxWait = unit.toNanos(timeout);
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long start = Math.max(current, now - toleranceNanos);
+            long wait = start - now;
+            if (wait > maxWait) return false;
+            if (tat.compareAndSet(current, start + permits * intervalNanos)) {
+                sleepUntil(start);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes {@code permits} without waiting, going into debt if needed: later callers wait until it is
+     * paid off. For costs only known after the work is done (events in a batch body).
+     */
+    public void charge(long permits) {
+        if (intervalNanos == 0 || permits <= 0) return;
+        long now = System.nanoTime();
+        tat.getAndUpdate(current -> Math.max(current, now - toleranceNanos) + permits * intervalNanos);
+    }
+
+    /** How long until a tryAcquire would succeed; 0 when it would succeed now. */
+    public long waitNanos() {
+        if (intervalNanos == 0) return 0;
+        return Math.max(0, tat.get() - System.nanoTime());
+    }
+
+    /** True when the bucket is full again, i.e. forgetting it loses nothing. */
+    public boolean isIdle() {
+        return intervalNanos == 0 || tat.get() <= System.nanoTime() - toleranceNanos;
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Rate limiter wait interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** Per-index outcome of {@link HybridEventRepository#upsertMany(List, ConflictPolicy)}. */
+public class UpsertResult {
+
+    public enum Outcome {
+        /** no event with this id existed; written */
+        INSERTED,
+        /** LAST_WRITE_WINS: replaced an event with an older or equal event_ts */
+        REPLACED,
+        /** an event with this id already existed and won (kept first, newer stored, or rejected) */
+        DUPLICATE,
+        /** any other write error; see {@link #message(int)} */
+        FAILED
+    }
+
+    private final Outcome[] outcomes;
+    private final String[] messages;
+
+    private UpsertResult(int size) {
+        this.outcomes = new Outcome[size];
+        this.messages = new String[size];
+    }
+
+    /**
+     * Upserts are reported by index; other write errors by index and code. What remains matched an
+     * existing event: for KEEP_FIRST that means it was kept, for LAST_WRITE_WINS that it was replaced.
+     * A write concern error leaves the outcome unknown and is rethrown.
+     */
+    static UpsertResult of(int size, ConflictPolicy policy, BulkWriteResult ok, MongoBulkWriteException failed) {
+        if (failed != null && failed.getWriteConcernError() != null) throw failed;
+        UpsertResult r = new UpsertResult(size);
+        Outcome matched = switch (policy) {
+            case KEEP_FIRST -> Outcome.DUPLICATE;
+            case LAST_WRITE_WINS -> Outcome.REPLACED;
+            case REJECT -> Outcome.INSERTED; // plain inserts: everything without an error was written
+        };
+        Arrays.fill(r.outcomes, matched);
+
+        BulkWriteResult written = (failed != null) ? failed.getWriteResult() : ok;
+        if (written != null && written.wasAcknowledged()) {
+            for (BulkWriteUpsert u : written.getUpserts()) r.outcomes[u.getIndex()] = Outcome.INSERTED;
+        }
+        if (failed != null) {
+            for (BulkWriteError err : failed.getWriteErrors()) {
+                // E11000 on the unique id index: another writer (or an earlier item) holds the id,
+                // or, for LAST_WRITE_WINS, the stored event is newer and the guarded upsert collided with it
+                r.outcomes[err.getIndex()] = (err.getCode() == BulkInsertResult.DUPLICATE_KEY) ? Outcome.DUPLICATE : Outcome.FAILED;
+                r.messages[err.getIndex()] = err.getMessage();
+            }
+        }
+        return r;
+    }
+
+    public int size() { return outcomes.length; }
+    public Outcome outcome(int index) { return outcomes[index]; }
+    public String message(int index) { return messages[index]; }
+
+    public long count(Outcome o) {
+        long n = 0;
+        for (Outcome x : outcomes) if (x == o) n++;
+        return n;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for single-event inserts: concurrent callers enqueue their event and wait on a
+ * future; flusher threads take everything that arrived within {@code linger} of the oldest
+ * waiting event (or maxBatch events, whichever comes first) and write it with one unordered
+ * insertMany. Each caller gets its own outcome: a duplicate or invalid document fails only
+ * that caller's future, with the same MongoWriteException insertOne would have thrown.
+ *
+ * The queue is bounded; when it is full, submit fails fast with RejectedExecutionException.
+ */
+public class WriteCoalescer implements AutoCloseable {
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private record Pending(HybridEvent event, CompletableFuture<Void> done, long enqueuedNanos) {}
+
+    private final MongoCollection<HybridEvent> collection;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BlockingQueue<Pending> queue;
+    private final List<Thread> flushers = new ArrayList<>();
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private final LatencyHistogram callerLatency = new LatencyHistogram();
+
+    /** @param collection written with its own write concern; pass a withWriteConcern(...) copy to change it */
+    public WriteCoalescer(MongoCollection<HybridEvent> collection, int maxBatch, long lingerMillis, int maxQueued, int flusherThreads) {
+        this.collection = collection;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.maxBatch, maxQueued));
+        for (int i = 0; i < Math.max(1, flusherThreads); i++) {
+            Thread t = new Thread(this::flushLoop, "write-coalescer-" + i);
+            t.setDaemon(true);
+            t.start();
+            flushers.add(t);
+        }
+    }
+
+    /** Queues the event; the future completes once its insertMany returned. */
+    public CompletableFuture<Void> submit(HybridEvent event) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Pending pending = new Pending(event, done, System.nanoTime());
+        if (closed || !queue.offer(pending)) {
+            rejected.increment();
+            done.completeExceptionally(new RejectedExecutionException(closed ? "write coalescer is closed" : "write queue is full"));
+        } else if (closed && queue.remove(pending)) {
+            // close() ran between the check and the offer: nobody is left to write or fail it
+            rejected.increment();
+            done.completeExceptionally(new RejectedExecutionException("write coalescer is closed"));
+        }
+        return done;
+    }
+
+    /** Blocking form for insertOne: waits for the group write and rethrows this event's error. */
+    public void insert(HybridEvent event) {
+        try {
+            submit(event).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = first.enqueuedNanos() + lingerNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    if (batch.size() >= maxBatch) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending p = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    batch.add(p);
+                }
+                write(batch);
+            } catch (InterruptedException ie) {
+                if (closed) break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<HybridEvent> docs = new ArrayList<>(batch.size());
+        for (Pending p : batch) docs.add(p.event());
+
+        long t0 = System.nanoTime();
+        try {
+            collection.insertMany(docs, UNORDERED);
+            complete(batch, null);
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                // every document may or may not be durable; nobody gets a success
+                completeAll(batch, e);
+            } else {
+                complete(batch, e);
+            }
+        } catch (RuntimeException e) {
+            completeAll(batch, e);
+        } finally {
+            flushLatency.recordSince(t0);
+            batches.increment();
+            events.add(batch.size());
+        }
+    }
+
+    /** Successful slots complete normally; failed ones get the insertOne-equivalent exception. */
+    private void complete(List<Pending> batch, MongoBulkWriteException e) {
+        RuntimeException[] errors = new RuntimeException[batch.size()];
+        if (e != null) {
+            for (BulkWriteError err : e.getWriteErrors()) {
+                errors[err.getIndex()] = new MongoWriteException(err, e.getServerAddress(), e.getErrorLabels());
+            }
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            callerLatency.recordNanos(now - p.enqueuedNanos());
+            if (errors[i] == null) p.done().complete(null);
+            else p.done().completeExceptionally(errors[i]);
+        }
+    }
+
+    private void completeAll(List<Pending> batch, RuntimeException e) {
+        for (Pending p : batch) p.done().completeExceptionally(e);
+    }
+
+    public void registerMetrics(MetricsRegistry m) {
+        m.counter("hybrid_coalesce_batches_total", "insertMany calls made by the write coalescer", batches::sum);
+        m.counter("hybrid_coalesce_events_total", "Events written through the write coalescer", events::sum);
+        m.counter("hybrid_coalesce_rejected_total", "Events rejected because the coalescer queue was full", rejected::sum);
+        m.gauge("hybrid_coalesce_queued", "Events waiting for the next group write", queue::size);
+        m.latency("hybrid_coalesce_flush_seconds", "Group insertMany latency", flushLatency);
+        m.latency("hybrid_coalesce_caller_seconds", "Enqueue-to-completion latency seen by callers", callerLatency);
+    }
+
+    public Map<String, Object> stats() {
+        long b = batches.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("batches", b);
+        m.put("events", events.sum());
+        m.put("avgBatchSize", b == 0 ? 0 : (double) events.sum() / b);
+        m.put("rejected", rejected.sum());
+        m.put("queued", queue.size());
+        m.put("flushP50Ms", flushLatency.percentileMillis(50));
+        m.put("flushP99Ms", flushLatency.percentileMillis(99));
+        m.put("callerP50Ms", callerLatency.percentileMillis(50));
+        m.put("callerP99Ms", callerLatency.percentileMillis(99));
+        return m;
+    }
+
+    /** Stops accepting events, writes what is queued, then stops the flushers. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread t : flushers) {
+            try { t.join(5_000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+        }
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            p.done().completeExceptionally(new RejectedExecutionException("write coalescer is closed"));
+        }
+    }
+}
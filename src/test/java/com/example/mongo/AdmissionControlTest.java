@@ -0,0 +1,68 @@
+package com.example.mongo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Per-client token buckets and the AIMD ingest concurrency limit. */
+public class AdmissionControlTest {
+
+    @Test
+    void clientBuckets_areIndependent_andBatchChargesDelayTheNextRequest() {
+        ClientRateLimiter limits = new ClientRateLimiter(10, 2, 100);
+        assertTrue(limits.tryAcquire("a"));
+        assertTrue(limits.tryAcquire("a"));
+        assertFalse(limits.tryAcquire("a"), "burst of 2 used up");
+        assertTrue(limits.tryAcquire("b"), "other clients keep their own budget");
+
+        limits.charge("b", 99); // a 100-event batch at 10 events/s
+        assertFalse(limits.tryAcquire("b"));
+        long retry = limits.retryAfterSeconds("b");
+        assertTrue(retry >= 9 && retry <= 10, "retry after " + retry);
+    }
+
+    @Test
+    void clientCap_sendsNewClientsToTheOverflowBucket() {
+        ClientRateLimiter limits = new ClientRateLimiter(1, 1, 2);
+        assertTrue(limits.tryAcquire("a"));
+        assertTrue(limits.tryAcquire("b"));
+        // a and b are in debt, so nothing can be evicted: c and d share one bucket
+        assertTrue(limits.tryAcquire("c"));
+        assertFalse(limits.tryAcquire("d"));
+    }
+
+    @Test
+    void adaptiveLimit_backsOffOnSlowWrites_andGrowsBackWhileBusy() {
+        AdaptiveConcurrencyLimiter limit = new AdaptiveConcurrencyLimiter(10, 2, 20, 10);
+        for (int i = 0; i < 10; i++) assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        long slow = TimeUnit.MILLISECONDS.toNanos(50);
+        limit.onLatency(slow);
+        limit.onLatency(slow); // same congestion window: counted once
+        assertEquals(9, limit.limit());
+
+        long fast = TimeUnit.MILLISECONDS.toNanos(1);
+        for (int i = 0; i < 20; i++) limit.onLatency(fast);
+        assertTrue(limit.limit() >= 10, "grew back to " + limit.limit());
+
+        for (int i = 0; i < 10; i++) limit.release();
+        for (int i = 0; i < 1000; i++) limit.onLatency(fast);
+        assertTrue(limit.limit() <= 11, "no growth while idle: " + limit.limit());
+    }
+
+    @Test
+    void adaptiveLimit_judgesBatchesPerEvent() {
+        AdaptiveConcurrencyLimiter limit = new AdaptiveConcurrencyLimiter(10, 2, 20, 10);
+        for (int i = 0; i < 10; i++) assertTrue(limit.tryAcquire());
+        // 1000-event batches taking 400ms each: far over target per request, 0.4ms per event
+        for (int i = 0; i < 100; i++) limit.onLatency(TimeUnit.MILLISECONDS.toNanos(400), 1000);
+        assertTrue(limit.limit() >= 10, "batches must not shrink the limit: " + limit.limit());
+
+        int before = limit.limit();
+        limit.onOverload();
+        assertTrue(limit.limit() < before, "a 5xx backs off");
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.mongo;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingHybridEventRepositoryTest {
+
+    @Test
+    void readThatLoadedTheOldState_isNotCachedPastAConcurrentInsert() {
+        HybridEvent inserted = new HybridEvent();
+        inserted.setMongoObjectId(new ObjectId());
+        inserted.setId("e-1");
+        inserted.setEventTs(Instant.now());
+
+        AtomicReference<HybridEvent> stored = new AtomicReference<>();
+        AtomicReference<Runnable> duringNextFind = new AtomicReference<>();
+        AtomicInteger finds = new AtomicInteger();
+        CachingHybridEventRepository repo = new CachingHybridEventRepository(collection(() -> {
+            finds.incrementAndGet();
+            HybridEvent seen = stored.get(); // the read sees the state before the insert...
+            Runnable r = duringNextFind.getAndSet(null);
+            if (r != null) r.run();          // ...and the insert and its invalidation finish before the read's put
+            return seen;
+        }), 1_000, 60, 60);
+        duringNextFind.set(() -> {
+            stored.set(inserted);
+            repo.invalidate(inserted);
+        });
+
+        assertTrue(repo.findOneById("e-1").isEmpty());
+        assertSame(inserted, repo.findOneById("e-1").orElseThrow(), "the stale 404 must not have been cached");
+        assertSame(inserted, repo.findOneById("e-1").orElseThrow());
+        assertEquals(2, finds.get());
+    }
+
+    /** find(...).first() answers from {@code first}; index setup sees an empty collection. */
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<HybridEvent> collection(Supplier<HybridEvent> first) {
+        return (MongoCollection<HybridEvent>) stub(MongoCollection.class, first);
+    }
+
+    private static Object stub(Class<?> type, Supplier<HybridEvent> first) {
+        return Proxy.newProxyInstance(CachingHybridEventRepositoryTest.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "withDocumentClass" -> proxy;
+                    case "listIndexes" -> stub(method.getReturnType(), first);
+                    case "find" -> stub(FindIterable.class, first);
+                    case "first" -> first.get();
+                    case "iterator", "cursor" -> stub(MongoCursor.class, first);
+                    case "hasNext" -> false;
+                    case "createIndex" -> "stub";
+                    case "close" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
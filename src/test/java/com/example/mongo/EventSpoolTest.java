@@ -0,0 +1,124 @@
+package com.example.mongo;
+
+import org.bson.codecs.Codec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Spool segments: append, rotation, drain and crash recovery (no MongoDB needed). */
+public class EventSpoolTest {
+
+    private static final Codec<HybridEvent> CODEC = MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class);
+    private static final int SEGMENT = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private static List<HybridEvent> events(int from, int n) {
+        List<HybridEvent> out = new ArrayList<>();
+        for (int i = from; i < from + n; i++) {
+            HybridEvent e = new HybridEvent();
+            e.setEventTs(Instant.ofEpochMilli(1_700_000_000_000L + i));
+            e.setId("id_" + i);
+            e.setPayload(new Payload(i % 100, "OK", new Meta((long) i, "test")));
+            out.add(e);
+        }
+        return out;
+    }
+
+    private EventSpool open(long maxBytes) {
+        return new EventSpool(dir, CODEC, SEGMENT, maxBytes, EventSpool.FsyncPolicy.NONE, 0);
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    void appendRotatesSegments_andDrainDeletesThem() throws Exception {
+        try (EventSpool spool = open(Long.MAX_VALUE)) {
+            spool.append(events(0, 2000)); // ~100 bytes each -> several 64KB segments
+            assertEquals(2000, spool.pendingEvents());
+            assertTrue(segmentFiles() > 1);
+
+            List<String> ids = new ArrayList<>();
+            while (!spool.isEmpty()) {
+                List<EventSpool.Entry> batch = spool.peek(300);
+                batch.forEach(en -> ids.add(en.event().getId()));
+                assertNotNull(batch.get(0).event().getMongoObjectId(), "_id assigned before spooling");
+                spool.ack(batch.get(batch.size() - 1));
+            }
+            assertEquals(2000, ids.size());
+            assertEquals("id_0", ids.get(0));
+            assertEquals("id_1999", ids.get(1999));
+            assertEquals(1, segmentFiles(), "only the active segment is left");
+        }
+    }
+
+    @Test
+    void recovery_replaysUndrainedRecords_andStopsAtTornTail() throws Exception {
+        try (EventSpool spool = open(Long.MAX_VALUE)) {
+            spool.append(events(0, 10));
+            List<EventSpool.Entry> first = spool.peek(4);
+            spool.ack(first.get(3));
+        }
+        // simulate a crash in the middle of the last record: corrupt its last BSON byte
+        Path seg;
+        try (Stream<Path> s = Files.list(dir)) {
+            seg = s.filter(p -> p.toString().endsWith(".seg")).sorted().findFirst().orElseThrow();
+        }
+        int end;
+        try (EventSpool probe = open(Long.MAX_VALUE)) {
+            end = probe.peek(100).get(5).end();
+            assertEquals(6, probe.pendingEvents());
+        }
+        try (RandomAccessFile f = new RandomAccessFile(seg.toFile(), "rw")) {
+            f.seek(end - 1);
+            f.write(0x7f);
+        }
+
+        try (EventSpool spool = open(Long.MAX_VALUE)) {
+            List<EventSpool.Entry> left = spool.peek(100);
+            assertEquals(5, left.size());
+            assertEquals("id_4", left.get(0).event().getId());
+            assertEquals("id_8", left.get(4).event().getId());
+
+            // new appends go to a fresh segment after the recovered ones
+            spool.append(events(100, 1));
+            assertEquals(6, spool.peek(100).size());
+        }
+    }
+
+    @Test
+    void append_rejectsWhenFull() {
+        try (EventSpool spool = open(1)) {
+            spool.append(events(0, 1));
+            assertThrows(RejectedExecutionException.class, () -> spool.append(events(1, 1)));
+        }
+    }
+
+    @Test
+    void maybeWrittenFlag_survivesRestart() {
+        try (EventSpool spool = open(Long.MAX_VALUE)) {
+            spool.append(events(0, 2), true);
+            spool.append(events(2, 2));
+            spool.markMaybeWritten(spool.peek(4).subList(3, 4)); // a failed replay attempt
+        }
+        try (EventSpool spool = open(Long.MAX_VALUE)) {
+            List<Boolean> flags = spool.peek(10).stream().map(EventSpool.Entry::maybeWritten).toList();
+            assertEquals(List.of(true, true, false, true), flags);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** What EventStreamWriter emits in each wire format, EventBatchReader reads back. */
+public class EventWireFormatTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private static final Codec<HybridEvent> CODEC =
+            MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class);
+
+    private final EventStreamWriter writer = new EventStreamWriter(MAPPER, CODEC);
+    private final EventBatchReader reader = new EventBatchReader(MAPPER, CODEC);
+
+    private static List<HybridEvent> sampleEvents() {
+        List<HybridEvent> out = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            HybridEvent e = new HybridEvent();
+            e.setMongoObjectId(new ObjectId());
+            e.setEventTs(Instant.parse("2026-01-30T12:34:56.789Z").plusSeconds(i));
+            e.setId("id_" + i);
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("temperature", i % 2 == 0 ? i : i + 0.5);
+            payload.put("status", i % 2 == 0 ? "OK" : "WARN");
+            payload.put("meta", new LinkedHashMap<>(Map.of("sequence", (long) i, "source", "ansible")));
+            e.setPayload(payload);
+            out.add(e);
+        }
+        return out;
+    }
+
+    private List<HybridEvent> readBack(byte[] body, EventStreamWriter.Format format) throws Exception {
+        List<HybridEvent> out = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(body), format).forEachRemaining(out::add);
+        return out;
+    }
+
+    private static void assertSameEvents(List<HybridEvent> expected, List<HybridEvent> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getMongoObjectId(), actual.get(i).getMongoObjectId());
+            assertEquals(expected.get(i).getEventTs(), actual.get(i).getEventTs());
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getPayload().get("temperature"), actual.get(i).getPayload().get("temperature"));
+            assertEquals(expected.get(i).getPayload().get("status"), actual.get(i).getPayload().get("status"));
+        }
+    }
+
+    @Test
+    void everyFormat_roundTripsThroughWriterAndReader() throws Exception {
+        List<HybridEvent> events = sampleEvents();
+        for (EventStreamWriter.Format f : EventStreamWriter.Format.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(events.size(), writer.writeAll(out, f, events.iterator()));
+            assertSameEvents(events, readBack(out.toByteArray(), f));
+        }
+    }
+
+    @Test
+    void rawBsonPassthrough_isTheStoredBytes() throws Exception {
+        List<HybridEvent> events = sampleEvents();
+        List<RawBsonDocument> raw = events.stream().map(e -> new RawBsonDocument(e, CODEC)).toList();
+
+        ByteArrayOutputStream viaRaw = new ByteArrayOutputStream();
+        ByteArrayOutputStream viaCodec = new ByteArrayOutputStream();
+        writer.writeAllRaw(viaRaw, EventStreamWriter.Format.BSON, raw.iterator(), false);
+        writer.writeAll(viaCodec, EventStreamWriter.Format.BSON, events.iterator());
+        assertArrayEquals(viaCodec.toByteArray(), viaRaw.toByteArray());
+
+        // Smile from raw documents decodes to the same events as JSON would
+        ByteArrayOutputStream smile = new ByteArrayOutputStream();
+        writer.writeAllRaw(smile, EventStreamWriter.Format.SMILE, raw.iterator(), false);
+        assertSameEvents(events, readBack(smile.toByteArray(), EventStreamWriter.Format.SMILE));
+    }
+
+    @Test
+    void bsonPage_endsWithNextTokenDocument() throws Exception {
+        List<HybridEvent> events = sampleEvents().subList(0, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writePage(out, EventStreamWriter.Format.BSON, events.iterator(), 3);
+
+        // the trailing {"next": ...} document is a fourth, event-less document
+        Iterator<HybridEvent> it = reader.read(new ByteArrayInputStream(out.toByteArray()), EventStreamWriter.Format.BSON);
+        for (int i = 0; i < 3; i++) assertEquals("id_" + i, it.next().getId());
+        HybridEvent tail = it.next();
+        assertNull(tail.getId());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    void truncatedOrMalformedBodies_areRejected() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeAll(out, EventStreamWriter.Format.BSON, sampleEvents().iterator());
+        byte[] truncated = java.util.Arrays.copyOf(out.toByteArray(), out.size() - 3);
+        assertThrows(IllegalArgumentException.class, () -> readBack(truncated, EventStreamWriter.Format.BSON));
+        assertThrows(IllegalArgumentException.class, () -> readBack("[{\"id\": ".getBytes(), EventStreamWriter.Format.JSON));
+        assertThrows(IllegalArgumentException.class, () -> EventStreamWriter.Format.fromContentType("text/csv"));
+        assertEquals(EventStreamWriter.Format.CBOR, EventStreamWriter.Format.fromRequest(null, "application/cbor"));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.mongo;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Codec round trips plus a decode-allocation comparison against the reflective POJO codec (no MongoDB needed). */
+public class HybridEventCodecTest {
+
+    private static final CodecRegistry POJO = MongoClientProvider.codecRegistry("pojo", false);
+    private static final CodecRegistry DIRECT = MongoClientProvider.codecRegistry("direct", false);
+    private static final CodecRegistry TYPED = MongoClientProvider.codecRegistry("direct", true);
+
+    private static HybridEvent sampleEvent() {
+        HybridEvent e = new HybridEvent();
+        e.setMongoObjectId(new ObjectId());
+        e.setEventTs(Instant.parse("2026-01-30T12:34:56.789Z"));
+        e.setId("id_12345");
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("sequence", 12345L);
+        meta.put("source", "ansible");
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("temperature", 42);
+        payload.put("status", "OK");
+        payload.put("meta", meta);
+        e.setPayload(payload);
+        return e;
+    }
+
+    private static byte[] encode(CodecRegistry registry, HybridEvent e) {
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        registry.get(HybridEvent.class).encode(new BsonBinaryWriter(buf), e, EncoderContext.builder().build());
+        return buf.toByteArray();
+    }
+
+    private static HybridEvent decode(Codec<HybridEvent> codec, byte[] bson) {
+        return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), DecoderContext.builder().build());
+    }
+
+    @Test
+    void directCodec_readsWhatPojoCodecWrote() {
+        HybridEvent e = sampleEvent();
+        byte[] bson = encode(POJO, e);
+
+        HybridEvent viaMap = decode(DIRECT.get(HybridEvent.class), bson);
+        assertEquals(e.getMongoObjectId(), viaMap.getMongoObjectId());
+        assertEquals(e.getEventTs(), viaMap.getEventTs());
+        assertEquals(e.getId(), viaMap.getId());
+        assertEquals(e.getPayload(), viaMap.getPayload());
+
+        HybridEvent viaTyped = decode(TYPED.get(HybridEvent.class), bson);
+        assertInstanceOf(Payload.class, viaTyped.getPayload());
+        assertEquals(e.getPayload(), viaTyped.getPayload());
+        assertEquals(12345L, ((Payload) viaTyped.getPayload()).getMeta().getSequence());
+
+        // the POJO codec also stored a redundant "mongoId" string (from the getter); direct does not
+        assertFalse(new org.bson.RawBsonDocument(encode(DIRECT, e)).containsKey("mongoId"));
+        assertArrayEquals(encode(DIRECT, e), encode(DIRECT, viaMap));
+        assertArrayEquals(encode(DIRECT, e), encode(TYPED, viaTyped));
+    }
+
+    @Test
+    void typedPayload_keepsNumericTypeAndUnknownFields() {
+        HybridEvent e = sampleEvent();
+        e.getPayload().put("temperature", 21.5);
+        e.getPayload().put("humidity", List.of(1, 2));
+        e.getPayload().put("status", 7); // unexpected type goes to the extra fields
+
+        HybridEvent back = decode(TYPED.get(HybridEvent.class), encode(DIRECT, e));
+        Payload p = (Payload) back.getPayload();
+        assertEquals(21.5, p.getTemperature());
+        assertNull(p.getStatus());
+        assertEquals(7, p.get("status"));
+        assertEquals(List.of(1, 2), p.get("humidity"));
+        assertEquals(e.getPayload(), p);
+    }
+
+    @Test
+    void typedPayload_mismatchedPutMovesTheKey_insteadOfDuplicatingIt() {
+        HybridEvent e = decode(TYPED.get(HybridEvent.class), encode(DIRECT, sampleEvent()));
+        Payload p = (Payload) e.getPayload();
+        p.put("temperature", 1.5f);
+        p.put("status", null);
+        p.put("meta", Map.of("sequence", 1L));
+        assertEquals(3, p.size());
+        assertNull(p.getTemperature());
+        assertEquals(1.5f, p.get("temperature"));
+
+        BsonDocument payload = new RawBsonDocument(encode(TYPED, e)).getDocument("payload");
+        assertEquals(List.of("temperature", "status", "meta"), List.copyOf(payload.keySet()));
+
+        p.put("temperature", 20); // and back into the typed field
+        assertEquals(20, p.getTemperature());
+        assertEquals(3, p.size());
+    }
+
+    @Test
+    void mistypedTopLevelField_failsInsteadOfBeingDropped() {
+        BsonDocument doc = new BsonDocument("_id", new BsonString("not-an-oid")).append("id", new BsonString("id_1"));
+        byte[] bson = encode(doc);
+        assertThrows(BsonInvalidOperationException.class, () -> decode(DIRECT.get(HybridEvent.class), bson));
+    }
+
+    private static byte[] encode(BsonDocument doc) {
+        BasicOutputBuffer buf = new BasicOutputBuffer();
+        new BsonDocumentCodec().encode(new BsonBinaryWriter(buf), doc, EncoderContext.builder().build());
+        return buf.toByteArray();
+    }
+
+    @Test
+    void insertGeneratesIdThroughCollectibleCodec() {
+        HybridEventCodec codec = (HybridEventCodec) DIRECT.get(HybridEvent.class);
+        HybridEvent e = sampleEvent();
+        e.setMongoObjectId(null);
+        assertFalse(codec.documentHasId(e));
+        codec.generateIdIfAbsentFromDocument(e);
+        assertNotNull(e.getMongoObjectId());
+    }
+
+    /** Allocation benchmark: bytes allocated per decoded document, POJO vs direct vs typed. */
+    @Test
+    void decodeAllocationsPerDocument() {
+        byte[] bson = encode(POJO, sampleEvent());
+
+        long pojo = allocatedBytesPerDecode(POJO.get(HybridEvent.class), bson);
+        long direct = allocatedBytesPerDecode(DIRECT.get(HybridEvent.class), bson);
+        long typed = allocatedBytesPerDecode(TYPED.get(HybridEvent.class), bson);
+        System.out.printf("**** decode allocations per document: pojo=%d B, direct=%d B, typed=%d B%n", pojo, direct, typed);
+
+        assertTrue(direct < pojo, "direct codec should allocate less than the POJO codec");
+        assertTrue(typed < pojo, "typed codec should allocate less than the POJO codec");
+    }
+
+    private static long allocatedBytesPerDecode(Codec<HybridEvent> codec, byte[] bson) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        int warmup = 20_000;
+        int measured = 50_000;
+        long sink = 0;
+
+        for (int i = 0; i < warmup; i++) sink += decode(codec, bson).getId().length();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < measured; i++) sink += decode(codec, bson).getId().length();
+        long after = mx.getThreadAllocatedBytes(tid);
+
+        assertTrue(sink > 0);
+        return (after - before) / measured;
+    }
+}
@@ -9,10 +9,13 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.mongodb.client.model.Filters.eq;
 import static org.junit.jupiter.api.Assertions.*;
@@ -122,4 +125,190 @@ public class HybridEventRepositoryTest {
         assertTrue(found.isPresent(), "Expected event to be found by event_ts");
         assertEquals("id_10", found.get().getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(4)
+    void findPage_walksAllEventsWithKeysetToken() {
+        List<HybridEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) batch.add(sampleEvent(i / 2)); // pairs share an event_ts
+        repo.insertMany(batch);
+
+        Set<String> seen = new HashSet<>();
+        PageToken after = null;
+        int pages = 0;
+        while (true) {
+            List<HybridEvent> page = new ArrayList<>();
+            repo.findPage(after, 10, 4).into(page);
+            pages++;
+            for (HybridEvent e : page) assertTrue(seen.add(e.getMongoId()), "event returned twice");
+            if (page.size() < 10) break;
+            after = PageToken.decode(PageToken.of(page.get(page.size() - 1)).encode());
+        }
+
+        assertEquals(25, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    @Order(5)
+    void findRange_filtersByStatusAndTemperature_withProjection() {
+        List<HybridEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) batch.add(sampleEvent(i)); // temperature 50+i, even = OK
+        repo.insertMany(batch);
+
+        Instant base = Instant.parse("2026-01-30T12:34:56Z");
+        EventRangeQuery q = new EventRangeQuery(
+                base.plusSeconds(2), base.plusSeconds(18),
+                new EventFilter("OK", 55.0, null),
+                EventRangeQuery.parseFields("event_ts,payload.status,payload.temperature"),
+                true, 100);
+
+        List<HybridEvent> found = new ArrayList<>();
+        repo.findRange(q, 10).into(found);
+
+        // OK (even i) in [2, 18) with temperature >= 55 -> i = 16, 14, 12, 10, 8, 6 (descending)
+        assertEquals(6, found.size());
+        assertEquals(base.plusSeconds(16), found.get(0).getEventTs());
+        assertNull(found.get(0).getId(), "id was not projected");
+        assertNull(found.get(0).getMongoObjectId(), "_id was not projected");
+        assertEquals("OK", found.get(0).getPayload().get("status"));
+    }
+
+    @Test
+    @Order(6)
+    void aggregateBuckets_groupsByTumblingWindow() {
+        List<HybridEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) batch.add(sampleEvent(i)); // one per second from 12:34:56
+        repo.insertMany(batch);
+
+        Instant from = Instant.parse("2026-01-30T12:34:00Z");
+        List<BucketStats> buckets = repo.aggregateBuckets(from, from.plusSeconds(120), 60_000);
+
+        // 12:34:56..12:34:59 -> i = 0..3, 12:35:00..12:35:15 -> i = 4..19
+        assertEquals(2, buckets.size());
+        assertEquals(from.toEpochMilli(), buckets.get(0).getStartMillis());
+        assertEquals(4, buckets.get(0).getCount());
+        assertEquals(50.0, buckets.get(0).getMinTemperature());
+        assertEquals(53.0, buckets.get(0).getMaxTemperature());
+        assertEquals(2, buckets.get(0).getOk());
+        assertEquals(16, buckets.get(1).getCount());
+        assertEquals(8, buckets.get(1).getWarn());
+    }
+
+    @Test
+    @Order(7)
+    void rollupAggregator_mergesInsertsIntoMinuteAndHourBuckets() {
+        MongoCollection<Document> rollupRaw = provider.getClient().getDatabase(DB_NAME).getCollection(COLLECTION_NAME + "_rollup");
+        rollupRaw.drop();
+        EventRollupStore store = new EventRollupStore(rollupRaw);
+
+        try (RollupAggregator rollup = new RollupAggregator(store, 60_000)) {
+            repo.setRollupAggregator(rollup);
+            List<HybridEvent> batch = new ArrayList<>();
+            for (int i = 0; i < 10; i++) batch.add(sampleEvent(i));
+            repo.insertMany(batch);
+            rollup.flush();
+
+            // second flush into the same buckets must $inc, not overwrite
+            repo.insertOne(sampleEvent(10));
+            rollup.flush();
+        }
+
+        Instant from = Instant.parse("2026-01-30T12:00:00Z");
+        List<BucketStats> minutes = store.buckets(EventRollupStore.Granularity.MINUTE, from, from.plusSeconds(3600), 60_000);
+        // 12:34:56..12:34:59 -> i = 0..3, 12:35:00..12:35:06 -> i = 4..10
+        assertEquals(2, minutes.size());
+        assertEquals(4, minutes.get(0).getCount());
+        assertEquals(7, minutes.get(1).getCount());
+        assertEquals(60.0, minutes.get(1).getMaxTemperature());
+
+        List<BucketStats> hours = store.buckets(EventRollupStore.Granularity.HOUR, from, from.plusSeconds(3600), 3_600_000);
+        assertEquals(1, hours.size());
+        assertEquals(11, hours.get(0).getCount());
+        assertEquals(50.0, hours.get(0).getMinTemperature());
+        assertEquals(55.0, hours.get(0).getAvgTemperature());
+        assertEquals(6, hours.get(0).getOk());
+    }
+
+    @Test
+    @Order(8)
+    void batchIngest_reportsInsertedDuplicateAndInvalidPerIndex() {
+        HybridEvent existing = sampleEvent(0);
+        repo.insertOne(existing);
+
+        HybridEvent duplicate = sampleEvent(1);
+        duplicate.setMongoObjectId(existing.getMongoObjectId()); // same _id -> E11000
+        HybridEvent invalid = sampleEvent(2);
+        invalid.setId(null);
+
+        List<HybridEvent> body = List.of(sampleEvent(3), duplicate, invalid, sampleEvent(4), sampleEvent(5));
+        EventBatchIngestor.Result result = new EventBatchIngestor(repo, 2).ingest(body.iterator());
+
+        assertEquals(207, result.httpStatus());
+        assertEquals(3, result.count(EventBatchIngestor.Status.INSERTED));
+        assertEquals(EventBatchIngestor.Status.DUPLICATE, result.status(1));
+        assertEquals(EventBatchIngestor.Status.INVALID, result.status(2));
+        assertEquals(EventBatchIngestor.Status.INSERTED, result.status(4));
+        assertEquals(4, rawCollection.countDocuments());
+    }
+
+    @Test
+    @Order(9)
+    void upsertMany_isIdempotentPerConflictPolicy() {
+        assertEquals(HybridEventRepository.UniqueIdIndex.UNIQUE,
+                repo.ensureUniqueIdIndex(provider.getClient().getDatabase(DB_NAME)));
+
+        HybridEvent first = sampleEvent(1);
+        assertEquals(UpsertResult.Outcome.INSERTED, repo.upsertMany(List.of(first), ConflictPolicy.KEEP_FIRST).outcome(0));
+        assertNotNull(first.getMongoObjectId(), "upserted _id is set on the event");
+
+        // retry of the same id: kept first / rejected
+        assertEquals(UpsertResult.Outcome.DUPLICATE, repo.upsertMany(List.of(sampleEvent(1)), ConflictPolicy.KEEP_FIRST).outcome(0));
+        assertEquals(UpsertResult.Outcome.DUPLICATE, repo.upsertMany(List.of(sampleEvent(1)), ConflictPolicy.REJECT).outcome(0));
+
+        // last write wins on event_ts: newer replaces, older is ignored
+        HybridEvent newer = sampleEvent(1);
+        newer.setEventTs(first.getEventTs().plusSeconds(60));
+        newer.getPayload().put("status", "NEWER");
+        HybridEvent older = sampleEvent(1);
+        older.setEventTs(first.getEventTs().minusSeconds(60));
+        UpsertResult lww = repo.upsertMany(List.of(newer, older, sampleEvent(2)), ConflictPolicy.LAST_WRITE_WINS);
+        assertEquals(UpsertResult.Outcome.REPLACED, lww.outcome(0));
+        assertEquals(UpsertResult.Outcome.DUPLICATE, lww.outcome(1));
+        assertEquals(UpsertResult.Outcome.INSERTED, lww.outcome(2));
+
+        assertEquals(2, rawCollection.countDocuments());
+        HybridEvent stored = repo.findOneById("id_1").orElseThrow();
+        assertEquals("NEWER", stored.getPayload().get("status"));
+        assertEquals(first.getMongoObjectId(), stored.getMongoObjectId(), "replace keeps the stored _id");
+    }
+
+    @Test
+    @Order(10)
+    void writeCoalescer_groupsConcurrentInsertsAndIsolatesErrors() throws Exception {
+        HybridEvent existing = sampleEvent(0);
+        repo.insertOne(existing);
+
+        try (WriteCoalescer coalescer = new WriteCoalescer(typedCollection, 50, 20, 1000, 1)) {
+            repo.setWriteCoalescer(coalescer);
+
+            HybridEvent duplicate = sampleEvent(1);
+            duplicate.setMongoObjectId(existing.getMongoObjectId()); // same _id -> E11000 for this caller only
+            List<Thread> callers = new ArrayList<>();
+            List<Throwable> errors = java.util.Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i <= 100; i++) {
+                HybridEvent e = (i == 0) ? duplicate : sampleEvent(i + 1);
+                callers.add(Thread.ofVirtual().start(() -> {
+                    try { repo.insertOne(e); } catch (Throwable t) { errors.add(t); }
+                }));
+            }
+            for (Thread t : callers) t.join();
+
+            assertEquals(1, errors.size());
+            assertInstanceOf(com.mongodb.MongoWriteException.class, errors.get(0));
+            assertEquals(101, rawCollection.countDocuments());
+            long batches = ((Number) coalescer.stats().get("batches")).longValue();
+            assertTrue(batches < 101, "inserts were grouped: " + batches + " batches");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Resumed import jobs must not insert rows an earlier run already wrote. */
+public class ImportJobManagerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @TempDir
+    Path dir;
+
+    private final StubRepository repo = new StubRepository();
+
+    @Test
+    void resumeAtOffsetZero_skipsRowsTheDeadRunInserted() throws Exception {
+        Path file = ndjson(4);
+        // the previous run inserted its first chunk, then died before checkpointing it
+        repo.insertManyUnordered(List.of(event(0), event(1)));
+
+        File f = file.toFile();
+        Document checkpoint = new Document("_id", "job-1").append("path", file.toString())
+                .append("sizeBytes", f.length()).append("lastModified", f.lastModified())
+                .append("state", "RUNNING").append("offset", 0L)
+                .append("rowsParsed", 0L).append("inserted", 0L).append("invalid", 0L).append("writeFailed", 0L);
+        StubCheckpoints checkpoints = new StubCheckpoints(List.of(checkpoint));
+
+        try (ImportJobManager jobs = new ImportJobManager(new EventFileImporter(MAPPER, repo, 2, 2), checkpoints, 1, 4)) {
+            assertEquals(1, jobs.resumeUnfinished());
+            ImportJob job = awaitFinished(jobs, "job-1");
+
+            assertEquals(ImportJob.State.DONE, job.getState(), String.valueOf(job.getProgress().getError()));
+            assertEquals(2, job.getProgress().rowsSkipped.get());
+            assertEquals(0L, job.toMap().get("resumedFromOffset"));
+        }
+        assertEquals(Map.of("e-0", 1, "e-1", 1, "e-2", 1, "e-3", 1), repo.inserts);
+    }
+
+    @Test
+    void freshImport_doesNotLookUpExistingIds() throws Exception {
+        ImportProgress progress = new EventFileImporter(MAPPER, repo, 2, 2).importFile(ndjson(3));
+
+        assertEquals(3, progress.getRowsInserted());
+        assertEquals(0, repo.lookups);
+    }
+
+    private static ImportJob awaitFinished(ImportJobManager jobs, String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ImportJob job = jobs.get(id).orElseThrow();
+            if (job.isFinished()) return job;
+            Thread.sleep(10);
+        }
+        fail("import " + id + " did not finish");
+        return null;
+    }
+
+    private Path ndjson(int rows) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rows; i++) sb.append(MAPPER.writeValueAsString(event(i))).append('\n');
+        return Files.writeString(dir.resolve("events-" + rows + ".ndjson"), sb);
+    }
+
+    private static HybridEvent event(int i) {
+        HybridEvent e = new HybridEvent();
+        e.setId("e-" + i);
+        e.setEventTs(Instant.ofEpochMilli(1_700_000_000_000L + i));
+        return e;
+    }
+
+    /** Counts inserts per business id in memory; the collection only has to get through index setup. */
+    private static final class StubRepository extends HybridEventRepository {
+        final Map<String, Integer> inserts = new ConcurrentHashMap<>();
+        volatile int lookups;
+
+        StubRepository() {
+            super(emptyCollection());
+        }
+
+        @Override
+        public Set<String> findExistingIds(Collection<String> ids) {
+            lookups++;
+            Set<String> found = new HashSet<>(ids);
+            found.retainAll(inserts.keySet());
+            return found;
+        }
+
+        @Override
+        public BulkInsertResult insertManyUnordered(List<HybridEvent> events) {
+            for (HybridEvent e : events) inserts.merge(e.getId(), 1, Integer::sum);
+            return BulkInsertResult.success(events.size());
+        }
+    }
+
+    private static final class StubCheckpoints extends ImportCheckpointStore {
+        private final List<Document> unfinished;
+
+        StubCheckpoints(List<Document> unfinished) {
+            super(null);
+            this.unfinished = new ArrayList<>(unfinished);
+        }
+
+        @Override public void save(ImportJob job, long lastModified) {}
+        @Override public void delete(String jobId) {}
+        @Override public List<Document> findUnfinished() { return unfinished; }
+    }
+
+    /** A collection with no indexes and no documents; index creation is accepted and ignored. */
+    @SuppressWarnings("unchecked")
+    private static <T> MongoCollection<T> emptyCollection() {
+        return (MongoCollection<T>) emptyStub(MongoCollection.class);
+    }
+
+    private static Object emptyStub(Class<?> type) {
+        return Proxy.newProxyInstance(ImportJobManagerTest.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "withDocumentClass" -> proxy;
+                    case "listIndexes" -> emptyStub(method.getReturnType());
+                    case "iterator", "cursor" -> emptyStub(MongoCursor.class);
+                    case "hasNext" -> false;
+                    case "createIndex" -> "stub";
+                    case "close" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.mongo;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatestEventsBufferTest {
+
+    @Test
+    void prime_goesBehindWhatTheStreamAlreadyDelivered() {
+        LatestEventsBuffer buffer = new LatestEventsBuffer(3);
+        HybridEvent old1 = event("old-1"), old2 = event("old-2"), live = event("live");
+        HybridEvent liveAgain = event("live");
+        liveAgain.setMongoObjectId(live.getMongoObjectId());
+
+        buffer.add(live); // arrived on the stream while the prime query ran
+        buffer.prime(List.of(old1, old2, liveAgain));
+
+        assertEquals(List.of(live, old2, old1), buffer.latest(3));
+        assertSame(live, buffer.latest(1).get(0), "the stream's copy wins over the primed one");
+
+        // full: the next insert evicts primed history, not the live event
+        HybridEvent next = event("next");
+        buffer.add(next);
+        assertEquals(List.of(next, live, old2), buffer.latest(3));
+    }
+
+    private static HybridEvent event(String id) {
+        HybridEvent e = new HybridEvent();
+        e.setMongoObjectId(new ObjectId());
+        e.setId(id);
+        return e;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.mongo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Prometheus text exposition of the registry (no MongoDB needed). */
+public class MetricsRegistryTest {
+
+    @Test
+    void scrape_writesCountersGaugesAndSummariesInTextFormat() {
+        MetricsRegistry m = new MetricsRegistry();
+        m.counter("hybrid_ingest_events_total", "Events", "path", "single", "outcome", "inserted").add(3);
+        AtomicLong depth = new AtomicLong(7);
+        m.gauge("hybrid_queue", "Queue \"depth\"", depth::get);
+        LatencyHistogram h = m.latency("hybrid_http_request_seconds", "Latency", "route", "/events/by-id/{id}");
+        h.recordNanos(2_000_000);
+        h.recordNanos(4_000_000);
+
+        String text = m.scrape();
+
+        assertTrue(text.contains("# TYPE hybrid_ingest_events_total counter\n"));
+        assertTrue(text.contains("hybrid_ingest_events_total{path=\"single\",outcome=\"inserted\"} 3\n"));
+        assertTrue(text.contains("# TYPE hybrid_queue gauge\nhybrid_queue 7\n"));
+        assertTrue(text.contains("# TYPE hybrid_http_request_seconds summary\n"));
+        assertTrue(text.contains("hybrid_http_request_seconds_count{route=\"/events/by-id/{id}\"} 2\n"));
+        assertTrue(text.contains("hybrid_http_request_seconds_sum{route=\"/events/by-id/{id}\"} 0.006\n"));
+        assertTrue(text.contains("hybrid_http_request_seconds{route=\"/events/by-id/{id}\",quantile=\"0.99\"} 0.004"));
+
+        // same labels -> same recorder
+        m.counter("hybrid_ingest_events_total", "Events", "path", "single", "outcome", "inserted").increment();
+        assertTrue(m.scrape().contains("outcome=\"inserted\"} 4\n"));
+        assertThrows(IllegalArgumentException.class, () -> m.gauge("hybrid_ingest_events_total", "x", () -> 1));
+    }
+}
@@ -6,16 +6,12 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import org.bson.codecs.configuration.CodecRegistry;
-import org.bson.codecs.pojo.PojoCodecProvider;
-
-import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
-import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 
 /**
  * MongoClientProviderTest
  *
  * - Creates ONE MongoClient for the app lifetime
- * - Provides a typed MongoCollection<HybridEvent> with POJO codec enabled
+ * - Provides a typed MongoCollection<HybridEvent> with the same codecs as MongoClientProvider
  * - Supports:
  *   A) standard config (host/port/user/password/authDb)
  *   B) direct connectionString (Testcontainers, etc.)
@@ -86,10 +82,8 @@ public class MongoClientProviderTest implements AutoCloseable {
     // ------------------ helpers ------------------
 
     private static CodecRegistry buildPojoCodecRegistry() {
-        return fromRegistries(
-                MongoClientSettings.getDefaultCodecRegistry(),
-                fromProviders(PojoCodecProvider.builder().automatic(true).build())
-        );
+        // hand-written HybridEvent codec first, POJO codec as fallback (MongoClientProvider default)
+        return MongoClientProvider.codecRegistry("direct", false);
     }
 
     private static String buildUriFromConfig(Config cfg) {
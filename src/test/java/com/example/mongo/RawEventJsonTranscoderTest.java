@@ -0,0 +1,121 @@
+package com.example.mongo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The raw BSON -> JSON path must produce byte-identical output to the Jackson/HybridEvent path. */
+public class RawEventJsonTranscoderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private static final Codec<HybridEvent> CODEC =
+            MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class);
+
+    private static HybridEvent sampleEvent(int i) {
+        HybridEvent e = new HybridEvent();
+        e.setMongoObjectId(new ObjectId());
+        e.setEventTs(Instant.parse("2026-01-30T12:34:56.789Z").plusSeconds(i));
+        e.setId("id_" + i);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("temperature", (i % 3 == 0) ? 20.25 + i : i);
+        payload.put("status", "quote\"and\\slash é");
+        payload.put("meta", Map.of("sequence", (long) i));
+        payload.put("tags", List.of("a", 1, true));
+        payload.put("seenAt", new Date(1769776496000L));
+        payload.put("nothing", null);
+        e.setPayload(payload);
+        return e;
+    }
+
+    /** What the driver would hand back: the event as stored, decoded by the app codec. */
+    private static HybridEvent roundTrip(RawBsonDocument raw) {
+        return CODEC.decode(raw.asBsonReader(), DecoderContext.builder().build());
+    }
+
+    @Test
+    void rawPath_matchesJacksonPath_forListsAndPages() throws Exception {
+        EventStreamWriter writer = new EventStreamWriter(MAPPER, CODEC);
+        List<RawBsonDocument> raw = new java.util.ArrayList<>();
+        for (int i = 0; i < 5; i++) raw.add(new RawBsonDocument(sampleEvent(i), CODEC));
+        List<HybridEvent> decoded = raw.stream().map(RawEventJsonTranscoderTest::roundTrip).toList();
+
+        for (EventStreamWriter.Format f : EventStreamWriter.Format.values()) {
+            ByteArrayOutputStream viaJackson = new ByteArrayOutputStream();
+            ByteArrayOutputStream viaRaw = new ByteArrayOutputStream();
+            writer.writeAll(viaJackson, f, decoded.iterator());
+            writer.writeAllRaw(viaRaw, f, raw.iterator(), false);
+            assertEquals(viaJackson.toString(StandardCharsets.UTF_8), viaRaw.toString(StandardCharsets.UTF_8));
+
+            viaJackson.reset();
+            viaRaw.reset();
+            writer.writePage(viaJackson, f, decoded.iterator(), 5);
+            writer.writePageRaw(viaRaw, f, raw.iterator(), 5);
+            assertEquals(viaJackson.toString(StandardCharsets.UTF_8), viaRaw.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void sparse_omitsMissingFieldsLikeNonNullInclusion() throws Exception {
+        HybridEvent projected = new HybridEvent();
+        projected.setEventTs(Instant.parse("2026-01-30T12:34:56Z"));
+        projected.setPayload(new LinkedHashMap<>(Map.of("status", "OK")));
+        RawBsonDocument raw = new RawBsonDocument(projected, CODEC);
+
+        String expected = MAPPER.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL).writeValueAsString(roundTrip(raw));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new EventStreamWriter(MAPPER).writeAllRaw(out, EventStreamWriter.Format.NDJSON, List.of(raw).iterator(), true);
+        assertEquals(expected + "\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rawPath_allocatesLessPerEventServed() throws Exception {
+        EventStreamWriter writer = new EventStreamWriter(MAPPER);
+        HybridEvent e = sampleEvent(1);
+        e.getPayload().remove("seenAt"); // typical producer event: no nested dates
+        RawBsonDocument raw = new RawBsonDocument(e, CODEC);
+        int n = 20_000;
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        // decode + Jackson, as the driver and the old path would do per document
+        long viaJackson = allocated(() -> writer.writeAll(sink, EventStreamWriter.Format.NDJSON,
+                Collections.nCopies(n, raw).stream().map(RawEventJsonTranscoderTest::roundTrip).iterator()), n);
+        long viaRaw = allocated(() -> writer.writeAllRaw(sink, EventStreamWriter.Format.NDJSON,
+                Collections.nCopies(n, raw).iterator(), false), n);
+        System.out.printf("**** allocations per event served: decode+jackson=%d B, raw=%d B%n", viaJackson, viaRaw);
+        assertTrue(viaRaw < viaJackson);
+    }
+
+    private interface IoRunnable {
+        void run() throws Exception;
+    }
+
+    private static long allocated(IoRunnable r, int n) throws Exception {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        r.run(); // warm up
+        long before = mx.getThreadAllocatedBytes(tid);
+        r.run();
+        return (mx.getThreadAllocatedBytes(tid) - before) / n;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.mongo;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.bson.BsonTimestamp;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.example.mongo.ResponseCompression.Encoding.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Accept-Encoding negotiation, the deferred encoders, and ETags. */
+public class ResponseCompressionTest {
+
+    private final ResponseCompression compression = new ResponseCompression("zstd,br,gzip", 64, false);
+
+    @Test
+    void negotiate_honoursQValues_andServerOrderOnTies() {
+        assertEquals(ZSTD, compression.negotiate("gzip, deflate, br, zstd"));
+        assertEquals(GZIP, compression.negotiate("gzip;q=1.0, zstd;q=0.5"));
+        assertEquals(GZIP, compression.negotiate("br, gzip"), "br is not offered without its native library");
+        assertEquals(ZSTD, compression.negotiate("*"));
+        assertEquals(GZIP, compression.negotiate("*;q=0.1, gzip"));
+        assertEquals(IDENTITY, compression.negotiate("zstd;q=0, gzip;q=0"));
+        assertEquals(IDENTITY, compression.negotiate(null));
+        assertEquals(IDENTITY, new ResponseCompression("", 64, true).negotiate("gzip"));
+    }
+
+    @Test
+    void smallBodies_goOutUnencoded_largeOnesRoundTrip() throws IOException {
+        List<ResponseCompression.Encoding> encoded = new ArrayList<>();
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = compression.open(GZIP, sink, encoded::add)) {
+            out.write("[]".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("[]", sink.toString(StandardCharsets.UTF_8));
+        assertTrue(encoded.isEmpty());
+
+        byte[] body = "{\"id\":\"e-1\",\"payload\":{\"status\":\"ok\"}}\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+        // twice, so the second gzip response runs on a pooled (reset) Deflater
+        for (int i = 0; i < 2; i++) assertArrayEquals(body, gunzip(encode(GZIP, body, encoded)));
+        assertArrayEquals(body, new ZstdInputStream(new ByteArrayInputStream(encode(ZSTD, body, encoded))).readAllBytes());
+        assertEquals(List.of(GZIP, GZIP, ZSTD), encoded);
+    }
+
+    @Test
+    void ifNoneMatch_matchesListsWeakTagsAndStar() {
+        String tag = ConditionalGet.listTag(new BsonTimestamp(1_700_000_000, 3), "/events", "limit=10", "JSON", "gzip");
+        assertNotEquals(tag, ConditionalGet.listTag(new BsonTimestamp(1_700_000_000, 4), "/events", "limit=10", "JSON", "gzip"));
+        assertNotEquals(tag, ConditionalGet.listTag(new BsonTimestamp(1_700_000_000, 3), "/events", "limit=10", "JSON", "zstd"));
+        assertNull(ConditionalGet.listTag(null, "/events"));
+
+        assertTrue(ConditionalGet.matches("\"x\", " + tag, tag));
+        assertTrue(ConditionalGet.matches("W/" + tag, tag));
+        assertTrue(ConditionalGet.matches("*", tag));
+        assertFalse(ConditionalGet.matches("\"x\"", tag));
+        assertFalse(ConditionalGet.matches(null, tag));
+    }
+
+    @Test
+    void eventTag_tellsApartPayloadsWithEqualHashCodes() {
+        HybridEvent a = new HybridEvent();
+        a.setId("e-1");
+        a.setEventTs(Instant.ofEpochMilli(1_700_000_000_000L));
+        a.setPayload(new LinkedHashMap<>(Map.of("status", "Aa")));
+        HybridEvent b = new HybridEvent();
+        b.setId("e-1");
+        b.setEventTs(a.getEventTs());
+        b.setPayload(new LinkedHashMap<>(Map.of("status", "BB"))); // "Aa".hashCode() == "BB".hashCode()
+        assertEquals(a.getPayload().hashCode(), b.getPayload().hashCode());
+        assertNotEquals(ConditionalGet.eventTag(a, IDENTITY), ConditionalGet.eventTag(b, IDENTITY));
+        assertNotEquals(ConditionalGet.eventTag(a, IDENTITY), ConditionalGet.eventTag(a, GZIP));
+    }
+
+    private byte[] encode(ResponseCompression.Encoding enc, byte[] body, List<ResponseCompression.Encoding> encoded) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = compression.open(enc, sink, encoded::add)) {
+            // uneven writes, as the JSON generator's buffer flushes would be
+            for (int off = 0; off < body.length; off += 1000) out.write(body, off, Math.min(1000, body.length - off));
+        }
+        return sink.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] gz) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gz))) {
+            return in.readAllBytes();
+        }
+    }
+}
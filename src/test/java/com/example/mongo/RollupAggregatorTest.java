@@ -0,0 +1,113 @@
+package com.example.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.WriteConcernError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Flush failures must re-queue exactly the deltas that were not applied. */
+public class RollupAggregatorTest {
+
+    /** Bucket _id -> applied count; the last bulk write's counts; what the next bulk writes do (none: apply everything). */
+    private final Map<String, Long> applied = new HashMap<>();
+    private final Map<String, Integer> lastCounts = new HashMap<>();
+    private final Queue<Function<List<String>, RuntimeException>> script = new ArrayDeque<>();
+
+    @Test
+    void bulkWriteErrors_requeueOnlyTheFailedBuckets() {
+        try (RollupAggregator rollup = new RollupAggregator(new EventRollupStore(stubCollection()), 3_600_000)) {
+            rollup.record(event(0));
+            rollup.record(event(60_000)); // m:0, m:60000 and h:0
+
+            script.add(ids -> {
+                int failed = ids.indexOf("m:60000");
+                ids.stream().filter(id -> !id.equals("m:60000")).forEach(id -> applied.merge(id, (long) count(id), Long::sum));
+                return new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                        List.of(new BulkWriteError(11000, "stub", new BsonDocument(), failed)), null, new ServerAddress(), Set.of());
+            });
+            assertThrows(MongoBulkWriteException.class, rollup::flush);
+            assertEquals(1, rollup.pendingBuckets());
+
+            rollup.flush();
+            assertEquals(Map.of("m:0", 1L, "m:60000", 1L, "h:0", 2L), applied);
+        }
+    }
+
+    @Test
+    void unknownOutcomes_areNotRetried_butUnsentWritesAre() {
+        try (RollupAggregator rollup = new RollupAggregator(new EventRollupStore(stubCollection()), 3_600_000)) {
+            rollup.record(event(0));
+            script.add(ids -> {
+                ids.forEach(id -> applied.merge(id, (long) count(id), Long::sum));
+                return new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(),
+                        new WriteConcernError(64, "WriteConcernFailed", "stub", new BsonDocument()), new ServerAddress(), Set.of());
+            });
+            assertThrows(MongoBulkWriteException.class, rollup::flush);
+            assertEquals(0, rollup.pendingBuckets());
+            assertEquals(2, rollup.uncertainBuckets());
+
+            rollup.record(event(0));
+            script.add(ids -> new MongoSocketOpenException("stub", new ServerAddress()));
+            assertThrows(MongoSocketOpenException.class, rollup::flush);
+            assertEquals(2, rollup.pendingBuckets());
+
+            rollup.flush();
+            assertEquals(Map.of("m:0", 2L, "h:0", 2L), applied);
+            assertEquals(2, rollup.uncertainBuckets());
+        }
+    }
+
+    private int count(String id) {
+        return lastCounts.get(id);
+    }
+
+    /** bulkWrite of the rollup upserts only; everything else (the index check) fails like an unreachable server. */
+    @SuppressWarnings("unchecked")
+    private MongoCollection<Document> stubCollection() {
+        return (MongoCollection<Document>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{MongoCollection.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("bulkWrite")) throw new MongoException("stub: " + method.getName());
+                    List<String> ids = new ArrayList<>();
+                    lastCounts.clear();
+                    for (WriteModel<Document> w : (List<WriteModel<Document>>) args[0]) {
+                        UpdateOneModel<Document> u = (UpdateOneModel<Document>) w;
+                        String id = u.getFilter().toBsonDocument().getString("_id").getValue();
+                        ids.add(id);
+                        lastCounts.put(id, ((Document) u.getUpdate()).get("$inc", Document.class).get("count", Number.class).intValue());
+                    }
+                    Function<List<String>, RuntimeException> next = script.poll();
+                    if (next != null) throw next.apply(ids);
+                    ids.forEach(id -> applied.merge(id, (long) count(id), Long::sum));
+                    return BulkWriteResult.unacknowledged();
+                });
+    }
+
+    private static HybridEvent event(long tsMillis) {
+        HybridEvent e = new HybridEvent();
+        e.setId("e-" + tsMillis);
+        e.setEventTs(Instant.ofEpochMilli(tsMillis));
+        return e;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mongo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedLruCacheTest {
+
+    private static final long FOREVER = System.nanoTime() + 3_600_000_000_000L;
+
+    @Test
+    void staysWithinCapacity_andCountsEvictions() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(160);
+        for (int i = 0; i < 1_000; i++) cache.put(i, "v" + i, FOREVER);
+
+        assertTrue(cache.size() <= 160, "size " + cache.size());
+        assertEquals(1_000 - cache.size(), cache.evictionCount());
+    }
+
+    @Test
+    void repeatedlyReadKeysSurviveAScan() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(160);
+        for (int i = 0; i < 16; i++) {
+            cache.put(i, "hot", FOREVER);
+            assertNotNull(cache.get(i)); // second touch promotes to the protected segment
+        }
+
+        // one-off keys only ever pass through probation
+        for (int i = 1_000; i < 10_000; i++) cache.put(i, "cold", FOREVER);
+
+        for (int i = 0; i < 16; i++) assertEquals("hot", cache.get(i), "hot key " + i + " was evicted");
+    }
+
+    @Test
+    void expiredEntriesAreMisses() {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(100);
+        cache.put("gone", "x", System.nanoTime() - 1);
+        cache.put("kept", "y", FOREVER);
+
+        assertNull(cache.get("gone"));
+        assertEquals("y", cache.get("kept"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.expirationCount());
+    }
+
+    @Test
+    void invalidateRemovesFromEitherSegment() {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(100);
+        cache.put("a", "1", FOREVER);
+        cache.put("b", "2", FOREVER);
+        cache.get("b"); // promoted
+
+        cache.invalidate("a");
+        cache.invalidate("b");
+
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void putAfterAnInvalidation_isDropped() {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(100);
+        long loadStarted = cache.generation("a");
+        cache.invalidate("a"); // a write lands while the load is in flight
+        assertFalse(cache.putIfNotInvalidated("a", "stale", FOREVER, loadStarted));
+        assertNull(cache.get("a"));
+
+        long next = cache.generation("a");
+        cache.clear();
+        assertFalse(cache.putIfNotInvalidated("a", "stale", FOREVER, next));
+
+        assertTrue(cache.putIfNotInvalidated("a", "fresh", FOREVER, cache.generation("a")));
+        assertEquals("fresh", cache.get("a"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.mongo;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Testcontainers
+public class SequenceAllocatorTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:8");
+
+    private static final String DB_NAME = "hybriddb2_test";
+
+    private MongoClientProviderTest provider;
+    private MongoCollection<Document> counters;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(mongo.isRunning(), "MongoDB Testcontainer is not running (Docker not available?)");
+        provider = new MongoClientProviderTest(mongo.getConnectionString());
+        counters = provider.getClient().getDatabase(DB_NAME).getCollection("counters");
+        counters.drop();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) provider.close();
+    }
+
+    @Test
+    void blockAllocator_uniqueAcrossProducers() throws Exception {
+        // two allocators on the same counter document behave like two producer JVMs
+        SequenceAllocator a = new BlockSequenceAllocator(counters, 8, 256);
+        SequenceAllocator b = new BlockSequenceAllocator(counters, 8, 256);
+        SequenceAllocator c = new CounterSequenceAllocator(counters);
+
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        int perThread = 2_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<?>> workers = new ArrayList<>();
+        for (SequenceAllocator alloc : new SequenceAllocator[]{a, a, b, b, c, c}) {
+            workers.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(seen.add(alloc.next()), "duplicate sequence issued");
+                }
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> w : workers) w.get(2, TimeUnit.MINUTES);
+
+        assertEquals(6 * perThread, seen.size());
+    }
+
+    @Test
+    void blockAllocator_growsBlockUnderLoad() {
+        BlockSequenceAllocator alloc = new BlockSequenceAllocator(counters, 4, 1024);
+        for (int i = 0; i < 10_000; i++) alloc.next();
+
+        assertTrue(alloc.currentBlockSize() > 4, "block size should adapt upwards");
+        assertTrue(alloc.leaseCount() < 10_000 / 4, "expected far fewer leases than ids");
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.WriteConcernError;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.codecs.Codec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Failover to the spool and replay outcomes, against a collection that fails on cue (no MongoDB needed). */
+public class SpoolFailoverTest {
+
+    private static final Codec<HybridEvent> CODEC = MongoClientProvider.codecRegistry("direct", false).get(HybridEvent.class);
+
+    @TempDir
+    Path dir;
+
+    /** What the next insertMany calls throw (none left: they succeed); every call's ids are recorded. */
+    private final Queue<RuntimeException> script = new ConcurrentLinkedQueue<>();
+    private final List<List<String>> inserts = new CopyOnWriteArrayList<>();
+    private final List<String> replayed = new CopyOnWriteArrayList<>();
+
+    @Test
+    void socketErrors_tripToSpooling_andDrainingSwitchesBack() throws Exception {
+        script.add(new MongoSocketOpenException("refused", new ServerAddress()));
+
+        try (SpoolFailover failover = open(2)) {
+            Runnable down = () -> { throw new MongoSocketOpenException("refused", new ServerAddress()); };
+
+            assertEquals(SpoolFailover.Outcome.SPOOLED, failover.write(events(0, 1), e -> down.run()));
+            assertEquals(SpoolFailover.Outcome.SPOOLED, failover.write(events(1, 1), e -> down.run()));
+            assertEquals(1L, failover.stats().get("failovers"));
+
+            await(() -> failover.mode() == SpoolFailover.Mode.DIRECT && replayed.size() == 2);
+            assertEquals(List.of("id_0", "id_1"), replayed.stream().sorted().toList());
+            assertEquals(2L, failover.stats().get("replayed"));
+            assertEquals(SpoolFailover.Outcome.WRITTEN, failover.write(events(2, 1), e -> {}));
+        }
+    }
+
+    @Test
+    void replayDuplicates_countOnlyWhenTheEventMayHaveBeenWritten() throws Exception {
+        try (EventSpool spool = spool()) {
+            spool.append(events(0, 2), true);  // id_0 landed before the reply was lost
+            spool.append(events(2, 2), false); // id_2 is someone else's duplicate, id_3 fails validation
+        }
+        script.add(bulkErrors(new BulkWriteError(11000, "E11000", new BsonDocument(), 0),
+                new BulkWriteError(11000, "E11000", new BsonDocument(), 2),
+                new BulkWriteError(121, "Document failed validation", new BsonDocument(), 3)));
+
+        try (SpoolFailover failover = open(3)) {
+            await(() -> failover.mode() == SpoolFailover.Mode.DIRECT);
+            assertEquals(List.of("id_0", "id_1"), replayed);
+            assertEquals(1L, failover.stats().get("replayed"));
+            assertEquals(2L, failover.stats().get("duplicates"));
+            assertEquals(1L, failover.stats().get("dropped"));
+        }
+    }
+
+    @Test
+    void writeConcernErrorOnReplay_marksTheBatchMaybeWritten() throws Exception {
+        try (EventSpool spool = spool()) {
+            spool.append(events(0, 2), false);
+        }
+        script.add(new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(),
+                new WriteConcernError(64, "WriteConcernFailed", "waiting for replication timed out", new BsonDocument()),
+                new ServerAddress(), Set.of()));
+        // the first attempt was applied after all: the retry only sees duplicates
+        script.add(bulkErrors(new BulkWriteError(11000, "E11000", new BsonDocument(), 0),
+                new BulkWriteError(11000, "E11000", new BsonDocument(), 1)));
+
+        try (SpoolFailover failover = open(3)) {
+            await(() -> failover.mode() == SpoolFailover.Mode.DIRECT);
+            assertEquals(2, inserts.size());
+            assertEquals(List.of("id_0", "id_1"), replayed);
+            assertEquals(0L, failover.stats().get("replayed"));
+            assertEquals(2L, failover.stats().get("duplicates"));
+        }
+    }
+
+    private SpoolFailover open(int errorThreshold) {
+        SpoolFailover failover = new SpoolFailover(spool(), stubCollection(), 10_000, 3, errorThreshold, 100);
+        failover.setOnReplayed(events -> events.forEach(e -> replayed.add(e.getId())));
+        return failover;
+    }
+
+    private EventSpool spool() {
+        return new EventSpool(dir, CODEC, 64 * 1024, Long.MAX_VALUE, EventSpool.FsyncPolicy.NONE, 0);
+    }
+
+    private static MongoBulkWriteException bulkErrors(BulkWriteError... errors) {
+        return new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(errors), null, new ServerAddress(), Set.of());
+    }
+
+    private static List<HybridEvent> events(int from, int n) {
+        List<HybridEvent> out = new ArrayList<>();
+        for (int i = from; i < from + n; i++) {
+            HybridEvent e = new HybridEvent();
+            e.setEventTs(Instant.ofEpochMilli(1_700_000_000_000L + i));
+            e.setId("id_" + i);
+            out.add(e);
+        }
+        return out;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (condition.getAsBoolean()) return;
+            Thread.sleep(10);
+        }
+        fail("condition not reached");
+    }
+
+    /** insertMany records the ids and throws the next scripted error, if any. */
+    @SuppressWarnings("unchecked")
+    private MongoCollection<HybridEvent> stubCollection() {
+        return (MongoCollection<HybridEvent>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{MongoCollection.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("insertMany")) throw new UnsupportedOperationException(method.getName());
+                    inserts.add(((List<HybridEvent>) args[0]).stream().map(HybridEvent::getId).toList());
+                    RuntimeException next = script.poll();
+                    if (next != null) throw next;
+                    return null;
+                });
+    }
+}